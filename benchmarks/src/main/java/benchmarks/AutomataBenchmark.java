@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * AutomataBenchmark.java
+ * ---------------
+ * Transitions of the DFA of the lexer per second: {@code Automata.getNextState} is called
+ * for every character of the resources, restarting from the start state where there is no
+ * transition, as the lexer does at the end of a token.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AutomataBenchmark {
+
+	// characters of the resources, padded to LOOKUPS
+	static final int LOOKUPS = 1 << 16;
+
+	private final char[] input = new char[LOOKUPS];
+
+	@Setup
+	public void setup() throws IOException {
+		StringBuilder text = new StringBuilder();
+		try (Stream<Path> files = Files.list(Project.RESOURCES)) {
+			for (Path file : files.sorted().toList()) {
+				text.append(Files.readString(file));
+			}
+		}
+		if (text.isEmpty()) {
+			throw new IllegalStateException("No input in " + Project.RESOURCES.toAbsolutePath());
+		}
+		for (int i = 0; i < LOOKUPS; i++) {
+			input[i] = text.charAt(i % text.length());
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public int getNextState() {
+		int start = Project.START;
+		int state = start;
+		for (char symbol : input) {
+			int next = Project.nextState(state, symbol);
+			state = next < 0 ? start : next;
+		}
+		return state;
+	}
+}
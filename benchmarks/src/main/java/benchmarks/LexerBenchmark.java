@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * LexerBenchmark.java
+ * ---------------
+ * {@code TheLexer.run()} over each resource. The score is files per second; the "bytes"
+ * counter gives the same rate in bytes, to be read as MB/s.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LexerBenchmark {
+
+	@Param({"input.txt", "inputAssignment.txt", "inputClass.txt", "inputMethods.txt", "inputStatements.txt"})
+	public String resource;
+
+	private File file;
+	private long length;
+
+	@Setup
+	public void setup() {
+		file = Project.RESOURCES.resolve(resource).toFile();
+		if (!file.isFile()) {
+			throw new IllegalStateException("No such resource: " + file.getAbsolutePath());
+		}
+		length = file.length();
+	}
+
+	@Benchmark
+	public Object run(Bytes bytes) {
+		Object tokens = Project.lex(file);
+		bytes.bytes += length;
+		return tokens;
+	}
+
+	/**
+	 * Bytes lexed during an iteration, reported by JMH as a rate.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Bytes {
+
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main.java
+ * ---------------
+ * Runs the benchmarks with the GC profiler, which reports gc.alloc.rate.norm, the bytes
+ * allocated per operation, next to the throughput. Takes the usual JMH options, such as a
+ * regular expression selecting benchmarks, "-f 1" or "-p resource=input.txt".
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class Main {
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
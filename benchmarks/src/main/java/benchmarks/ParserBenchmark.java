@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ParserBenchmark.java
+ * ---------------
+ * {@code TheParser.run()} over the tokens of each resource, lexed once before the
+ * measurement. The score is parses per second; the "tokens" counter gives tokens per second.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+	@Param({"input.txt", "inputAssignment.txt", "inputClass.txt", "inputMethods.txt", "inputStatements.txt"})
+	public String resource;
+
+	private Object tokenBuffer;
+	private int size;
+
+	@Setup
+	public void setup() {
+		File file = Project.RESOURCES.resolve(resource).toFile();
+		if (!file.isFile()) {
+			throw new IllegalStateException("No such resource: " + file.getAbsolutePath());
+		}
+		tokenBuffer = Project.lex(file);
+		size = Project.tokenCount(tokenBuffer);
+	}
+
+	@Benchmark
+	public Object run(Tokens tokens) {
+		Object result = Project.parse(tokenBuffer);
+		tokens.tokens += size;
+		return result;
+	}
+
+	/**
+	 * Tokens parsed during an iteration, reported by JMH as a rate.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Tokens {
+
+		public long tokens;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			tokens = 0;
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package benchmarks;
+
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+
+/**
+ * Project.java
+ * ---------------
+ * Handles on the classes of the project, which are in the default package and cannot be
+ * imported by the benchmarks or the code JMH generates for them.
+ *
+ * The handles are static final, so the JIT treats them as constants and inlines their
+ * targets: a call through one costs the same as a direct call once the benchmark is warm.
+ * Project objects are passed around as Object.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+final class Project {
+
+	/**
+	 * Directory of the inputs, the resources of the project unless the system property
+	 * "benchmarks.resources" names another one.
+	 */
+	static final Path RESOURCES = Path.of(System.getProperty("benchmarks.resources", "src/main/resources"));
+
+	// new TheLexer(File)
+	private static final MethodHandle NEW_LEXER;
+	// TheLexer.run()
+	private static final MethodHandle RUN_LEXER;
+	// TheLexer.getTokenBuffer()
+	private static final MethodHandle TOKEN_BUFFER;
+	// TokenBuffer.size()
+	private static final MethodHandle TOKEN_COUNT;
+	// new TheParser(TokenBuffer)
+	private static final MethodHandle NEW_PARSER;
+	// TheParser.run()
+	private static final MethodHandle RUN_PARSER;
+	// Automata.getNextState(int, char)
+	private static final MethodHandle NEXT_STATE;
+	// the DFA of the lexer and its start state
+	private static final Object DFA;
+	static final int START;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Class<?> lexer = Class.forName("TheLexer");
+			Class<?> tokens = Class.forName("TokenBuffer");
+			Class<?> parser = Class.forName("TheParser");
+			Class<?> automata = Class.forName("Automata");
+			NEW_LEXER = erase(lookup.findConstructor(lexer, MethodType.methodType(void.class, File.class)));
+			RUN_LEXER = erase(lookup.findVirtual(lexer, "run", MethodType.methodType(void.class)));
+			TOKEN_BUFFER = erase(lookup.findVirtual(lexer, "getTokenBuffer", MethodType.methodType(tokens)));
+			TOKEN_COUNT = erase(lookup.findVirtual(tokens, "size", MethodType.methodType(int.class)));
+			NEW_PARSER = erase(lookup.findConstructor(parser, MethodType.methodType(void.class, tokens)));
+			RUN_PARSER = erase(lookup.findVirtual(parser, "run", MethodType.methodType(Class.forName("ParseResult"))));
+			NEXT_STATE = erase(lookup.findVirtual(automata, "getNextState",
+					MethodType.methodType(int.class, int.class, char.class)));
+			// the DFA the lexer runs on, which is private to it
+			Field dfa = lexer.getDeclaredField("dfa");
+			dfa.setAccessible(true);
+			DFA = dfa.get(null);
+			START = (int) automata.getMethod("getStateId", String.class).invoke(DFA, "s0");
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private Project() {
+	}
+
+	/**
+	 * Replaces the reference types of a handle by Object, so it can be invoked exactly.
+	 */
+	private static MethodHandle erase(MethodHandle handle) {
+		return handle.asType(handle.type().erase());
+	}
+
+	/**
+	 * Lexes a file with {@code TheLexer.run()}.
+	 *
+	 * @param file The file
+	 * @return The TokenBuffer of the file
+	 */
+	static Object lex(File file) {
+		try {
+			Object lexer = (Object) NEW_LEXER.invokeExact((Object) file);
+			RUN_LEXER.invokeExact(lexer);
+			return (Object) TOKEN_BUFFER.invokeExact(lexer);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Parses tokens with {@code TheParser.run()}.
+	 *
+	 * @param tokens A TokenBuffer
+	 * @return The ParseResult
+	 */
+	static Object parse(Object tokens) {
+		try {
+			Object parser = (Object) NEW_PARSER.invokeExact(tokens);
+			return (Object) RUN_PARSER.invokeExact(parser);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	static int tokenCount(Object tokens) {
+		try {
+			return (int) TOKEN_COUNT.invokeExact(tokens);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * Looks up a transition of the DFA of the lexer with {@code Automata.getNextState}.
+	 *
+	 * @param state  The current state id
+	 * @param symbol The input character
+	 * @return The next state id, or -1 if there is no transition
+	 */
+	static int nextState(int state, char symbol) {
+		try {
+			return (int) NEXT_STATE.invokeExact(DFA, state, symbol);
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	private static RuntimeException rethrow(Throwable e) {
+		if (e instanceof RuntimeException runtime) {
+			throw runtime;
+		}
+		if (e instanceof Error error) {
+			throw error;
+		}
+		throw new IllegalStateException(e);
+	}
+}
@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * AbstractParser.java
+ * ---------------
+ * What {@link TheParser} and {@link IterativeParser} share: the rules entered and not yet
+ * exited, the diagnostics, the listener, the tree being built and the profiler, and the
+ * recovery from syntax errors. The two parsers only differ in how they call the rules, by
+ * recursion or from a stack of their own, so whatever reports the parse is kept here for
+ * both to report it the same way.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.1
+ */
+abstract class AbstractParser {
+
+	final TokenSource tokens;
+	final ParseListener listener;
+	final List<Diagnostic> diagnostics = new ArrayList<>();
+	SyntaxTree.Builder tree = new SyntaxTree.Builder();
+	// rules entered and not yet exited, to exit them when recovering from an error
+	private ParseRule[] rules = new ParseRule[32];
+	int depth;
+	// name and length of the source, for the Flight Recorder events
+	String sourceName;
+	long sourceLength;
+	int consumed;
+	// only created when profiling, see RuleProfiler
+	final RuleProfiler profiler = RuleProfiler.ENABLED ? new RuleProfiler() : null;
+
+	AbstractParser(TokenSource tokens, ParseListener listener) {
+		this.tokens = tokens;
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the name of the source, such as its file, reported by the Flight Recorder events
+	 * of the parse.
+	 *
+	 * @param sourceName The name of the source
+	 */
+	public void setSourceName(String sourceName) {
+		this.sourceName = sourceName;
+	}
+
+	/**
+	 * Sets whether the parse builds a syntax tree, which it does by default. Without one the
+	 * parse only validates its input: the result holds the diagnostics and an empty tree,
+	 * and a parse pulling from a {@link TokenStream} keeps no more than its lookahead.
+	 * Must be called before the parse.
+	 *
+	 * @param buildTree Whether to build the tree
+	 */
+	public void setBuildTree(boolean buildTree) {
+		tree = new SyntaxTree.Builder(buildTree);
+	}
+
+	/**
+	 * Ends the parse of a whole source: finishes the profile, builds the tree and records the
+	 * Flight Recorder event of the parse.
+	 *
+	 * @param event The event begun with the parse
+	 * @return The syntax tree and the diagnostics of the errors found
+	 */
+	ParseResult finish(ParseEvent event) {
+		if (RuleProfiler.ENABLED) {
+			profiler.finish();
+		}
+		SyntaxTree syntaxTree = tree.build();
+		event.end();
+		if (event.shouldCommit()) {
+			TokenBuffer kept = syntaxTree.getTokens();
+			event.source = sourceName;
+			event.bytes = sourceLength;
+			event.tokens = consumed;
+			// without a tree, the line the parse stopped at
+			event.lines = kept.size() == 0 ? tokens.line(0) : kept.getLineNumber(kept.size() - 1);
+			event.errors = diagnostics.size();
+			event.commit();
+		}
+		return new ParseResult(diagnostics, syntaxTree);
+	}
+
+	void enter(ParseRule rule) {
+		if (depth == rules.length) {
+			rules = Arrays.copyOf(rules, depth * 2);
+		}
+		rules[depth++] = rule;
+		tree.enter();
+		listener.enterRule(rule);
+		if (RuleProfiler.ENABLED) {
+			profiler.enter(RuleProfiler.key(rule));
+		}
+	}
+
+	void exit(ParseRule rule) {
+		if (RuleProfiler.ENABLED) {
+			profiler.exit();
+		}
+		depth--;
+		tree.exit(rule);
+		listener.exitRule(rule);
+	}
+
+	/**
+	 * Chooses an alternative from a decision table on the next tokens.
+	 *
+	 * @param choice   The decision
+	 * @param decision The key of the decision in the profile
+	 * @return The label of the alternative
+	 */
+	ParseRule predict(Grammar.Choice choice, int decision) {
+		if (!RuleProfiler.ENABLED) {
+			return choice.predict(tokens);
+		}
+		profiler.enter(decision);
+		ParseRule rule = choice.predict(tokens);
+		profiler.exit();
+		return rule;
+	}
+
+	/**
+	 * Exits the rules abandoned by a syntax error, down to a given depth.
+	 *
+	 * @param entered The number of rules that stay entered
+	 */
+	void unwind(int entered) {
+		while (depth > entered) {
+			exit(rules[depth - 1]);
+		}
+	}
+
+	/**
+	 * Adds the current token to the tree, reports it to the listener and moves to the next one.
+	 */
+	void consume() {
+		tree.token(tokens);
+		listener.terminal(tokens);
+		tokens.advance();
+		consumed++;
+		if (RuleProfiler.ENABLED) {
+			profiler.consume();
+		}
+	}
+
+	/**
+	 * Reports a syntax error and abandons the rule being parsed. The statement or member
+	 * loop enclosing the rule recovers with {@link #synchronize()}.
+	 *
+	 * @param error The error code
+	 */
+	void error(int error) {
+		Diagnostic diagnostic = new Diagnostic(error, tokens.line(0), tokens.value(0));
+		diagnostics.add(diagnostic);
+		listener.syntaxError(diagnostic);
+		throw new ParseError();
+	}
+
+	/**
+	 * Skips tokens after a syntax error up to the end of the statement it was found in:
+	 * past the next ";" or the "}" closing a block opened meanwhile, or up to a "}" that
+	 * closes the enclosing block, which is left to the rule that opened it.
+	 */
+	void synchronize() {
+		int depth = 0;
+		while (!tokens.atEnd()) {
+			switch (tokens.kind(0)) {
+				case LEFT_BRACE -> depth++;
+				case RIGHT_BRACE -> {
+					if (depth == 0) {
+						return;
+					}
+					depth--;
+					if (depth == 0) {
+						tokens.advance();
+						return;
+					}
+				}
+				case SEMICOLON -> {
+					if (depth == 0) {
+						tokens.advance();
+						return;
+					}
+				}
+				default -> {
+				}
+			}
+			tokens.advance();
+		}
+	}
+
+	boolean isType() {
+		switch (tokens.kind(0)) {
+			case KW_INT, KW_FLOAT, KW_VOID, KW_CHAR, KW_STRING, KW_BOOLEAN:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Thrown by {@link #error(int)} to unwind to the nearest recovery point.
+	 */
+	static class ParseError extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		ParseError() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -1,12 +1,20 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 /**
  * Automata.java
  * ---------------
- * Implements a Deterministic Finite Automaton (DFA) using a HashMap-based transition table.
+ * Implements a Deterministic Finite Automaton (DFA) using a dense integer transition table.
  * This class provides the core functionality for defining and executing a DFA, which is used
  * for lexical analysis and pattern recognition in the compiler's front-end.
  *
+ * The DFA is defined through a small builder API using state names (e.g. "s0") and is
+ * compiled into an integer form where states are small ints and transitions live in a flat
+ * {@code int[]} indexed by {@code state * alphabetSize + charClass}. Characters with identical
+ * transitions in every state share a character class, which keeps the table small.
+ *
  * The DFA implementation supports:
  * - Adding transitions between states
  * - Defining accept states
@@ -17,12 +25,29 @@ import java.util.*;
  * @author eduardomv
  * @author santiarr
  * @author yawham
- * @version 2.0
+ * @version 3.0
  */
 public class Automata {
 
+    /**
+     * State id returned when there is no transition for the given input.
+     */
+    public static final int NO_STATE = -1;
+
     private final HashMap<String, String> table = new HashMap<>();
     private final HashMap<String, String> acceptStates = new HashMap<>();
+    private final HashSet<String> quotedStates = new HashSet<>();
+    private final HashMap<String, Integer> stateIds = new HashMap<>();
+    private final ArrayList<String> stateNames = new ArrayList<>();
+
+    // compiled form, rebuilt lazily after the builder methods change the automaton
+    private boolean compiled;
+    private boolean readOnly;
+    private int alphabetSize;
+    private int[] charClass;
+    private int[] transitions;
+    private String[] acceptNames;
+    private boolean[] quoted;
 
     /**
      * Adds a transition to the DFA's transition table.
@@ -32,7 +57,14 @@ public class Automata {
      * @param nextState The state to transition to
      */
     public void addTransition(String currentState, String inputSymbol, String nextState) {
+        checkWritable();
+        if (inputSymbol.length() != 1) {
+            throw new IllegalArgumentException("Input symbol must be a single character: " + inputSymbol);
+        }
+        intern(currentState);
+        intern(nextState);
         table.put(currentState + "/" + inputSymbol, nextState);
+        compiled = false;
     }
 
     /**
@@ -43,7 +75,23 @@ public class Automata {
      * @return The next state according to the transition table
      */
     public String getNextState(String currentState, char inputSymbol) {
-        return table.get(currentState + "/" + inputSymbol);
+        int next = getNextState(getStateId(currentState), inputSymbol);
+        return next == NO_STATE ? null : stateNames.get(next);
+    }
+
+    /**
+     * Determines the next state based on the compiled state id and input symbol.
+     * This is the lookup used by the lexer's scan loop.
+     *
+     * @param currentState The current state id, or {@link #NO_STATE}
+     * @param inputSymbol The input symbol being processed
+     * @return The next state id, or {@link #NO_STATE} if there is no transition
+     */
+    public int getNextState(int currentState, char inputSymbol) {
+        if (currentState == NO_STATE || inputSymbol >= charClass.length) {
+            return NO_STATE;
+        }
+        return transitions[currentState * alphabetSize + charClass[inputSymbol]];
     }
 
     /**
@@ -53,7 +101,34 @@ public class Automata {
      * @param name The token type name associated with this accept state
      */
     public void addAcceptState(String state, String name) {
+        checkWritable();
+        intern(state);
         acceptStates.put(state, name);
+        compiled = false;
+    }
+
+    /**
+     * Marks a state as being inside a quoted literal, such as a string or a char.
+     * While the lexer is in a quoted state, whitespace, operators and delimiters are part of
+     * the lexeme instead of ending it.
+     *
+     * @param state The state to be marked as quoted
+     */
+    public void addQuotedState(String state) {
+        checkWritable();
+        intern(state);
+        quotedStates.add(state);
+        compiled = false;
+    }
+
+    /**
+     * Checks if a given compiled state is inside a quoted literal.
+     *
+     * @param state The state id to check, or {@link #NO_STATE}
+     * @return true if the state is a quoted state, false otherwise
+     */
+    public boolean isQuotedState(int state) {
+        return state != NO_STATE && quoted[state];
     }
 
     /**
@@ -63,7 +138,17 @@ public class Automata {
      * @return true if the state is an accept state, false otherwise
      */
     public boolean isAcceptState(String name) {
-        return acceptStates.containsKey(name);
+        return isAcceptState(getStateId(name));
+    }
+
+    /**
+     * Checks if a given compiled state is an accept state.
+     *
+     * @param state The state id to check, or {@link #NO_STATE}
+     * @return true if the state is an accept state, false otherwise
+     */
+    public boolean isAcceptState(int state) {
+        return state != NO_STATE && acceptNames[state] != null;
     }
 
     /**
@@ -73,7 +158,193 @@ public class Automata {
      * @return The token type name associated with the state
      */
     public String getAcceptStateName(String state) {
-        return acceptStates.get(state);
+        return getAcceptStateName(getStateId(state));
+    }
+
+    /**
+     * Gets the token type name associated with a compiled accept state.
+     *
+     * @param state The accept state id
+     * @return The token type name associated with the state, or null if it is not an accept state
+     */
+    public String getAcceptStateName(int state) {
+        return state == NO_STATE ? null : acceptNames[state];
+    }
+
+    /**
+     * Returns the compiled id of a named state, compiling the table if needed.
+     *
+     * @param name The state name used with the builder methods
+     * @return The state id, or {@link #NO_STATE} if the state is unknown
+     */
+    public int getStateId(String name) {
+        compile();
+        Integer id = stateIds.get(name);
+        return id == null ? NO_STATE : id;
+    }
+
+    /**
+     * Returns the number of states in the compiled table.
+     *
+     * @return The number of states
+     */
+    public int getStateCount() {
+        return stateNames.size();
+    }
+
+    /**
+     * Compiles the transitions added so far into the dense table.
+     * Called automatically by {@link #getStateId(String)}; after that, the int-based
+     * lookups can be used until the automaton is modified again.
+     */
+    public void compile() {
+        if (compiled) {
+            return;
+        }
+        int states = stateNames.size();
+        char maxSymbol = 0;
+        for (String key : table.keySet()) {
+            maxSymbol = (char) Math.max(maxSymbol, key.charAt(key.length() - 1));
+        }
+        // group the symbols whose column is identical in every state; class 0 has no transitions
+        charClass = new int[maxSymbol + 1];
+        HashMap<List<Integer>, Integer> classes = new HashMap<>();
+        classes.put(Collections.nCopies(states, NO_STATE), 0);
+        ArrayList<List<Integer>> columns = new ArrayList<>();
+        columns.add(Collections.nCopies(states, NO_STATE));
+        for (int c = 0; c <= maxSymbol; c++) {
+            List<Integer> column = new ArrayList<>(states);
+            for (String state : stateNames) {
+                String next = table.get(state + "/" + (char) c);
+                column.add(next == null ? NO_STATE : stateIds.get(next));
+            }
+            Integer id = classes.get(column);
+            if (id == null) {
+                id = columns.size();
+                classes.put(column, id);
+                columns.add(column);
+            }
+            charClass[c] = id;
+        }
+        alphabetSize = columns.size();
+        transitions = new int[states * alphabetSize];
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            List<Integer> column = columns.get(cls);
+            for (int state = 0; state < states; state++) {
+                transitions[state * alphabetSize + cls] = column.get(state);
+            }
+        }
+        acceptNames = new String[states];
+        for (Map.Entry<String, String> entry : acceptStates.entrySet()) {
+            acceptNames[stateIds.get(entry.getKey())] = entry.getValue();
+        }
+        quoted = new boolean[states];
+        for (String state : quotedStates) {
+            quoted[stateIds.get(state)] = true;
+        }
+        compiled = true;
+    }
+
+    /**
+     * Assigns the next free id to a state name the first time it is seen.
+     *
+     * @param state The state name
+     */
+    private void intern(String state) {
+        if (!stateIds.containsKey(state)) {
+            stateIds.put(state, stateNames.size());
+            stateNames.add(state);
+        }
+    }
+
+    /**
+     * Writes the compiled form of the automaton. The builder state is not written, so an
+     * automaton read back with {@link #readFrom(DataInput)} is read-only.
+     *
+     * @param out The output to write to
+     * @throws IOException If the output cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        compile();
+        int states = stateNames.size();
+        if (states > Short.MAX_VALUE || alphabetSize > Short.MAX_VALUE) {
+            throw new IOException("Automata too large to be written: " + states + " states");
+        }
+        out.writeInt(states);
+        out.writeInt(alphabetSize);
+        out.writeInt(charClass.length);
+        for (int cls : charClass) {
+            out.writeShort(cls);
+        }
+        for (int next : transitions) {
+            out.writeShort(next);
+        }
+        for (int state = 0; state < states; state++) {
+            out.writeUTF(stateNames.get(state));
+            out.writeBoolean(quoted[state]);
+            out.writeBoolean(acceptNames[state] != null);
+            if (acceptNames[state] != null) {
+                out.writeUTF(acceptNames[state]);
+            }
+        }
+    }
+
+    /**
+     * Reads an automaton written by {@link #writeTo(DataOutput)}.
+     * The result can be queried like any compiled automaton but cannot be modified.
+     *
+     * @param in The input to read from
+     * @return The automaton
+     * @throws IOException If the input cannot be read or is not a valid automaton
+     */
+    public static Automata readFrom(DataInput in) throws IOException {
+        Automata automata = new Automata();
+        int states = in.readInt();
+        automata.alphabetSize = in.readInt();
+        int symbols = in.readInt();
+        if (states < 0 || automata.alphabetSize <= 0 || symbols < 0 || symbols > Character.MAX_VALUE + 1) {
+            throw new IOException("Corrupt automaton header");
+        }
+        automata.charClass = new int[symbols];
+        for (int c = 0; c < symbols; c++) {
+            automata.charClass[c] = automata.readIndex(in, automata.alphabetSize);
+        }
+        automata.transitions = new int[states * automata.alphabetSize];
+        for (int i = 0; i < automata.transitions.length; i++) {
+            automata.transitions[i] = in.readShort();
+            if (automata.transitions[i] < NO_STATE || automata.transitions[i] >= states) {
+                throw new IOException("Corrupt automaton transition");
+            }
+        }
+        automata.acceptNames = new String[states];
+        automata.quoted = new boolean[states];
+        for (int state = 0; state < states; state++) {
+            automata.intern(in.readUTF());
+            automata.quoted[state] = in.readBoolean();
+            if (in.readBoolean()) {
+                automata.acceptNames[state] = in.readUTF();
+            }
+        }
+        automata.compiled = true;
+        automata.readOnly = true;
+        return automata;
+    }
+
+    private int readIndex(DataInput in, int limit) throws IOException {
+        int index = in.readShort();
+        if (index < 0 || index >= limit) {
+            throw new IOException("Corrupt automaton character class");
+        }
+        return index;
+    }
+
+    /**
+     * Rejects modifications of an automaton read from a snapshot.
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Automata read from a snapshot cannot be modified");
+        }
     }
 
     /**
@@ -82,12 +353,17 @@ public class Automata {
      * currentState -> nextState [label="inputSymbol"];
      */
     public void printTable() {
+        compile();
         System.out.println("DFA Transition Table:");
-        for (String state : table.keySet()) {
-            String[] parts = state.split("/");
-            System.out.println(parts[0] + " -> " + table.get(state) + " [label=\"" + parts[1] + "\"];");
+        for (int state = 0; state < stateNames.size(); state++) {
+            for (int c = 0; c < charClass.length; c++) {
+                int next = getNextState(state, (char) c);
+                if (next != NO_STATE) {
+                    System.out.println(stateNames.get(state) + " -> " + stateNames.get(next)
+                            + " [label=\"" + (char) c + "\"];");
+                }
+            }
         }
     }
 
 }
-
@@ -0,0 +1,599 @@
+import java.util.*;
+
+/**
+ * AutomataBuilder.java
+ * ---------------
+ * Compiles token rules written as regular expressions into a minimized {@link Automata}.
+ * Each rule is turned into a Thompson NFA, the NFAs are joined under a common start state,
+ * the union is determinized with the subset construction and the result is minimized with
+ * Hopcroft's partition refinement. When several rules accept the same lexeme, the rule with
+ * the highest priority names the accept state.
+ *
+ * The regular expression dialect is deliberately small:
+ * - {@code ab} concatenation, {@code a|b} alternation, {@code (a)} grouping
+ * - {@code a*}, {@code a+}, {@code a?} repetition
+ * - {@code [a-z_$]} character classes with ranges
+ * - {@code \.} escapes any of the special characters {@code |*+?()[]{}\.}
+ * - {@code {NAME}} references a fragment registered with {@link #define(String, String)}
+ *
+ * Rules added with {@link #addQuotedRule(String, String, int)} mark the states inside the
+ * literal as quoted, so the lexer keeps whitespace, operators and delimiters in the lexeme
+ * until the closing delimiter is reached.
+ *
+ * The generated automaton names its start state "s0" and the remaining states "s1", "s2", ...
+ * in breadth-first order.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class AutomataBuilder {
+
+    private static final int ALPHABET = 128;
+
+    private final HashMap<String, String> fragments = new HashMap<>();
+    private final ArrayList<Rule> rules = new ArrayList<>();
+
+    /**
+     * Registers a named fragment that rules can reference as {@code {NAME}}.
+     *
+     * @param name The fragment name
+     * @param regex The regular expression of the fragment
+     * @return This builder
+     */
+    public AutomataBuilder define(String name, String regex) {
+        fragments.put(name, regex);
+        return this;
+    }
+
+    /**
+     * Adds a token rule.
+     *
+     * @param name The token type name of the rule's accept states
+     * @param regex The regular expression the lexeme has to match
+     * @param priority The priority used when several rules accept the same lexeme
+     * @return This builder
+     */
+    public AutomataBuilder addRule(String name, String regex, int priority) {
+        rules.add(new Rule(name, regex, priority, false));
+        return this;
+    }
+
+    /**
+     * Adds a token rule for a literal enclosed in delimiters, such as a string or a char.
+     * Every state inside the literal, after the opening delimiter and before the closing one,
+     * is marked as a quoted state of the automaton.
+     *
+     * @param name The token type name of the rule's accept states
+     * @param regex The regular expression the lexeme has to match
+     * @param priority The priority used when several rules accept the same lexeme
+     * @return This builder
+     */
+    public AutomataBuilder addQuotedRule(String name, String regex, int priority) {
+        rules.add(new Rule(name, regex, priority, true));
+        return this;
+    }
+
+    /**
+     * Returns the registered rules and fragments in a stable textual form.
+     * Two builders with the same description produce the same automaton.
+     *
+     * @return The description of the rules
+     */
+    public String describe() {
+        StringBuilder description = new StringBuilder();
+        new TreeMap<>(fragments).forEach((name, regex) ->
+                description.append("define ").append(name).append(' ').append(regex).append('\n'));
+        for (Rule rule : rules) {
+            description.append(rule.quoted ? "quoted " : "rule ").append(rule.name).append(' ')
+                    .append(rule.priority).append(' ').append(rule.regex).append('\n');
+        }
+        return description.toString();
+    }
+
+    /**
+     * Compiles the rules into a minimized deterministic automaton.
+     *
+     * @return The compiled automaton
+     * @throws IllegalArgumentException If a regular expression is malformed
+     * @throws IllegalStateException If two rules with the same priority accept the same lexeme
+     */
+    public Automata build() {
+        Nfa nfa = new Nfa();
+        int start = nfa.newState(-1);
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            int[] fragment = new RegexParser(nfa, rule.regex, i).parse();
+            nfa.addEpsilon(start, fragment[0]);
+            nfa.accept[fragment[1]] = i;
+        }
+        Dfa dfa = determinize(nfa, start);
+        return minimize(dfa).toAutomata();
+    }
+
+    /**
+     * Runs the subset construction over the NFA.
+     *
+     * @param nfa The NFA built from all rules
+     * @param start The NFA start state
+     * @return The DFA, with state 0 as start state
+     */
+    private Dfa determinize(Nfa nfa, int start) {
+        Dfa dfa = new Dfa();
+        HashMap<BitSet, Integer> ids = new HashMap<>();
+        ArrayList<BitSet> subsets = new ArrayList<>();
+        BitSet initial = new BitSet();
+        initial.set(start);
+        nfa.closure(initial);
+        ids.put(initial, 0);
+        subsets.add(initial);
+        dfa.addState();
+        for (int current = 0; current < subsets.size(); current++) {
+            BitSet subset = subsets.get(current);
+            classify(nfa, subset, current, dfa);
+            for (int c = 0; c < ALPHABET; c++) {
+                BitSet target = nfa.move(subset, (char) c);
+                if (target.isEmpty()) {
+                    continue;
+                }
+                nfa.closure(target);
+                Integer id = ids.get(target);
+                if (id == null) {
+                    id = dfa.addState();
+                    ids.put(target, id);
+                    subsets.add(target);
+                }
+                dfa.next[current][c] = id;
+            }
+        }
+        return dfa;
+    }
+
+    /**
+     * Computes the accept name and the quoted flag of a DFA state from its NFA subset.
+     */
+    private void classify(Nfa nfa, BitSet subset, int state, Dfa dfa) {
+        Rule best = null;
+        boolean tied = false;
+        boolean onlyQuoted = true;
+        for (int s = subset.nextSetBit(0); s >= 0; s = subset.nextSetBit(s + 1)) {
+            if (nfa.owner[s] < 0 || !rules.get(nfa.owner[s]).quoted) {
+                onlyQuoted = false;
+            }
+            if (nfa.accept[s] >= 0) {
+                Rule rule = rules.get(nfa.accept[s]);
+                if (best == null || rule.priority > best.priority) {
+                    best = rule;
+                    tied = false;
+                } else if (rule.priority == best.priority && !rule.name.equals(best.name)) {
+                    tied = true;
+                }
+            }
+        }
+        if (tied) {
+            throw new IllegalStateException("Two rules accept the same lexeme with priority "
+                    + best.priority + ", one of them is " + best.name);
+        }
+        dfa.accept[state] = best == null ? null : best.name;
+        dfa.quoted[state] = best == null && onlyQuoted;
+    }
+
+    /**
+     * Minimizes the DFA with Hopcroft's algorithm. The DFA is completed with an explicit dead
+     * state first; the block that contains it, together with every state that can never reach
+     * an accept state, is dropped from the result.
+     */
+    private Dfa minimize(Dfa dfa) {
+        int dead = dfa.addState();
+        int n = dfa.size;
+        for (int s = 0; s < n; s++) {
+            for (int c = 0; c < ALPHABET; c++) {
+                if (dfa.next[s][c] < 0) {
+                    dfa.next[s][c] = dead;
+                }
+            }
+        }
+        // inverse transitions, per symbol
+        ArrayList<ArrayList<ArrayList<Integer>>> inverse = new ArrayList<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            ArrayList<ArrayList<Integer>> column = new ArrayList<>();
+            for (int s = 0; s < n; s++) {
+                column.add(new ArrayList<>());
+            }
+            for (int s = 0; s < n; s++) {
+                column.get(dfa.next[s][c]).add(s);
+            }
+            inverse.add(column);
+        }
+        // initial partition: states with the same accept name and quoted flag
+        int[] blockOf = new int[n];
+        ArrayList<ArrayList<Integer>> blocks = new ArrayList<>();
+        HashMap<String, Integer> initial = new HashMap<>();
+        for (int s = 0; s < n; s++) {
+            String key = dfa.accept[s] + "/" + dfa.quoted[s];
+            Integer block = initial.get(key);
+            if (block == null) {
+                block = blocks.size();
+                initial.put(key, block);
+                blocks.add(new ArrayList<>());
+            }
+            blocks.get(block).add(s);
+            blockOf[s] = block;
+        }
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        boolean[] queued = new boolean[n];
+        for (int b = 0; b < blocks.size(); b++) {
+            work.add(b);
+            queued[b] = true;
+        }
+        while (!work.isEmpty()) {
+            int splitter = work.poll();
+            queued[splitter] = false;
+            List<Integer> members = new ArrayList<>(blocks.get(splitter));
+            for (int c = 0; c < ALPHABET; c++) {
+                // predecessors of the splitter on c, grouped by their block
+                HashMap<Integer, ArrayList<Integer>> touched = new LinkedHashMap<>();
+                for (int target : members) {
+                    for (int source : inverse.get(c).get(target)) {
+                        touched.computeIfAbsent(blockOf[source], k -> new ArrayList<>()).add(source);
+                    }
+                }
+                for (Map.Entry<Integer, ArrayList<Integer>> entry : touched.entrySet()) {
+                    int block = entry.getKey();
+                    ArrayList<Integer> inside = entry.getValue();
+                    if (inside.size() == blocks.get(block).size()) {
+                        continue;
+                    }
+                    int created = blocks.size();
+                    HashSet<Integer> moved = new HashSet<>(inside);
+                    ArrayList<Integer> rest = new ArrayList<>();
+                    for (int s : blocks.get(block)) {
+                        if (!moved.contains(s)) {
+                            rest.add(s);
+                        }
+                    }
+                    blocks.set(block, rest);
+                    blocks.add(inside);
+                    for (int s : inside) {
+                        blockOf[s] = created;
+                    }
+                    if (queued[block] || inside.size() <= rest.size()) {
+                        work.add(created);
+                        queued[created] = true;
+                    } else {
+                        work.add(block);
+                        queued[block] = true;
+                    }
+                }
+            }
+        }
+        // a state is useful when it can reach an accept state
+        boolean[] useful = new boolean[n];
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        for (int s = 0; s < n; s++) {
+            if (dfa.accept[s] != null) {
+                useful[s] = true;
+                pending.add(s);
+            }
+        }
+        while (!pending.isEmpty()) {
+            int s = pending.poll();
+            for (int c = 0; c < ALPHABET; c++) {
+                for (int source : inverse.get(c).get(s)) {
+                    if (!useful[source]) {
+                        useful[source] = true;
+                        pending.add(source);
+                    }
+                }
+            }
+        }
+        // renumber the useful blocks breadth-first from the start block
+        int[] renamed = new int[blocks.size()];
+        Arrays.fill(renamed, -1);
+        Dfa minimal = new Dfa();
+        ArrayDeque<Integer> order = new ArrayDeque<>();
+        renamed[blockOf[0]] = minimal.addState();
+        order.add(blockOf[0]);
+        while (!order.isEmpty()) {
+            int block = order.poll();
+            int representative = blocks.get(block).get(0);
+            int state = renamed[block];
+            minimal.accept[state] = dfa.accept[representative];
+            minimal.quoted[state] = dfa.quoted[representative];
+            for (int c = 0; c < ALPHABET; c++) {
+                int target = dfa.next[representative][c];
+                if (!useful[target]) {
+                    continue;
+                }
+                int targetBlock = blockOf[target];
+                if (renamed[targetBlock] < 0) {
+                    renamed[targetBlock] = minimal.addState();
+                    order.add(targetBlock);
+                }
+                minimal.next[state][c] = renamed[targetBlock];
+            }
+        }
+        return minimal;
+    }
+
+    /**
+     * A token rule as registered by the caller.
+     */
+    private static class Rule {
+        final String name;
+        final String regex;
+        final int priority;
+        final boolean quoted;
+
+        Rule(String name, String regex, int priority, boolean quoted) {
+            this.name = name;
+            this.regex = regex;
+            this.priority = priority;
+            this.quoted = quoted;
+        }
+    }
+
+    /**
+     * Thompson NFA with single-character and epsilon transitions.
+     * Every state remembers the rule it was built for and, if it accepts, the rule it accepts.
+     */
+    private static class Nfa {
+        final ArrayList<ArrayList<Integer>> epsilon = new ArrayList<>();
+        final ArrayList<HashMap<Character, ArrayList<Integer>>> edges = new ArrayList<>();
+        int[] owner = new int[16];
+        int[] accept = new int[16];
+
+        int newState(int rule) {
+            int state = epsilon.size();
+            epsilon.add(new ArrayList<>());
+            edges.add(new HashMap<>());
+            if (state == owner.length) {
+                owner = Arrays.copyOf(owner, state * 2);
+                accept = Arrays.copyOf(accept, state * 2);
+            }
+            owner[state] = rule;
+            accept[state] = -1;
+            return state;
+        }
+
+        void addEpsilon(int from, int to) {
+            epsilon.get(from).add(to);
+        }
+
+        void addEdge(int from, char symbol, int to) {
+            edges.get(from).computeIfAbsent(symbol, k -> new ArrayList<>()).add(to);
+        }
+
+        void closure(BitSet states) {
+            ArrayDeque<Integer> pending = new ArrayDeque<>();
+            states.stream().forEach(pending::add);
+            while (!pending.isEmpty()) {
+                for (int next : epsilon.get(pending.poll())) {
+                    if (!states.get(next)) {
+                        states.set(next);
+                        pending.add(next);
+                    }
+                }
+            }
+        }
+
+        BitSet move(BitSet states, char symbol) {
+            BitSet target = new BitSet();
+            for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+                ArrayList<Integer> next = edges.get(s).get(symbol);
+                if (next != null) {
+                    next.forEach(target::set);
+                }
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Deterministic automaton under construction, with -1 for a missing transition.
+     */
+    private static class Dfa {
+        int size;
+        int[][] next = new int[16][];
+        String[] accept = new String[16];
+        boolean[] quoted = new boolean[16];
+
+        int addState() {
+            if (size == next.length) {
+                next = Arrays.copyOf(next, size * 2);
+                accept = Arrays.copyOf(accept, size * 2);
+                quoted = Arrays.copyOf(quoted, size * 2);
+            }
+            next[size] = new int[ALPHABET];
+            Arrays.fill(next[size], -1);
+            return size++;
+        }
+
+        Automata toAutomata() {
+            Automata automata = new Automata();
+            for (int s = 0; s < size; s++) {
+                for (int c = 0; c < ALPHABET; c++) {
+                    if (next[s][c] >= 0) {
+                        automata.addTransition("s" + s, String.valueOf((char) c), "s" + next[s][c]);
+                    }
+                }
+                if (accept[s] != null) {
+                    automata.addAcceptState("s" + s, accept[s]);
+                }
+                if (quoted[s]) {
+                    automata.addQuotedState("s" + s);
+                }
+            }
+            return automata;
+        }
+    }
+
+    /**
+     * Recursive descent parser that emits Thompson fragments for a regular expression.
+     * A fragment is returned as {entry, exit}.
+     */
+    private class RegexParser {
+        private final Nfa nfa;
+        private final String regex;
+        private final int rule;
+        private int position;
+
+        RegexParser(Nfa nfa, String regex, int rule) {
+            this.nfa = nfa;
+            this.regex = regex;
+            this.rule = rule;
+        }
+
+        int[] parse() {
+            int[] fragment = alternation();
+            if (position != regex.length()) {
+                throw error("unexpected '" + regex.charAt(position) + "'");
+            }
+            return fragment;
+        }
+
+        private int[] alternation() {
+            int[] fragment = concatenation();
+            while (peek('|')) {
+                position++;
+                int[] right = concatenation();
+                int entry = nfa.newState(rule);
+                int exit = nfa.newState(rule);
+                nfa.addEpsilon(entry, fragment[0]);
+                nfa.addEpsilon(entry, right[0]);
+                nfa.addEpsilon(fragment[1], exit);
+                nfa.addEpsilon(right[1], exit);
+                fragment = new int[]{entry, exit};
+            }
+            return fragment;
+        }
+
+        private int[] concatenation() {
+            int entry = nfa.newState(rule);
+            int exit = entry;
+            while (position < regex.length() && !peek('|') && !peek(')')) {
+                int[] next = repetition();
+                nfa.addEpsilon(exit, next[0]);
+                exit = next[1];
+            }
+            return new int[]{entry, exit};
+        }
+
+        private int[] repetition() {
+            int[] fragment = atom();
+            while (peek('*') || peek('+') || peek('?')) {
+                char operator = regex.charAt(position++);
+                int entry = nfa.newState(rule);
+                int exit = nfa.newState(rule);
+                nfa.addEpsilon(entry, fragment[0]);
+                nfa.addEpsilon(fragment[1], exit);
+                if (operator != '+') {
+                    nfa.addEpsilon(entry, exit);
+                }
+                if (operator != '?') {
+                    nfa.addEpsilon(fragment[1], fragment[0]);
+                }
+                fragment = new int[]{entry, exit};
+            }
+            return fragment;
+        }
+
+        private int[] atom() {
+            char c = regex.charAt(position++);
+            switch (c) {
+                case '(':
+                    int[] group = alternation();
+                    expect(')');
+                    return group;
+                case '[':
+                    return characterClass();
+                case '{':
+                    int close = regex.indexOf('}', position);
+                    if (close < 0) {
+                        throw error("unterminated fragment reference");
+                    }
+                    String name = regex.substring(position, close);
+                    String fragment = fragments.get(name);
+                    if (fragment == null) {
+                        throw error("unknown fragment {" + name + "}");
+                    }
+                    position = close + 1;
+                    return new RegexParser(nfa, fragment, rule).parse();
+                case '\\':
+                    return symbols(String.valueOf(literal()));
+                case '|': case '*': case '+': case '?': case ')': case ']': case '}': case '.':
+                    throw error("unescaped '" + c + "'");
+                default:
+                    return symbols(String.valueOf(c));
+            }
+        }
+
+        private int[] characterClass() {
+            StringBuilder members = new StringBuilder();
+            while (!peek(']')) {
+                char from = literal();
+                char to = from;
+                if (peek('-') && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+                    position++;
+                    to = literal();
+                }
+                if (to < from) {
+                    throw error("empty range " + from + "-" + to);
+                }
+                if (to >= ALPHABET) {
+                    throw error("symbol outside the ASCII alphabet");
+                }
+                for (char c = from; c <= to; c++) {
+                    members.append(c);
+                }
+            }
+            expect(']');
+            return symbols(members.toString());
+        }
+
+        private int[] symbols(String members) {
+            int entry = nfa.newState(rule);
+            int exit = nfa.newState(rule);
+            for (int i = 0; i < members.length(); i++) {
+                char c = members.charAt(i);
+                if (c >= ALPHABET) {
+                    throw error("symbol outside the ASCII alphabet");
+                }
+                nfa.addEdge(entry, c, exit);
+            }
+            return new int[]{entry, exit};
+        }
+
+        private char literal() {
+            if (position >= regex.length()) {
+                throw error("unexpected end of expression");
+            }
+            char c = regex.charAt(position++);
+            if (c == '\\') {
+                if (position >= regex.length()) {
+                    throw error("dangling escape");
+                }
+                c = regex.charAt(position++);
+            }
+            return c;
+        }
+
+        private boolean peek(char c) {
+            return position < regex.length() && regex.charAt(position) == c;
+        }
+
+        private void expect(char c) {
+            if (!peek(c)) {
+                throw error("expected '" + c + "'");
+            }
+            position++;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid token rule /" + regex + "/ at " + position + ": " + message);
+        }
+    }
+
+}
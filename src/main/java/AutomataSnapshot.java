@@ -0,0 +1,146 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * AutomataSnapshot.java
+ * ---------------
+ * Stores a compiled {@link Automata} as a compact binary resource, so the lexer can load its
+ * DFA at class-load time instead of compiling the token rules in every JVM.
+ *
+ * Layout of a snapshot:
+ * - magic number and format version
+ * - fingerprint of the token rules the automaton was compiled from
+ * - length and CRC32 of the payload
+ * - payload, as written by {@link Automata#writeTo(DataOutput)}
+ *
+ * A snapshot whose format version or rule fingerprint does not match the running code, or
+ * whose payload fails the checksum, is rejected as stale.
+ *
+ * The build runs {@link #main(String[])} after compiling the classes to generate the
+ * resource used by {@link TheLexer}.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class AutomataSnapshot {
+
+    /**
+     * Name of the lexer's snapshot resource on the classpath.
+     */
+    public static final String RESOURCE = "lexer.dfa";
+
+    private static final int MAGIC = 0x44464131; // "DFA1"
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Writes the snapshot of an automaton.
+     *
+     * @param dfa The automaton to store
+     * @param rules The description of the rules it was compiled from
+     * @param out The stream to write to
+     * @throws IOException If the stream cannot be written
+     */
+    public static void write(Automata dfa, String rules, OutputStream out) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        dfa.writeTo(new DataOutputStream(payload));
+        byte[] bytes = payload.toByteArray();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(fingerprint(rules));
+        data.writeInt(bytes.length);
+        data.writeLong(checksum(bytes));
+        data.write(bytes);
+        data.flush();
+    }
+
+    /**
+     * Reads a snapshot and checks that it was compiled from the given rules.
+     *
+     * @param in The stream to read from
+     * @param rules The description of the rules the caller expects
+     * @return The automaton stored in the snapshot
+     * @throws IOException If the snapshot is stale, corrupt or cannot be read
+     */
+    public static Automata read(InputStream in, String rules) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an automata snapshot");
+        }
+        int version = data.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Snapshot format " + version + " is not supported, expected " + FORMAT_VERSION);
+        }
+        if (data.readLong() != fingerprint(rules)) {
+            throw new IOException("Snapshot was compiled from different token rules");
+        }
+        int length = data.readInt();
+        long checksum = data.readLong();
+        if (length < 0) {
+            throw new IOException("Corrupt snapshot length");
+        }
+        byte[] bytes = data.readNBytes(length);
+        if (bytes.length != length || checksum(bytes) != checksum) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        return Automata.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Loads the lexer's automaton from the classpath snapshot, compiling the rules instead
+     * when the snapshot is missing or stale.
+     *
+     * @param rules The builder holding the lexer's token rules
+     * @return The automaton for the rules
+     */
+    public static Automata load(AutomataBuilder rules) {
+        try (InputStream in = AutomataSnapshot.class.getResourceAsStream("/" + RESOURCE)) {
+            if (in != null) {
+                return read(new BufferedInputStream(in), rules.describe());
+            }
+        } catch (IOException e) {
+            System.err.println("Ignoring " + RESOURCE + ": " + e.getMessage());
+        }
+        return rules.build();
+    }
+
+    private static long fingerprint(String rules) {
+        return checksum(rules.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Build step: compiles the lexer's token rules and writes the snapshot.
+     *
+     * @param args The path of the snapshot file to write
+     * @throws IOException If the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: AutomataSnapshot <output file>");
+            System.exit(2);
+        }
+        AutomataBuilder rules = TheLexer.tokenRules();
+        Automata dfa = rules.build();
+        Path output = Path.of(args[0]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            write(dfa, rules.describe(), out);
+        }
+        System.out.println("Wrote " + dfa.getStateCount() + " states to " + output);
+    }
+
+}
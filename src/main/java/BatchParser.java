@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * BatchParser.java
+ * ---------------
+ * Lexes and parses many files in one JVM, each on a virtual thread. Inputs are files,
+ * directories, whose files are all parsed, or glob patterns such as "src/**&#47;*.txt".
+ *
+ * A semaphore caps the number of files being parsed at once. Permits are taken before a file
+ * is handed to its thread, so walking the inputs waits for running parses and no more than
+ * that many threads and files are held in memory, however many files there are.
+ *
+ * A status line is printed as each file is done, followed by its diagnostics, and a summary
+ * is returned at the end. Files parsed without a cache are only validated: no syntax tree is
+ * built, since nothing would read it. Files are parsed with {@link TheParser#parse}, which
+ * parses those nested deeper than the stack of their thread allows again without recursion.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.2
+ */
+public class BatchParser {
+
+	private final int parallelism;
+	private final ParseCache cache;
+	private final PrintStream out;
+
+	/**
+	 * Constructs a new BatchParser.
+	 *
+	 * @param parallelism The number of files parsed at once
+	 * @param cache       The cache of parse results to use, or null to parse every file
+	 * @param out         The stream receiving the status of each file
+	 */
+	public BatchParser(int parallelism, ParseCache cache, PrintStream out) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+		this.parallelism = parallelism;
+		this.cache = cache;
+		this.out = out;
+	}
+
+	/**
+	 * Parses every file of a list of inputs and waits until all of them are done.
+	 *
+	 * @param inputs Files, directories or glob patterns
+	 * @return The summary of the files parsed
+	 * @throws IOException          If a directory cannot be walked
+	 * @throws InterruptedException If the thread is interrupted while waiting for a permit
+	 */
+	public Summary run(List<String> inputs) throws IOException, InterruptedException {
+		Summary summary = new Summary();
+		Semaphore permits = new Semaphore(parallelism);
+		long start = System.nanoTime();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (String input : inputs) {
+				try (Stream<Path> files = expand(input)) {
+					Iterator<Path> iterator = files.iterator();
+					while (iterator.hasNext()) {
+						Path file = iterator.next();
+						permits.acquire();
+						executor.execute(() -> {
+							try {
+								parse(file, summary);
+							} finally {
+								permits.release();
+							}
+						});
+					}
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+			}
+		}
+		summary.nanos = System.nanoTime() - start;
+		return summary;
+	}
+
+	/**
+	 * Lists the files of an input.
+	 *
+	 * @param input A file, a directory or a glob pattern
+	 * @return The regular files of the input, to be closed by the caller
+	 * @throws IOException If a directory cannot be walked
+	 */
+	static Stream<Path> expand(String input) throws IOException {
+		int glob = firstGlobCharacter(input);
+		if (glob < 0) {
+			Path path = Path.of(input);
+			return Files.isDirectory(path) ? Files.walk(path).filter(Files::isRegularFile) : Stream.of(path);
+		}
+		// walk from the directory before the first component holding a glob character
+		int separator = Math.max(input.lastIndexOf('/', glob), input.lastIndexOf(FileSystems.getDefault().getSeparator(), glob));
+		Path base = Path.of(separator < 0 ? "" : input.substring(0, separator + 1));
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+		if (!Files.isDirectory(base)) {
+			return Stream.empty();
+		}
+		return Files.walk(base).filter(path -> Files.isRegularFile(path) && matcher.matches(path));
+	}
+
+	private static int firstGlobCharacter(String input) {
+		for (int i = 0; i < input.length(); i++) {
+			if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void parse(Path file, Summary summary) {
+		TokenBuffer tokens;
+		ParseResult result;
+		try {
+			if (cache != null) {
+				ParseCache.Entry entry = cache.parse(file);
+				tokens = entry.getTokens();
+				result = entry.getResult();
+			} else {
+				TheLexer lexer = new TheLexer(file.toFile());
+				lexer.run();
+				tokens = lexer.getTokenBuffer();
+				result = TheParser.parse(tokens, file.toString(), false);
+			}
+		} catch (IOException | RuntimeException e) {
+			// a file that cannot be read or breaks the lexer must not stop the batch, nor be
+			// left out of its summary
+			summary.failed.increment();
+			out.println(file + ": failed, " + e);
+			return;
+		}
+		summary.files.increment();
+		summary.tokens.add(tokens.size());
+		StringBuilder status = new StringBuilder();
+		status.append(file).append(": ").append(result).append(" (").append(tokens.size()).append(" tokens)");
+		if (!result.isSuccess()) {
+			summary.filesWithErrors.increment();
+			summary.errors.add(result.getDiagnostics().size());
+			for (Diagnostic diagnostic : result.getDiagnostics()) {
+				status.append(System.lineSeparator()).append('\t').append(diagnostic);
+			}
+		}
+		// one call per file keeps its lines together
+		out.println(status);
+	}
+
+	/**
+	 * Totals of a batch: files parsed, with errors and failed to read, tokens, errors and
+	 * the time taken.
+	 */
+	public static class Summary {
+
+		private final LongAdder files = new LongAdder();
+		private final LongAdder filesWithErrors = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder tokens = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private long nanos;
+
+		public long getFiles() {
+			return files.sum();
+		}
+
+		public long getFilesWithErrors() {
+			return filesWithErrors.sum();
+		}
+
+		public long getFailed() {
+			return failed.sum();
+		}
+
+		public long getTokens() {
+			return tokens.sum();
+		}
+
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * Checks if every file was read and parsed without errors.
+		 *
+		 * @return true if no file had errors or failed
+		 */
+		public boolean isSuccess() {
+			return getFilesWithErrors() == 0 && getFailed() == 0;
+		}
+
+		@Override
+		public String toString() {
+			double seconds = Math.max(nanos, 1) / 1e9;
+			return String.format("Files: %d, with errors: %d, failed: %d%n" +
+							"Tokens: %d, errors: %d%n" +
+							"Time: %.3f s, %.0f files/s, %.0f tokens/s",
+					getFiles(), getFilesWithErrors(), getFailed(), getTokens(), getErrors(),
+					seconds, (getFiles() + getFailed()) / seconds, getTokens() / seconds);
+		}
+	}
+}
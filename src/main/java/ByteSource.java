@@ -0,0 +1,79 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ByteSource.java
+ * ---------------
+ * Exposes a region of a byte buffer, typically a memory-mapped file, as a CharSequence
+ * without decoding it. Every byte is read as one char, which is exact for ASCII input.
+ *
+ * Bytes of multi-byte UTF-8 characters show up as chars above 0x7F. The lexer's DFA has no
+ * transitions for them and every separator is ASCII, so tokens found over the raw bytes have
+ * the same boundaries as over the decoded text; {@link #toString()} decodes the region as
+ * UTF-8 to give such tokens their real value.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class ByteSource implements CharSequence {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Creates a view over all the remaining bytes of a buffer.
+     *
+     * @param buffer The buffer holding the input
+     */
+    public ByteSource(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
+    }
+
+    private ByteSource(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+        }
+        return new ByteSource(buffer, offset + start, end - start);
+    }
+
+    /**
+     * Decodes the region as UTF-8.
+     *
+     * @return The text of the region
+     */
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        boolean ascii = true;
+        for (byte b : bytes) {
+            if (b < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        return new String(bytes, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+}
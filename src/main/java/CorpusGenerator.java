@@ -0,0 +1,643 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * CorpusGenerator.java
+ * ---------------
+ * Writes random programs derived from a {@link Grammar}, by default the grammar of
+ * {@link TheParser}, to test the lexer and the parser at scale. The same seed and options
+ * always give the same programs, so a corpus of any size can be written again instead of
+ * being kept.
+ *
+ * A program is derived from the start rule by choosing an alternative of each rule at
+ * random. Options set:
+ * - the size of a program: the list right under the start rule, the members of a class or
+ *   the statements of a block, grows until the program is that long;
+ * - the nesting depth: how many times a rule may appear inside itself, such as an if inside
+ *   an if or an expression inside parentheses. At the limit, only the alternatives that can
+ *   be derived without the rule are chosen;
+ * - the mean length of the other lists, such as statements, parameters and operators;
+ * - the number of identifiers, earlier ones being used more often, as in real code;
+ * - the weight of each kind of token: an alternative that starts with a token is chosen
+ *   in proportion to its weight, which sets the mix of literals, operators and types.
+ *
+ * Tokens are separated by spaces, and statements and braces end their line.
+ *
+ * java CorpusGenerator [--seed N] [--files N] [--size BYTES] [--depth N] [--length N]
+ * [--identifiers N] DIRECTORY
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class CorpusGenerator {
+
+	private static final TokenKind[] KINDS = TokenKind.values();
+	// stems of the identifiers, none of them a keyword
+	private static final String[] STEMS = {
+			"value", "count", "index", "total", "size", "name", "result", "item",
+			"left", "right", "next", "first", "last", "sum", "limit", "flag"
+	};
+
+	private final int[][][] alternatives;
+	// whether an alternative ends with its own rule, so that it repeats
+	private final boolean[][] repeats;
+	// rules with an empty alternative and one that repeats, the lists of the grammar
+	private final boolean[] lists;
+	// the alternative of each rule with the shortest derivation
+	private final int[] shortest;
+	// avoids[r][rule][i]: the alternative can be derived without using rule r
+	private final boolean[][][] avoids;
+	// the decisions of the rules with labels, which the parser takes from tables
+	private final Grammar.Choice[] decisions;
+	private final ParseRule[][] labels;
+
+	private final SplittableRandom random;
+	private int depth = 3;
+	private int length = 3;
+	private String[] names;
+	private final double[] weights = new double[KINDS.length];
+
+	// state of the program being written, kept in a buffer while a decision may be undone
+	private Appendable out;
+	private final StringBuilder text = new StringBuilder();
+	private TokenKind[] kinds = new TokenKind[256];
+	private int kindCount;
+	private int checking;
+	private long size;
+	private long written;
+	private final int[] open;
+	private int[] saturated;
+	private int saturatedCount;
+	private TokenKind previous;
+	private boolean newLine;
+	private int braces;
+	private int parens;
+
+	/**
+	 * Constructs a generator of programs for {@link TheParser}.
+	 *
+	 * @param seed The seed of the random choices
+	 */
+	public CorpusGenerator(long seed) {
+		this(TheParser.GRAMMAR, seed);
+	}
+
+	/**
+	 * Constructs a generator of programs of a grammar.
+	 *
+	 * @param grammar The grammar
+	 * @param seed    The seed of the random choices
+	 */
+	public CorpusGenerator(Grammar grammar, long seed) {
+		int rules = grammar.ruleCount();
+		alternatives = new int[rules][][];
+		repeats = new boolean[rules][];
+		lists = new boolean[rules];
+		for (int rule = 0; rule < rules; rule++) {
+			alternatives[rule] = grammar.alternatives(rule);
+			repeats[rule] = new boolean[alternatives[rule].length];
+			boolean empty = false;
+			boolean repeating = false;
+			for (int i = 0; i < alternatives[rule].length; i++) {
+				int[] symbols = alternatives[rule][i];
+				repeats[rule][i] = symbols.length > 0 && symbols[symbols.length - 1] == -1 - rule;
+				empty |= symbols.length == 0;
+				repeating |= repeats[rule][i];
+			}
+			lists[rule] = empty && repeating;
+		}
+		decisions = new Grammar.Choice[rules];
+		labels = new ParseRule[rules][];
+		for (int rule = 0; rule < rules; rule++) {
+			labels[rule] = grammar.labels(rule);
+			for (ParseRule label : labels[rule]) {
+				if (label != null) {
+					decisions[rule] = grammar.choice(rule);
+					break;
+				}
+			}
+		}
+		shortest = shortest();
+		avoids = new boolean[rules][][];
+		for (int rule = 0; rule < rules; rule++) {
+			avoids[rule] = avoiding(rule);
+		}
+		random = new SplittableRandom(seed);
+		open = new int[rules];
+		saturated = new int[rules];
+		for (TokenKind kind : KINDS) {
+			weights[kind.ordinal()] = kind.getType().equals("OPERATOR") ? 0.03 : 1;
+		}
+		weights[TokenKind.IDENTIFIER.ordinal()] = 4;
+		names = names(100);
+	}
+
+	/**
+	 * Sets how many times a rule may appear inside itself. Defaults to 3.
+	 *
+	 * @param depth The nesting depth
+	 * @return This generator
+	 */
+	public CorpusGenerator depth(int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("Depth must not be negative: " + depth);
+		}
+		this.depth = depth;
+		return this;
+	}
+
+	/**
+	 * Sets the length of the lists inside a program: the alternatives that repeat a list
+	 * weigh that many times their weight, so a list whose only element has a weight of 1
+	 * is that long on average. Defaults to 3.
+	 *
+	 * @param length The mean number of elements
+	 * @return This generator
+	 */
+	public CorpusGenerator length(int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Length must not be negative: " + length);
+		}
+		this.length = length;
+		return this;
+	}
+
+	/**
+	 * Sets the number of distinct identifiers. Defaults to 100.
+	 *
+	 * @param count The number of identifiers
+	 * @return This generator
+	 */
+	public CorpusGenerator identifiers(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("At least one identifier is needed: " + count);
+		}
+		names = names(count);
+		return this;
+	}
+
+	private static String[] names(int count) {
+		String[] names = new String[count];
+		for (int i = 0; i < count; i++) {
+			names[i] = STEMS[i % STEMS.length] + (i < STEMS.length ? "" : Integer.toString(i / STEMS.length));
+		}
+		return names;
+	}
+
+	/**
+	 * Sets the weight of the alternatives starting with a kind of token. Weights default to
+	 * 1, except 4 for identifiers and 0.03 for operators, so that an expression has one or
+	 * two of them on average.
+	 *
+	 * @param kind   The kind of token
+	 * @param weight The weight, 0 to choose the alternatives only when nothing else can be
+	 * @return This generator
+	 */
+	public CorpusGenerator weight(TokenKind kind, double weight) {
+		if (!(weight >= 0) || Double.isInfinite(weight)) {
+			throw new IllegalArgumentException("Weight must be finite and not negative: " + weight);
+		}
+		weights[kind.ordinal()] = weight;
+		return this;
+	}
+
+	/**
+	 * Writes one program.
+	 *
+	 * @param out  Where to write the program
+	 * @param size The number of characters the program should have at least
+	 * @return The number of characters written
+	 * @throws IOException If the program cannot be written
+	 */
+	public long generate(Appendable out, long size) throws IOException {
+		this.out = out;
+		this.size = size;
+		written = 0;
+		text.setLength(0);
+		kindCount = 0;
+		checking = 0;
+		saturatedCount = 0;
+		previous = null;
+		newLine = false;
+		braces = 0;
+		parens = 0;
+		expand(0, false, false);
+		text.append('\n');
+		out.append(text);
+		return ++written;
+	}
+
+	/**
+	 * Writes one program into a string.
+	 *
+	 * @param size The number of characters the program should have at least
+	 * @return The program
+	 */
+	public String generate(long size) {
+		StringBuilder text = new StringBuilder();
+		try {
+			generate(text, size);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Writes programs into files named corpus-00000.txt, corpus-00001.txt and so on,
+	 * creating the directory if needed.
+	 *
+	 * @param directory The directory of the files
+	 * @param files     The number of files
+	 * @param size      The number of characters each file should have at least
+	 * @return The number of characters written
+	 * @throws IOException If a file cannot be written
+	 */
+	public long write(Path directory, int files, long size) throws IOException {
+		Files.createDirectories(directory);
+		long total = 0;
+		for (int i = 0; i < files; i++) {
+			try (Writer writer = Files.newBufferedWriter(directory.resolve(String.format("corpus-%05d.txt", i)))) {
+				total += generate(writer, size);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Derives a rule. An alternative ending with its own rule is repeated in a loop, so long
+	 * lists take no stack.
+	 *
+	 * The parser chooses the alternatives of a rule with labels from a table, taking the
+	 * first one where the next tokens do not tell them apart, so it reads "f(x) + 1;" as a
+	 * call followed by an error. Such an alternative is derived again until the table
+	 * chooses it. Tokens after the alternative are not known yet, so the end of the input
+	 * stands for them.
+	 *
+	 * @param rule      The number of the rule
+	 * @param finishing Whether to take the shortest derivation, once no choice is left
+	 * @param top       Whether the rule is used by the start rule
+	 */
+	private void expand(int rule, boolean finishing, boolean top) throws IOException {
+		// the deepest instance of a rule allowed: what it derives must not use it again
+		boolean saturates = ++open[rule] == depth + 1;
+		if (saturates) {
+			saturated[saturatedCount++] = rule;
+		}
+		Grammar.Choice decision = decisions[rule];
+		if (decision != null) {
+			checking++;
+		}
+		while (true) {
+			int choice = finishing ? shortest[rule] : choose(rule, top);
+			if (choice < 0) {
+				finishing = true;
+				choice = shortest[rule];
+			}
+			Mark mark = decision == null ? null : new Mark();
+			int[] symbols = alternatives[rule][choice];
+			int end = repeats[rule][choice] ? symbols.length - 1 : symbols.length;
+			for (int i = 0; i < end; i++) {
+				if (symbols[i] >= 0) {
+					token(KINDS[symbols[i]]);
+				} else {
+					expand(-1 - symbols[i], finishing, rule == 0);
+				}
+			}
+			if (mark != null && decision.predict(kinds, mark.tokens, kindCount) != labels[rule][choice]) {
+				mark.restore();
+				continue;
+			}
+			if (end == symbols.length) {
+				break;
+			}
+		}
+		if (saturates) {
+			saturatedCount--;
+		}
+		open[rule]--;
+		if (decision != null && --checking == 0 && text.length() >= 1 << 13) {
+			// nothing written can be undone any more
+			out.append(text);
+			text.setLength(0);
+			kindCount = 0;
+		}
+	}
+
+	/**
+	 * Chooses an alternative of a rule at random among the ones that avoid the rules nested
+	 * as deep as allowed. A list right under the start rule repeats until the program is long
+	 * enough.
+	 *
+	 * @return The index of the alternative, or -1 if none avoids those rules
+	 */
+	private int choose(int rule, boolean top) {
+		int[][] choices = alternatives[rule];
+		double[] chances = new double[choices.length];
+		double repeating = 0;
+		double stopping = 0;
+		for (int i = 0; i < choices.length; i++) {
+			if (!isAllowed(rule, i)) {
+				continue;
+			}
+			int[] symbols = choices[i];
+			chances[i] = symbols.length > 0 && symbols[0] >= 0 ? weights[symbols[0]] : 1;
+			if (repeats[rule][i]) {
+				repeating += chances[i];
+			} else {
+				stopping += chances[i];
+			}
+		}
+		if (repeating + stopping == 0) {
+			return -1;
+		}
+		if (lists[rule] && repeating > 0 && stopping > 0) {
+			for (int i = 0; i < choices.length; i++) {
+				if (top) {
+					chances[i] = repeats[rule][i] == written < size ? chances[i] : 0;
+				} else if (repeats[rule][i]) {
+					chances[i] *= length;
+				}
+			}
+		}
+		double total = 0;
+		for (double chance : chances) {
+			total += chance;
+		}
+		double pick = random.nextDouble() * total;
+		int last = -1;
+		for (int i = 0; i < choices.length; i++) {
+			if (chances[i] > 0) {
+				last = i;
+				pick -= chances[i];
+				if (pick < 0) {
+					return i;
+				}
+			}
+		}
+		// rounding may leave a little of the total
+		return last;
+	}
+
+	private boolean isAllowed(int rule, int alternative) {
+		for (int i = 0; i < saturatedCount; i++) {
+			if (!avoids[saturated[i]][rule][alternative]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the alternative of each rule with the fewest levels of rules below it.
+	 */
+	private int[] shortest() {
+		int rules = alternatives.length;
+		int[] heights = new int[rules];
+		int[] choices = new int[rules];
+		Arrays.fill(heights, Integer.MAX_VALUE);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int rule = 0; rule < rules; rule++) {
+				for (int i = 0; i < alternatives[rule].length; i++) {
+					int height = 1;
+					for (int symbol : alternatives[rule][i]) {
+						if (symbol < 0) {
+							int below = heights[-1 - symbol];
+							height = below == Integer.MAX_VALUE ? below : Math.max(height, below + 1);
+						}
+						if (height == Integer.MAX_VALUE) {
+							break;
+						}
+					}
+					if (height < heights[rule]) {
+						heights[rule] = height;
+						choices[rule] = i;
+						changed = true;
+					}
+				}
+			}
+		}
+		for (int rule = 0; rule < rules; rule++) {
+			if (heights[rule] == Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Rule " + rule + " derives no sequence of tokens");
+			}
+		}
+		return choices;
+	}
+
+	/**
+	 * Finds the alternatives of each rule that can be derived without using a rule. An
+	 * alternative that repeats its rule does not nest it, so it only needs the rest of its
+	 * symbols and a way for the rule to stop.
+	 */
+	private boolean[][] avoiding(int avoided) {
+		int rules = alternatives.length;
+		// rules that can be derived without the avoided one, which needs a way to stop
+		boolean[] derivable = new boolean[rules];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int rule = 0; rule < rules; rule++) {
+				if (rule == avoided || derivable[rule]) {
+					continue;
+				}
+				for (int i = 0; i < alternatives[rule].length; i++) {
+					int[] symbols = alternatives[rule][i];
+					if (!repeats[rule][i] && isDerivable(symbols, symbols.length, derivable)) {
+						derivable[rule] = true;
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+		boolean[][] alternativesAvoiding = new boolean[rules][];
+		for (int rule = 0; rule < rules; rule++) {
+			int count = alternatives[rule].length;
+			alternativesAvoiding[rule] = new boolean[count];
+			boolean stops = false;
+			for (int i = 0; i < count; i++) {
+				int[] symbols = alternatives[rule][i];
+				if (!repeats[rule][i]) {
+					alternativesAvoiding[rule][i] = isDerivable(symbols, symbols.length, derivable);
+					stops |= alternativesAvoiding[rule][i];
+				}
+			}
+			for (int i = 0; i < count; i++) {
+				int[] symbols = alternatives[rule][i];
+				if (repeats[rule][i]) {
+					alternativesAvoiding[rule][i] = stops && isDerivable(symbols, symbols.length - 1, derivable);
+				}
+			}
+		}
+		return alternativesAvoiding;
+	}
+
+	private static boolean isDerivable(int[] symbols, int end, boolean[] derivable) {
+		for (int i = 0; i < end; i++) {
+			if (symbols[i] < 0 && !derivable[-1 - symbols[i]]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void token(TokenKind kind) {
+		String lexeme = switch (kind) {
+			case IDENTIFIER -> identifier();
+			case INTEGER -> Integer.toString(random.nextInt(1000));
+			case FLOAT -> random.nextInt(100) + "." + random.nextInt(100);
+			case HEXADECIMAL -> "0x" + Integer.toHexString(random.nextInt(1 << 16)).toUpperCase();
+			case BINARY -> "0b" + Integer.toBinaryString(random.nextInt(256));
+			case OCTAL -> "0" + Integer.toOctalString(1 + random.nextInt(511));
+			case STRING -> '"' + identifier() + ' ' + identifier() + '"';
+			case CHAR -> "'" + (char) ('a' + random.nextInt(26)) + "'";
+			default -> {
+				if (kind.getText() == null) {
+					throw new IllegalArgumentException("Cannot write a token of kind " + kind);
+				}
+				yield kind.getText();
+			}
+		};
+		if (kind == TokenKind.RIGHT_BRACE) {
+			braces--;
+			newLine = true;
+		}
+		int start = text.length();
+		if (newLine) {
+			text.append('\n');
+			for (int i = 0; i < braces; i++) {
+				text.append('\t');
+			}
+		} else if (previous != null && isSpaced(previous, kind)) {
+			text.append(' ');
+		}
+		text.append(lexeme);
+		written += text.length() - start;
+		if (kindCount == kinds.length) {
+			kinds = Arrays.copyOf(kinds, kindCount * 2);
+		}
+		kinds[kindCount++] = kind;
+		switch (kind) {
+			case LEFT_BRACE -> braces++;
+			case LEFT_PAREN -> parens++;
+			case RIGHT_PAREN -> parens--;
+			default -> {
+			}
+		}
+		newLine = kind == TokenKind.LEFT_BRACE || kind == TokenKind.RIGHT_BRACE || kind == TokenKind.COLON
+				|| kind == TokenKind.SEMICOLON && parens == 0;
+		previous = kind;
+	}
+
+	/**
+	 * Where a derivation started, to undo it.
+	 */
+	private class Mark {
+		final int length = text.length();
+		final int tokens = kindCount;
+		final long written = CorpusGenerator.this.written;
+		final TokenKind previous = CorpusGenerator.this.previous;
+		final boolean newLine = CorpusGenerator.this.newLine;
+		final int braces = CorpusGenerator.this.braces;
+		final int parens = CorpusGenerator.this.parens;
+
+		void restore() {
+			text.setLength(length);
+			kindCount = tokens;
+			CorpusGenerator.this.written = written;
+			CorpusGenerator.this.previous = previous;
+			CorpusGenerator.this.newLine = newLine;
+			CorpusGenerator.this.braces = braces;
+			CorpusGenerator.this.parens = parens;
+		}
+	}
+
+	private static boolean isSpaced(TokenKind previous, TokenKind kind) {
+		switch (kind) {
+			case RIGHT_PAREN, COMMA, SEMICOLON, COLON:
+				return false;
+			case LEFT_PAREN:
+				return previous != TokenKind.IDENTIFIER && previous != TokenKind.LEFT_PAREN;
+			default:
+				return previous != TokenKind.LEFT_PAREN;
+		}
+	}
+
+	private String identifier() {
+		// the square of a uniform number favours the first names
+		double uniform = random.nextDouble();
+		return names[(int) (names.length * uniform * uniform)];
+	}
+
+	public static void main(String[] args) throws IOException {
+		long seed = 0;
+		int files = 1;
+		long size = 1 << 20;
+		int depth = 3;
+		int length = 3;
+		int identifiers = 100;
+		Path directory = null;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--seed" -> seed = Long.parseLong(option(args, ++i));
+				case "--files" -> files = Integer.parseInt(option(args, ++i));
+				case "--size" -> size = parseSize(option(args, ++i));
+				case "--depth" -> depth = Integer.parseInt(option(args, ++i));
+				case "--length" -> length = Integer.parseInt(option(args, ++i));
+				case "--identifiers" -> identifiers = Integer.parseInt(option(args, ++i));
+				default -> {
+					if (args[i].startsWith("--") || directory != null) {
+						usage("Unexpected argument " + args[i]);
+					}
+					directory = Path.of(args[i]);
+				}
+			}
+		}
+		if (directory == null) {
+			usage("No directory given");
+		}
+		CorpusGenerator generator = new CorpusGenerator(seed).depth(depth).length(length).identifiers(identifiers);
+		long start = System.nanoTime();
+		long written = generator.write(directory, files, size);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Wrote %d files, %d bytes in %.3f s%n", files, written, seconds);
+	}
+
+	/**
+	 * Reads a size such as "512", "64k", "10m" or "1g".
+	 */
+	private static long parseSize(String text) {
+		long unit = switch (Character.toLowerCase(text.charAt(text.length() - 1))) {
+			case 'k' -> 1L << 10;
+			case 'm' -> 1L << 20;
+			case 'g' -> 1L << 30;
+			default -> 1;
+		};
+		return Long.parseLong(unit == 1 ? text : text.substring(0, text.length() - 1)) * unit;
+	}
+
+	private static String option(String[] args, int index) {
+		if (index >= args.length) {
+			usage("Missing value of " + args[index - 1]);
+		}
+		return args[index];
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: java CorpusGenerator [--seed N] [--files N] [--size BYTES] [--depth N] [--length N] "
+				+ "[--identifiers N] DIRECTORY");
+		System.exit(2);
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * Diagnostic.java
+ * ---------------
+ * Describes one syntax error found by the parser: its error code, the line where it was
+ * found and the token the parser was looking at.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class Diagnostic {
+
+	private final int code;
+	private final int lineNumber;
+	private final String token;
+
+	/**
+	 * Constructs a new Diagnostic.
+	 *
+	 * @param code       The error code, as numbered by the parser
+	 * @param lineNumber The line number where the error was found
+	 * @param token      The value of the token where the error was found, empty at the end of input
+	 */
+	public Diagnostic(int code, int lineNumber, String token) {
+		this.code = code;
+		this.lineNumber = lineNumber;
+		this.token = token;
+	}
+
+	public int getCode() {
+		return code;
+	}
+
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	public String getToken() {
+		return token;
+	}
+
+	@Override
+	public String toString() {
+		return "Error " + code + " at line " + lineNumber + ", token: " + token;
+	}
+}
@@ -0,0 +1,495 @@
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Grammar.java
+ * ---------------
+ * Context-free grammar written as text, compiled into the tables that choose between the
+ * alternatives of a rule. The text is a list of rules such as
+ *
+ * <pre>
+ * return      : KW_RETURN value SEMICOLON
+ * value       : expression
+ *             |
+ * </pre>
+ *
+ * where names in capitals are {@link TokenKind}s, other names are rules, "|" separates the
+ * alternatives of a rule, an empty alternative matches nothing, and "# NAME" after an
+ * alternative labels it with a {@link ParseRule}. Words must be separated by spaces. The
+ * first rule is the start of the grammar, followed by the end of the input.
+ *
+ * A {@link Choice} is a decision table: a lookup on the kind of the current token gives the
+ * alternative, or a table for the next token where alternatives share the first one, as
+ * "x = 1;" and "x + 1;" do, and so on up to three tokens. The tables are computed from the
+ * FIRST and FOLLOW sets of the alternatives, found by following them through the grammar one
+ * token at a time only as far as they need to be told apart. Where they cannot be, the
+ * alternative listed first is chosen, and where the next token starts none of the
+ * alternatives still possible, the last of them is, so that its rule reports the error.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.1
+ */
+public class Grammar {
+
+	// the longest sequence of tokens looked at to choose an alternative
+	private static final int K = 3;
+	private static final TokenKind[] KINDS = TokenKind.values();
+	// position past the end of the input, where only EOF is read
+	private static final Frame END = new Frame(-1, 0, null);
+	// parent of the positions whose rule is followed by nothing, to find FIRST sets
+	private static final Frame STOP = new Frame(-2, 0, null);
+
+	private final Map<String, Rule> rules = new LinkedHashMap<>();
+	private final List<Rule> ruleList = new ArrayList<>();
+	private final List<Alternative> alternatives = new ArrayList<>();
+
+	/**
+	 * Reads a grammar.
+	 *
+	 * @param source The rules of the grammar
+	 * @throws IllegalArgumentException If the text is malformed, or uses a token kind, rule
+	 *                                  or label that does not exist
+	 */
+	public Grammar(String source) {
+		read(source);
+	}
+
+	/**
+	 * Returns the tokens that may start a rule.
+	 *
+	 * @param name The name of the rule
+	 * @return The kinds of the tokens, without the tokens following the rule if it may be empty
+	 */
+	public Set<TokenKind> first(String name) {
+		Set<Frame> frames = new HashSet<>();
+		Set<Frame> visited = new HashSet<>();
+		for (Alternative alternative : rule(name).alternatives) {
+			closure(new Frame(alternative.id, 0, STOP), visited, frames);
+		}
+		return kinds(frames);
+	}
+
+	/**
+	 * Returns the tokens that may follow a rule.
+	 *
+	 * @param name The name of the rule
+	 * @return The kinds of the tokens, with {@link TokenKind#EOF} if the rule may end the input
+	 */
+	public Set<TokenKind> follow(String name) {
+		Set<Frame> frames = new HashSet<>();
+		Set<Frame> visited = new HashSet<>();
+		for (Frame follower : rule(name).followers) {
+			closure(follower, visited, frames);
+		}
+		return kinds(frames);
+	}
+
+	/**
+	 * Returns the number of rules. Rules are numbered in the order they are written, from 0
+	 * for the start rule.
+	 *
+	 * @return The number of rules
+	 */
+	int ruleCount() {
+		return ruleList.size();
+	}
+
+	/**
+	 * Returns the number of a rule.
+	 *
+	 * @param name The name of the rule
+	 * @return The number of the rule
+	 * @throws IllegalArgumentException If the rule is not defined
+	 */
+	int ruleNumber(String name) {
+		return rule(name).index;
+	}
+
+	/**
+	 * Returns the alternatives of a rule, each as its symbols: the ordinal of a token kind,
+	 * or -1 minus the number of a rule.
+	 *
+	 * @param rule The number of the rule
+	 * @return The symbols of each alternative, in the order they are written
+	 */
+	int[][] alternatives(int rule) {
+		List<Alternative> choices = ruleList.get(rule).alternatives;
+		int[][] symbols = new int[choices.size()][];
+		for (int i = 0; i < symbols.length; i++) {
+			symbols[i] = choices.get(i).symbols.clone();
+		}
+		return symbols;
+	}
+
+	/**
+	 * Returns the labels of the alternatives of a rule.
+	 *
+	 * @param rule The number of the rule
+	 * @return The label of each alternative, null where it has none
+	 */
+	ParseRule[] labels(int rule) {
+		List<Alternative> choices = ruleList.get(rule).alternatives;
+		ParseRule[] labels = new ParseRule[choices.size()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = choices.get(i).label;
+		}
+		return labels;
+	}
+
+	/**
+	 * Compiles the alternatives of a rule into a decision table.
+	 *
+	 * @param name     The name of the rule
+	 * @param fallback The label chosen when the current token starts no alternative, or
+	 *                 null to choose none
+	 * @return The decision
+	 */
+	public Choice choice(String name, ParseRule fallback) {
+		return choice(rule(name), fallback);
+	}
+
+	/**
+	 * Compiles the alternatives of a rule into a decision table that chooses none when the
+	 * current token starts no alternative.
+	 *
+	 * @param rule The number of the rule
+	 * @return The decision
+	 */
+	Choice choice(int rule) {
+		return choice(ruleList.get(rule), null);
+	}
+
+	private Choice choice(Rule rule, ParseRule fallback) {
+		List<Alternative> choices = rule.alternatives;
+		List<Set<Frame>> positions = new ArrayList<>();
+		for (Alternative alternative : choices) {
+			Set<Frame> frames = new HashSet<>();
+			closure(new Frame(alternative.id, 0, null), new HashSet<>(), frames);
+			positions.add(frames);
+		}
+		return new Choice(decide(choices, positions, 0, fallback));
+	}
+
+	/**
+	 * Decision between the alternatives of a rule, taken on the next tokens of a source.
+	 */
+	public static class Choice {
+
+		// a label, or a table of the entries for each kind of the next token
+		private final Object root;
+
+		private Choice(Object root) {
+			this.root = root;
+		}
+
+		/**
+		 * Chooses the alternative starting at the current token. Only looks past it when
+		 * alternatives start with the same token.
+		 *
+		 * @param tokens The source of the tokens, left unchanged
+		 * @return The label of the alternative, or null for an empty or unlabeled alternative
+		 * or for no alternative at all
+		 */
+		public ParseRule predict(TokenSource tokens) {
+			Object entry = root;
+			for (int lookahead = 0; entry instanceof Object[] table; lookahead++) {
+				entry = table[tokens.kind(lookahead).ordinal()];
+			}
+			return (ParseRule) entry;
+		}
+
+		/**
+		 * Chooses the alternative starting at a token of a list, as {@link #predict(TokenSource)}
+		 * does, reading the end of the input past the last token.
+		 *
+		 * @param kinds The kinds of the tokens
+		 * @param start The index of the current token
+		 * @param end   The index past the last token
+		 * @return The label of the alternative, or null as {@link #predict(TokenSource)} returns
+		 */
+		ParseRule predict(TokenKind[] kinds, int start, int end) {
+			Object entry = root;
+			for (int i = start; entry instanceof Object[] table; i++) {
+				entry = table[(i < end ? kinds[i] : TokenKind.EOF).ordinal()];
+			}
+			return (ParseRule) entry;
+		}
+	}
+
+	/**
+	 * Builds the decision between the alternatives still possible after a number of tokens.
+	 *
+	 * @param choices   The alternatives of the rule
+	 * @param positions Where each alternative may be after the tokens seen, each position
+	 *                  before a token; empty for the alternatives not possible
+	 * @param depth     The number of tokens seen
+	 * @param fallback  The label when the next token is possible in no alternative
+	 * @return A label, or a table of the decisions after each kind of the next token
+	 */
+	private Object decide(List<Alternative> choices, List<Set<Frame>> positions, int depth, ParseRule fallback) {
+		int firstPossible = -1;
+		int lastPossible = -1;
+		for (int i = 0; i < choices.size(); i++) {
+			if (!positions.get(i).isEmpty()) {
+				firstPossible = firstPossible < 0 ? i : firstPossible;
+				lastPossible = i;
+			}
+		}
+		if (firstPossible < 0) {
+			return fallback;
+		}
+		// the first alternative wins wherever the others could also be chosen
+		if (firstPossible == lastPossible || depth == K || subsumes(positions, firstPossible, K - depth)) {
+			return choices.get(firstPossible).label;
+		}
+		ParseRule otherwise = depth == 0 ? fallback : choices.get(lastPossible).label;
+		Object[] table = new Object[KINDS.length];
+		for (TokenKind kind : KINDS) {
+			List<Set<Frame>> next = new ArrayList<>();
+			for (Set<Frame> frames : positions) {
+				next.add(advance(frames, kind.ordinal()));
+			}
+			table[kind.ordinal()] = decide(choices, next, depth + 1, otherwise);
+		}
+		return table;
+	}
+
+	/**
+	 * Checks if every sequence of tokens that may come next in the other alternatives may
+	 * also come next in one of them.
+	 */
+	private boolean subsumes(List<Set<Frame>> positions, int alternative, int length) {
+		Set<TokenKind> first = kinds(positions.get(alternative));
+		for (Set<Frame> frames : positions) {
+			if (!first.containsAll(kinds(frames))) {
+				return false;
+			}
+		}
+		Set<List<Integer>> sequences = sequences(positions.get(alternative), length);
+		for (Set<Frame> frames : positions) {
+			if (frames != positions.get(alternative) && !sequences.containsAll(sequences(frames, length))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Set<List<Integer>> sequences(Set<Frame> frames, int length) {
+		Set<List<Integer>> sequences = new HashSet<>();
+		collect(frames, new ArrayList<>(), length, sequences);
+		return sequences;
+	}
+
+	private void collect(Set<Frame> frames, List<Integer> prefix, int length, Set<List<Integer>> sequences) {
+		if (length == 0) {
+			sequences.add(List.copyOf(prefix));
+			return;
+		}
+		for (TokenKind kind : kinds(frames)) {
+			prefix.add(kind.ordinal());
+			collect(advance(frames, kind.ordinal()), prefix, length - 1, sequences);
+			prefix.remove(prefix.size() - 1);
+		}
+	}
+
+	/**
+	 * Moves over a token from the positions before it.
+	 *
+	 * @param frames The positions, each before a token
+	 * @param kind   The ordinal of the kind of the token
+	 * @return The positions before the next token
+	 */
+	private Set<Frame> advance(Set<Frame> frames, int kind) {
+		Set<Frame> next = new HashSet<>();
+		Set<Frame> visited = new HashSet<>();
+		for (Frame frame : frames) {
+			if (frame == END) {
+				if (kind == TokenKind.EOF.ordinal()) {
+					next.add(END);
+				}
+			} else if (alternatives.get(frame.alternative).symbols[frame.dot] == kind) {
+				closure(new Frame(frame.alternative, frame.dot + 1, frame.parent), visited, next);
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Finds the positions before a token that can be reached from a position without
+	 * reading any: rules are entered, and the ones that end return to their parent or, if
+	 * they have none, to every place of the grammar where they are used.
+	 */
+	private void closure(Frame frame, Set<Frame> visited, Set<Frame> frames) {
+		if (frame == STOP || !visited.add(frame)) {
+			return;
+		}
+		if (frame == END) {
+			frames.add(END);
+			return;
+		}
+		Alternative alternative = alternatives.get(frame.alternative);
+		if (frame.dot < alternative.symbols.length) {
+			int symbol = alternative.symbols[frame.dot];
+			if (symbol >= 0) {
+				frames.add(frame);
+				return;
+			}
+			Frame parent = new Frame(frame.alternative, frame.dot + 1, frame.parent);
+			for (Alternative expansion : ruleList.get(-1 - symbol).alternatives) {
+				closure(new Frame(expansion.id, 0, parent), visited, frames);
+			}
+		} else if (frame.parent != null) {
+			closure(frame.parent, visited, frames);
+		} else {
+			for (Frame follower : ruleList.get(alternative.rule).followers) {
+				closure(follower, visited, frames);
+			}
+		}
+	}
+
+	private Set<TokenKind> kinds(Set<Frame> frames) {
+		Set<TokenKind> kinds = EnumSet.noneOf(TokenKind.class);
+		for (Frame frame : frames) {
+			kinds.add(frame == END ? TokenKind.EOF : KINDS[alternatives.get(frame.alternative).symbols[frame.dot]]);
+		}
+		return kinds;
+	}
+
+	private Rule rule(String name) {
+		Rule rule = rules.get(name);
+		if (rule == null) {
+			throw new IllegalArgumentException("Rule not defined: " + name);
+		}
+		return rule;
+	}
+
+	private void read(String source) {
+		String[] words = source.trim().split("\\s+");
+		List<List<String>> bodies = new ArrayList<>();
+		Rule rule = null;
+		List<String> body = null;
+		for (int i = 0; i < words.length; i++) {
+			String word = words[i];
+			if (i + 1 < words.length && words[i + 1].equals(":")) {
+				if (rules.containsKey(word)) {
+					throw new IllegalArgumentException("Rule defined twice: " + word);
+				}
+				rule = new Rule(ruleList.size());
+				rules.put(word, rule);
+				ruleList.add(rule);
+				body = addAlternative(rule, bodies);
+				i++;
+			} else if (rule == null) {
+				throw new IllegalArgumentException("Expected a rule name and ':' before " + word);
+			} else if (word.equals("|")) {
+				body = addAlternative(rule, bodies);
+			} else if (word.equals("#")) {
+				if (i + 1 == words.length) {
+					throw new IllegalArgumentException("Expected a label after '#'");
+				}
+				alternatives.get(alternatives.size() - 1).label = ParseRule.valueOf(words[++i]);
+			} else {
+				body.add(word);
+			}
+		}
+		// rules may be used before they are defined, so symbols are resolved at the end
+		for (Alternative alternative : alternatives) {
+			List<String> symbols = bodies.get(alternative.id);
+			alternative.symbols = new int[symbols.size()];
+			for (int i = 0; i < symbols.size(); i++) {
+				alternative.symbols[i] = symbol(symbols.get(i));
+				if (alternative.symbols[i] < 0) {
+					ruleList.get(-1 - alternative.symbols[i]).followers.add(new Frame(alternative.id, i + 1, null));
+				}
+			}
+		}
+		if (!ruleList.isEmpty()) {
+			ruleList.get(0).followers.add(END);
+		}
+	}
+
+	private List<String> addAlternative(Rule rule, List<List<String>> bodies) {
+		Alternative alternative = new Alternative(alternatives.size(), rule.index);
+		alternatives.add(alternative);
+		rule.alternatives.add(alternative);
+		List<String> body = new ArrayList<>();
+		bodies.add(body);
+		return body;
+	}
+
+	/**
+	 * Encodes a symbol: a token kind as its ordinal, a rule as -1 minus its index.
+	 */
+	private int symbol(String word) {
+		if (Character.isUpperCase(word.charAt(0))) {
+			return TokenKind.valueOf(word).ordinal();
+		}
+		return -1 - rule(word).index;
+	}
+
+	/**
+	 * A rule: its alternatives, and the positions right after each place it is used.
+	 */
+	private static class Rule {
+		final int index;
+		final List<Alternative> alternatives = new ArrayList<>();
+		final List<Frame> followers = new ArrayList<>();
+
+		Rule(int index) {
+			this.index = index;
+		}
+	}
+
+	/**
+	 * One alternative of a rule: its symbols and its label.
+	 */
+	private static class Alternative {
+		final int id;
+		final int rule;
+		int[] symbols;
+		ParseRule label;
+
+		Alternative(int id, int rule) {
+			this.id = id;
+			this.rule = rule;
+		}
+	}
+
+	/**
+	 * A position in an alternative, with the position to return to when it ends, or null
+	 * if it may return to any place its rule is used.
+	 */
+	private static class Frame {
+		final int alternative;
+		final int dot;
+		final Frame parent;
+		private final int hash;
+
+		Frame(int alternative, int dot, Frame parent) {
+			this.alternative = alternative;
+			this.dot = dot;
+			this.parent = parent;
+			this.hash = (alternative * 31 + dot) * 31 + Objects.hashCode(parent);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Frame frame && frame.alternative == alternative && frame.dot == dot
+					&& Objects.equals(frame.parent, parent);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,579 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * IncrementalDocument.java
+ * ---------------
+ * Source text kept lexed and parsed while it is edited line by line, redoing only the work an
+ * edit can affect instead of running the lexer and the parser over the whole text again.
+ *
+ * Each line keeps its tokens and the lexer state before it. An edit re-lexes the new lines
+ * from the state before them, then goes on with the lines after them only until the state
+ * matches the one stored for the next line; that only happens later when the edit opened or
+ * closed a block comment.
+ *
+ * When the text is a class, each member (a method or a variable) keeps its subtree and
+ * diagnostics, together with the furthest token the parser looked at while parsing it. An
+ * edit re-parses from the first member that looked at an edited line, and stops at the first
+ * member that starts where an old member after the edit started: from there the parser meets
+ * the same tokens in the same state, so the old members are reused. Members are parsed with
+ * line numbers relative to their first line and shifted when read, so that inserting lines
+ * above them does not change them. Edits to the class header, and texts that are not a class,
+ * are parsed again in full. Text nested deeper than the stack of the thread allows is parsed
+ * again with an {@link IterativeParser}.
+ *
+ * Lines end at "\n", "\r" or "\r\n", as with {@link TokenStream}, whose tokens the document
+ * produces. {@link #getTree()} assembles the tree of the whole text from the subtrees of the
+ * members, which copies them, and keeps it until the next edit.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.2
+ */
+public class IncrementalDocument {
+
+	private final TheLexer lexer = new TheLexer(null);
+	private final List<Line> lines = new ArrayList<>();
+	// interns the identifiers of every line, so their ids hold across lines
+	private final SymbolTable symbolTable = new SymbolTable();
+	// state after the last line
+	private LexerState endState;
+
+	// the text is "class Name { members }", parsed member by member
+	private boolean classForm;
+	// result of the whole text when it is not a class
+	private ParseResult whole;
+	private String className;
+	private int classLine;
+	private int nameLine;
+	// position after the "{" of the class
+	private long headerEnd;
+	private final List<Member> members = new ArrayList<>();
+	// error after the last member: missing "}" or tokens after it
+	private Diagnostic footer;
+	private SyntaxTree tree;
+
+	private int relexedLines;
+	private int reparsedMembers;
+
+	/**
+	 * Creates a document, lexing and parsing its text.
+	 *
+	 * @param text The text of the document
+	 */
+	public IncrementalDocument(CharSequence text) {
+		endState = lexer.initialState();
+		replace(0, 0, split(text));
+	}
+
+	public int getLineCount() {
+		return lines.size();
+	}
+
+	public String getLine(int index) {
+		return lines.get(index).text;
+	}
+
+	/**
+	 * Replaces one line.
+	 *
+	 * @param index The index of the line, from 0
+	 * @param text  The new text of the line, without a line terminator
+	 */
+	public void setLine(int index, String text) {
+		replaceLines(index, index + 1, List.of(text));
+	}
+
+	/**
+	 * Replaces a range of lines with other lines, which may be more or fewer. An empty range
+	 * inserts lines and an empty replacement removes them.
+	 *
+	 * @param from        The index of the first line replaced, from 0
+	 * @param to          The index after the last line replaced
+	 * @param replacement The new lines, without line terminators
+	 * @throws IndexOutOfBoundsException If the range is not within the document
+	 */
+	public void replaceLines(int from, int to, List<String> replacement) {
+		replace(from, to, replacement);
+	}
+
+	private void replace(int from, int to, List<String> replacement) {
+		Objects.checkFromToIndex(from, to, lines.size());
+		LexerState state = (from < lines.size() ? lines.get(from).before : endState).copy();
+		lines.subList(from, to).clear();
+		int index = from;
+		for (String text : replacement) {
+			lines.add(index++, lex(state, text));
+		}
+		while (index < lines.size() && !state.sameContext(lines.get(index).before)) {
+			lines.set(index, lex(state, lines.get(index).text));
+			index++;
+		}
+		if (index == lines.size()) {
+			endState = state;
+		}
+		relexedLines = index - from;
+		reparsedMembers = 0;
+		tree = null;
+		if (!classForm || from <= lineOf(headerEnd)) {
+			parseAll();
+		} else {
+			reparse(from, index, replacement.size() - (to - from));
+		}
+	}
+
+	/**
+	 * Returns the diagnostics of the errors in the text.
+	 *
+	 * @return The diagnostics, in the order they are found
+	 */
+	public List<Diagnostic> getDiagnostics() {
+		if (!classForm) {
+			return whole.getDiagnostics();
+		}
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		for (Member member : members) {
+			for (Diagnostic diagnostic : member.diagnostics) {
+				diagnostics.add(new Diagnostic(diagnostic.getCode(), diagnostic.getLineNumber() + lineOf(member.start),
+						diagnostic.getToken()));
+			}
+		}
+		if (footer != null) {
+			diagnostics.add(footer);
+		}
+		return diagnostics;
+	}
+
+	/**
+	 * Returns the tree of the whole text, the same tree a parse of the whole text builds.
+	 *
+	 * @return The tree
+	 */
+	public SyntaxTree getTree() {
+		if (tree == null) {
+			tree = classForm ? assemble() : whole.getTree();
+		}
+		return tree;
+	}
+
+	public ParseResult getResult() {
+		return new ParseResult(getDiagnostics(), getTree());
+	}
+
+	/**
+	 * Returns the number of lines lexed by the last edit.
+	 *
+	 * @return The number of lines
+	 */
+	int getRelexedLines() {
+		return relexedLines;
+	}
+
+	/**
+	 * Returns the number of class members parsed by the last edit.
+	 *
+	 * @return The number of members
+	 */
+	int getReparsedMembers() {
+		return reparsedMembers;
+	}
+
+	private Line lex(LexerState state, String text) {
+		LexerState before = state.copy();
+		TokenBuffer tokens = new TokenBuffer(text, symbolTable);
+		lexer.scanLine(state, text, tokens);
+		return new Line(text, before, tokens);
+	}
+
+	/**
+	 * Parses the whole text, member by member if it is a class.
+	 */
+	private void parseAll() {
+		members.clear();
+		whole = null;
+		LineCursor cursor = new LineCursor(0, 0);
+		classForm = cursor.kind(0) == TokenKind.KW_CLASS && cursor.kind(1) == TokenKind.IDENTIFIER &&
+				cursor.kind(2) == TokenKind.LEFT_BRACE;
+		if (!classForm) {
+			try {
+				whole = new TheParser(cursor).run();
+			} catch (StackOverflowError e) {
+				// the stack is unwound by now; the text is parsed again without recursion
+				whole = new IterativeParser(new LineCursor(0, 0)).run();
+			}
+			return;
+		}
+		classLine = cursor.line(0);
+		nameLine = cursor.line(1);
+		className = cursor.value(1);
+		cursor.advance();
+		cursor.advance();
+		cursor.advance();
+		headerEnd = cursor.position;
+		parseMembers(headerEnd, List.of());
+	}
+
+	/**
+	 * Parses the members affected by an edit of a class, after its lines were lexed again.
+	 *
+	 * @param from  The index of the first line lexed again
+	 * @param to    The index after the last line lexed again
+	 * @param delta The number of lines added by the edit, negative if lines were removed
+	 */
+	private void reparse(int from, int to, int delta) {
+		long edit = positionOf(from, 0);
+		// members before the edit, the last ones of which may have looked into it
+		int before = 0;
+		int high = members.size();
+		while (before < high) {
+			int middle = (before + high) >>> 1;
+			if (members.get(middle).start < edit) {
+				before = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int restart = before;
+		// a member looks at most a few tokens past its end, and has at least one token
+		for (int i = before - 1; i >= 0 && i >= before - TokenStream.LOOKAHEAD; i--) {
+			if (members.get(i).reach >= edit) {
+				restart = i;
+			}
+		}
+		// members after the lines lexed again may be reused, once shifted
+		long unchanged = positionOf(to - delta, 0);
+		List<Member> tail = new ArrayList<>();
+		for (Member member : members.subList(restart, members.size())) {
+			if (member.start >= unchanged) {
+				member.shift(delta);
+				tail.add(member);
+			}
+		}
+		members.subList(restart, members.size()).clear();
+		parseMembers(restart == 0 ? headerEnd : members.get(restart - 1).end, tail);
+	}
+
+	/**
+	 * Parses members until the end of the class, or until one starts where a member to be
+	 * reused starts.
+	 *
+	 * @param position The position of the first member
+	 * @param tail     Members after the edit, in order, that may be reused
+	 */
+	private void parseMembers(long position, List<Member> tail) {
+		int next = 0;
+		while (true) {
+			LineCursor cursor = new LineCursor(position, 0);
+			if (cursor.kind(0) == TokenKind.RIGHT_BRACE || cursor.kind(0) == TokenKind.EOF) {
+				break;
+			}
+			long start = cursor.position();
+			while (next < tail.size() && tail.get(next).start < start) {
+				next++;
+			}
+			if (next < tail.size() && tail.get(next).start == start) {
+				members.addAll(tail.subList(next, tail.size()));
+				position = members.get(members.size() - 1).end;
+				next = tail.size();
+				continue;
+			}
+			cursor = new LineCursor(start, lineOf(start));
+			ParseResult result;
+			try {
+				result = new TheParser(cursor).runMember();
+			} catch (StackOverflowError e) {
+				cursor = new LineCursor(start, lineOf(start));
+				result = new IterativeParser(cursor).runMember();
+			}
+			Member member = new Member(start, cursor.position, cursor.reach, result);
+			members.add(member);
+			reparsedMembers++;
+			position = member.end;
+		}
+		parseFooter(position);
+	}
+
+	/**
+	 * Parses the end of the class, as {@link TheParser#run()} does after the last member.
+	 *
+	 * @param position The position after the last member
+	 */
+	private void parseFooter(long position) {
+		LineCursor cursor = new LineCursor(position, 0);
+		footer = null;
+		if (cursor.kind(0) != TokenKind.RIGHT_BRACE) {
+			footer = new Diagnostic(5, cursor.line(0), cursor.value(0));
+		} else {
+			cursor.advance();
+			if (!cursor.atEnd()) {
+				footer = new Diagnostic(99, cursor.line(0), cursor.value(0));
+			}
+		}
+	}
+
+	/**
+	 * Builds the tree of the class from the subtrees of its members, as the parser builds it:
+	 * the class keyword and name, then the members, then the program node.
+	 *
+	 * @return The tree
+	 */
+	private SyntaxTree assemble() {
+		int size = 3;
+		for (Member member : members) {
+			size += member.tree.size();
+		}
+		int[] kinds = new int[size];
+		int[] firstChildren = new int[size];
+		int[] nextSiblings = new int[size];
+		int[] tokenIndexes = new int[size];
+		StringBuilder text = new StringBuilder();
+		TokenBuffer tokens = new TokenBuffer(text, symbolTable);
+
+		text.append("class").append(className);
+		tokens.add(TokenKind.KW_CLASS, 0, 5, classLine);
+		tokens.add(TokenKind.IDENTIFIER, 5, className.length(), nameLine);
+		for (int node = 0; node < 2; node++) {
+			kinds[node] = -1;
+			firstChildren[node] = -1;
+			nextSiblings[node] = -1;
+			tokenIndexes[node] = node;
+		}
+		nextSiblings[0] = 1;
+		int count = 2;
+		int previous = 1;
+		for (Member member : members) {
+			SyntaxTree subtree = member.tree;
+			if (subtree.size() == 0) {
+				continue;
+			}
+			int nodeBase = count;
+			int tokenBase = tokens.size();
+			TokenBuffer subtreeTokens = subtree.getTokens();
+			for (int i = 0; i < subtreeTokens.size(); i++) {
+				int start = text.length();
+				subtreeTokens.appendValue(i, text);
+				// the subtrees share the symbol table of the document
+				tokens.add(subtreeTokens.getKind(i), start, subtreeTokens.getLength(i),
+						subtreeTokens.getLineNumber(i) + lineOf(member.start), subtreeTokens.getSymbol(i));
+			}
+			for (int node = 0; node < subtree.size(); node++) {
+				kinds[count] = subtree.isToken(node) ? -1 : subtree.getRule(node).ordinal();
+				firstChildren[count] = offset(subtree.getFirstChild(node), nodeBase);
+				nextSiblings[count] = offset(subtree.getNextSibling(node), nodeBase);
+				tokenIndexes[count] = offset(subtree.getToken(node), tokenBase);
+				count++;
+			}
+			nextSiblings[previous] = count - 1;
+			previous = count - 1;
+		}
+		kinds[count] = ParseRule.PROGRAM.ordinal();
+		firstChildren[count] = 0;
+		nextSiblings[count] = -1;
+		tokenIndexes[count] = -1;
+		return new SyntaxTree(kinds, firstChildren, nextSiblings, tokenIndexes, tokens);
+	}
+
+	private static int offset(int index, int base) {
+		return index < 0 ? -1 : index + base;
+	}
+
+	/**
+	 * Splits a text into lines as {@link java.io.BufferedReader#readLine()} does.
+	 *
+	 * @param text The text
+	 * @return The lines, without their terminators
+	 */
+	static List<String> split(CharSequence text) {
+		List<String> split = new ArrayList<>();
+		int start = 0;
+		for (int index = 0; index < text.length(); index++) {
+			char c = text.charAt(index);
+			if (c == '\n' || c == '\r') {
+				split.add(text.subSequence(start, index).toString());
+				if (c == '\r' && index + 1 < text.length() && text.charAt(index + 1) == '\n') {
+					index++;
+				}
+				start = index + 1;
+			}
+		}
+		if (start < text.length()) {
+			split.add(text.subSequence(start, text.length()).toString());
+		}
+		return split;
+	}
+
+	/**
+	 * Encodes the position of a token as a number that orders positions as the text does.
+	 *
+	 * @param line  The index of the line
+	 * @param index The index of the token in the line
+	 * @return The position
+	 */
+	private static long positionOf(int line, int index) {
+		return (long) line << 32 | index;
+	}
+
+	private static int lineOf(long position) {
+		return (int) (position >>> 32);
+	}
+
+	private static int indexOf(long position) {
+		return (int) position;
+	}
+
+	/**
+	 * One line of text, its tokens, and the lexer state before it.
+	 */
+	private static class Line {
+		final String text;
+		final LexerState before;
+		final TokenBuffer tokens;
+
+		Line(String text, LexerState before, TokenBuffer tokens) {
+			this.text = text;
+			this.before = before;
+			this.tokens = tokens;
+		}
+	}
+
+	/**
+	 * One member of the class: where it starts and ends, the furthest position the parser
+	 * looked at, and its subtree and diagnostics with line numbers from 1 at its first line.
+	 */
+	private static class Member {
+		long start;
+		long end;
+		long reach;
+		final SyntaxTree tree;
+		final List<Diagnostic> diagnostics;
+
+		Member(long start, long end, long reach, ParseResult result) {
+			this.start = start;
+			this.end = end;
+			this.reach = reach;
+			this.tree = result.getTree();
+			this.diagnostics = result.getDiagnostics();
+		}
+
+		void shift(int delta) {
+			start = positionOf(lineOf(start) + delta, indexOf(start));
+			end = positionOf(lineOf(end) + delta, indexOf(end));
+			reach = positionOf(lineOf(reach) + delta, indexOf(reach));
+		}
+	}
+
+	/**
+	 * Reads the tokens of the lines as one sequence, recording the furthest position read.
+	 * Line numbers are counted from a given line.
+	 */
+	private class LineCursor implements TokenSource {
+
+		private long position;
+		private final int base;
+		private long reach = -1;
+		private long found;
+
+		/**
+		 * Creates a cursor.
+		 *
+		 * @param position The position of the first token, or of the end of a line before it
+		 * @param base     The index of the line numbered 1, less one
+		 */
+		LineCursor(long position, int base) {
+			this.position = position;
+			this.base = base;
+		}
+
+		/**
+		 * Returns the position of the current token, past any line without more tokens.
+		 *
+		 * @return The position
+		 */
+		long position() {
+			locate(0);
+			return position;
+		}
+
+		@Override
+		public void advance() {
+			if (locate(0)) {
+				position = found + 1;
+			}
+		}
+
+		@Override
+		public boolean atEnd() {
+			return !locate(0);
+		}
+
+		@Override
+		public TokenKind kind(int lookahead) {
+			return locate(lookahead) ? lines.get(lineOf(found)).tokens.getKind(indexOf(found)) : TokenKind.EOF;
+		}
+
+		@Override
+		public String value(int lookahead) {
+			return locate(lookahead) ? lines.get(lineOf(found)).tokens.getValue(indexOf(found)) : "";
+		}
+
+		@Override
+		public void appendValue(int lookahead, StringBuilder text) {
+			if (locate(lookahead)) {
+				lines.get(lineOf(found)).tokens.appendValue(indexOf(found), text);
+			}
+		}
+
+		@Override
+		public int symbol(int lookahead) {
+			return locate(lookahead) ? lines.get(lineOf(found)).tokens.getSymbol(indexOf(found)) : -1;
+		}
+
+		@Override
+		public SymbolTable getSymbolTable() {
+			return symbolTable;
+		}
+
+		@Override
+		public int line(int lookahead) {
+			if (locate(lookahead)) {
+				return lineOf(found) + 1 - base;
+			}
+			for (int line = lines.size() - 1; line >= 0; line--) {
+				if (lines.get(line).tokens.size() > 0) {
+					return line + 1 - base;
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Finds a token ahead of the current position and records it as read.
+		 *
+		 * @param lookahead 0 for the current token, 1 for the next one, and so on
+		 * @return true if the token exists, whose position is left in {@link #found}
+		 */
+		private boolean locate(int lookahead) {
+			int line = lineOf(position);
+			int index = indexOf(position);
+			for (int skipped = 0; ; skipped++) {
+				while (line < lines.size() && index >= lines.get(line).tokens.size()) {
+					line++;
+					index = 0;
+				}
+				if (skipped == 0) {
+					position = positionOf(line, index);
+				}
+				if (line >= lines.size() || skipped == lookahead) {
+					break;
+				}
+				index++;
+			}
+			found = positionOf(line, index);
+			reach = Math.max(reach, found);
+			return line < lines.size();
+		}
+	}
+}
@@ -0,0 +1,766 @@
+import java.util.Arrays;
+
+/**
+ * IterativeParser.java
+ * ---------------
+ * Parses the grammar of {@link TheParser} without recursion, for inputs nested deeper than
+ * the thread stack allows, such as machine-generated code with thousands of nested blocks or
+ * parentheses. The diagnostics, the syntax tree and the events reported to the listener are
+ * exactly the ones of {@link TheParser}.
+ *
+ * The rules are a state machine over {@link Step}s. Calling a rule pushes the step to
+ * continue with when it returns, preceded by whatever that step needs to remember, such as
+ * the error code of the ";" expected after a statement or the mark and precedence of an
+ * expression level. The frames are ints on one array, so the memory of a parse grows with
+ * its nesting by a few ints per rule and nothing else; there is no limit but the heap.
+ *
+ * A syntax error pops the frames one by one, closing the expression levels it finds as
+ * {@link TheParser} does in its finally blocks, until the frame of a member, statement or
+ * block loop, which recovers and continues. Only the type and parameter rules, which cannot
+ * nest, are plain methods.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.4
+ */
+public class IterativeParser extends AbstractParser {
+
+	/**
+	 * The places where the parse may continue. A step with data pops it from the stack.
+	 */
+	private enum Step {
+		PROGRAM, PROGRAM_END, CLASS_MEMBERS, MEMBER, MEMBER_END, MEMBER_RECOVER, METHODS, METHODS_END,
+		BODY, BODY_LOOP, BODY_NEXT, BODY_RECOVER,
+		STATEMENT_BLOCK, BLOCK_END, BLOCK_STATEMENT_END, BLOCK_RECOVER, BLOCK_DONE,
+		VARIABLE, ASSIGNMENT, CALL_METHOD, CALL_METHOD_END, PARAM_VALUES, PARAM_VALUES_NEXT,
+		RETURN, RETURN_END, WHILE, WHILE_CONDITION, IF, IF_CONDITION, IF_ELSE,
+		DO_WHILE, DO_WHILE_BODY, DO_WHILE_CONDITION, FOR, FOR_INIT, FOR_CONDITION, FOR_UPDATE,
+		SWITCH, SWITCH_SUBJECT, SWITCH_CASES, SWITCH_CASE, SWITCH_CASE_BODY, SWITCH_DEFAULT, SWITCH_DEFAULT_BODY,
+		EXPRESSION, CLIMB, CLIMB_LOOP, PREFIX, PREFIX_END, PRIMARY, PRIMARY_END,
+		SEMICOLON, EXIT, FINISH, DONE
+	}
+
+	private static final Step[] STEPS = Step.values();
+	private static final ParseRule[] RULES = ParseRule.values();
+
+	// frames of the rules being parsed: the data of each followed by its step
+	private int[] stack = new int[64];
+	private int top;
+	private Step step;
+	// the lowest precedence allowed when entering CLIMB or PREFIX
+	private int min;
+
+	public IterativeParser(TokenBuffer tokens) {
+		this(tokens.cursor());
+		sourceLength = tokens.getSource().length();
+	}
+
+	public IterativeParser(TokenSource tokens) {
+		this(tokens, ParseListener.NONE);
+	}
+
+	/**
+	 * Parses the tokens of a source, reporting the parse to a listener.
+	 *
+	 * @param tokens   The source of the tokens
+	 * @param listener The listener receiving the rules, tokens and errors of the parse
+	 */
+	public IterativeParser(TokenSource tokens, ParseListener listener) {
+		super(tokens, listener);
+	}
+
+	/**
+	 * Parses the tokens, recovering from syntax errors to report all of them.
+	 *
+	 * @return The syntax tree and the diagnostics of the errors found
+	 */
+	public ParseResult run() {
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		call(Step.PROGRAM, Step.FINISH);
+		parse();
+		return finish(event);
+	}
+
+	/**
+	 * Parses one member of a class, as {@link TheParser#runMember()} does, for the members
+	 * of an {@link IncrementalDocument} nested too deep for it.
+	 *
+	 * @return The tree of the member, empty if it was skipped by error recovery, and the
+	 * diagnostics of its errors
+	 */
+	ParseResult runMember() {
+		call(Step.MEMBER, Step.DONE);
+		parse();
+		if (RuleProfiler.ENABLED) {
+			profiler.finish();
+		}
+		return new ParseResult(diagnostics, tree.build());
+	}
+
+	/**
+	 * Executes steps until the parse is done, recovering from the syntax errors on the way.
+	 */
+	private void parse() {
+		while (step != Step.DONE) {
+			try {
+				execute();
+			} catch (ParseError e) {
+				recover();
+			}
+		}
+	}
+
+	private void execute() {
+		while (true) {
+			switch (step) {
+				case PROGRAM -> {
+					enter(ParseRule.PROGRAM);
+					if (tokens.kind(0) == TokenKind.LEFT_BRACE) {
+						consume();
+						call(Step.BODY, Step.PROGRAM_END);
+					} else if (tokens.kind(0) == TokenKind.KW_CLASS) {
+						consume();
+						if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+							consume();
+						} else {
+							error(2);
+						}
+						if (tokens.kind(0) == TokenKind.LEFT_BRACE) {
+							consume();
+							step = Step.CLASS_MEMBERS;
+						} else {
+							error(6);
+						}
+					} else {
+						error(7);
+					}
+				}
+				case PROGRAM_END -> {
+					expect(TokenKind.RIGHT_BRACE, 1);
+					exitAndReturn(ParseRule.PROGRAM);
+				}
+				case CLASS_MEMBERS -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_BRACE && tokens.kind(0) != TokenKind.EOF) {
+						call(Step.MEMBER, Step.CLASS_MEMBERS);
+					} else {
+						expect(TokenKind.RIGHT_BRACE, 5);
+						exitAndReturn(ParseRule.PROGRAM);
+					}
+				}
+				case MEMBER -> {
+					recoverAt(Step.MEMBER_RECOVER);
+					ParseRule member = predict(TheParser.MEMBER, TheParser.PREDICT_MEMBER);
+					if (member == ParseRule.METHODS) {
+						call(Step.METHODS, Step.MEMBER_END);
+					} else if (member == ParseRule.VARIABLE) {
+						callThenSemicolon(Step.VARIABLE, 3, Step.MEMBER_END);
+					} else {
+						error(4);
+					}
+				}
+				case MEMBER_END -> {
+					top -= 2;
+					ret();
+				}
+				case METHODS -> {
+					enter(ParseRule.METHODS);
+					type();
+					expect(TokenKind.IDENTIFIER, 8);
+					if (tokens.kind(0) != TokenKind.LEFT_PAREN) {
+						error(12);
+					}
+					consume();
+					params();
+					expect(TokenKind.RIGHT_PAREN, 9);
+					if (tokens.kind(0) != TokenKind.LEFT_BRACE) {
+						error(11);
+					}
+					consume();
+					call(Step.BODY, Step.METHODS_END);
+				}
+				case METHODS_END -> {
+					expect(TokenKind.RIGHT_BRACE, 10);
+					exitAndReturn(ParseRule.METHODS);
+				}
+				case BODY -> {
+					enter(ParseRule.BODY);
+					step = Step.BODY_LOOP;
+				}
+				case BODY_LOOP -> {
+					if (TheParser.BODY_END.contains(tokens.kind(0))) {
+						exitAndReturn(ParseRule.BODY);
+					} else {
+						recoverAt(Step.BODY_RECOVER);
+						bodyStatement();
+					}
+				}
+				case BODY_NEXT -> {
+					top -= 2;
+					step = Step.BODY_LOOP;
+				}
+				case STATEMENT_BLOCK -> {
+					enter(ParseRule.STATEMENT_BLOCK);
+					ParseRule statement = predict(TheParser.BLOCK, TheParser.PREDICT_BLOCK);
+					if (statement == ParseRule.BODY) {
+						consume();
+						call(Step.BODY, Step.BLOCK_END);
+					} else {
+						recoverAt(Step.BLOCK_RECOVER);
+						blockStatement(statement);
+					}
+				}
+				case BLOCK_END -> {
+					expect(TokenKind.RIGHT_BRACE, 53);
+					exitAndReturn(ParseRule.STATEMENT_BLOCK);
+				}
+				case BLOCK_STATEMENT_END -> {
+					top -= 2;
+					step = Step.BLOCK_DONE;
+				}
+				case BLOCK_DONE -> exitAndReturn(ParseRule.STATEMENT_BLOCK);
+				case VARIABLE -> {
+					enter(ParseRule.VARIABLE);
+					type();
+					if (tokens.kind(0) != TokenKind.IDENTIFIER) {
+						error(22);
+					}
+					consume();
+					if (tokens.kind(0) == TokenKind.ASSIGN) {
+						consume();
+						callThenExit(Step.EXPRESSION, ParseRule.VARIABLE);
+					} else {
+						exitAndReturn(ParseRule.VARIABLE);
+					}
+				}
+				case ASSIGNMENT -> {
+					enter(ParseRule.ASSIGNMENT);
+					if (tokens.kind(0) != TokenKind.IDENTIFIER) {
+						error(24);
+					}
+					consume();
+					if (tokens.kind(0) != TokenKind.ASSIGN) {
+						error(23);
+					}
+					consume();
+					callThenExit(Step.EXPRESSION, ParseRule.ASSIGNMENT);
+				}
+				case CALL_METHOD -> {
+					enter(ParseRule.CALL_METHOD);
+					if (tokens.kind(0) != TokenKind.IDENTIFIER) {
+						error(27);
+					}
+					consume();
+					if (tokens.kind(0) != TokenKind.LEFT_PAREN) {
+						error(26);
+					}
+					consume();
+					call(Step.PARAM_VALUES, Step.CALL_METHOD_END);
+				}
+				case CALL_METHOD_END -> {
+					expect(TokenKind.RIGHT_PAREN, 25);
+					exitAndReturn(ParseRule.CALL_METHOD);
+				}
+				case PARAM_VALUES -> {
+					enter(ParseRule.PARAM_VALUES);
+					if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
+						call(Step.EXPRESSION, Step.PARAM_VALUES_NEXT);
+					} else {
+						exitAndReturn(ParseRule.PARAM_VALUES);
+					}
+				}
+				case PARAM_VALUES_NEXT -> {
+					if (tokens.kind(0) == TokenKind.COMMA) {
+						consume();
+						call(Step.EXPRESSION, Step.PARAM_VALUES_NEXT);
+					} else {
+						exitAndReturn(ParseRule.PARAM_VALUES);
+					}
+				}
+				case RETURN -> {
+					enter(ParseRule.RETURN);
+					if (tokens.kind(0) != TokenKind.KW_RETURN) {
+						error(28);
+					}
+					consume();
+					if (tokens.kind(0) != TokenKind.SEMICOLON) {
+						call(Step.EXPRESSION, Step.RETURN_END);
+					} else {
+						step = Step.RETURN_END;
+					}
+				}
+				case RETURN_END -> {
+					expect(TokenKind.SEMICOLON, 19);
+					exitAndReturn(ParseRule.RETURN);
+				}
+				case WHILE -> {
+					enter(ParseRule.WHILE);
+					keywordAndCondition(TokenKind.KW_WHILE, 31, 30, Step.WHILE_CONDITION);
+				}
+				case WHILE_CONDITION -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
+						error(29);
+					}
+					consume();
+					callThenExit(Step.STATEMENT_BLOCK, ParseRule.WHILE);
+				}
+				case IF -> {
+					enter(ParseRule.IF);
+					keywordAndCondition(TokenKind.KW_IF, 34, 33, Step.IF_CONDITION);
+				}
+				case IF_CONDITION -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
+						error(32);
+					}
+					consume();
+					call(Step.STATEMENT_BLOCK, Step.IF_ELSE);
+				}
+				case IF_ELSE -> {
+					if (tokens.kind(0) == TokenKind.KW_ELSE) {
+						consume();
+						callThenExit(Step.STATEMENT_BLOCK, ParseRule.IF);
+					} else {
+						exitAndReturn(ParseRule.IF);
+					}
+				}
+				case DO_WHILE -> {
+					enter(ParseRule.DO_WHILE);
+					if (tokens.kind(0) != TokenKind.KW_DO) {
+						error(39);
+					}
+					consume();
+					call(Step.STATEMENT_BLOCK, Step.DO_WHILE_BODY);
+				}
+				case DO_WHILE_BODY -> keywordAndCondition(TokenKind.KW_WHILE, 38, 37, Step.DO_WHILE_CONDITION);
+				case DO_WHILE_CONDITION -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
+						error(36);
+					}
+					consume();
+					expect(TokenKind.SEMICOLON, 35);
+					exitAndReturn(ParseRule.DO_WHILE);
+				}
+				case FOR -> {
+					enter(ParseRule.FOR);
+					if (tokens.kind(0) != TokenKind.KW_FOR) {
+						error(44);
+					}
+					consume();
+					if (tokens.kind(0) != TokenKind.LEFT_PAREN) {
+						error(43);
+					}
+					consume();
+					ParseRule init = predict(TheParser.FOR_INIT, TheParser.PREDICT_FOR_INIT);
+					if (init == ParseRule.VARIABLE) {
+						call(Step.VARIABLE, Step.FOR_INIT);
+					} else if (init == ParseRule.EXPRESSION) {
+						call(Step.EXPRESSION, Step.FOR_INIT);
+					} else {
+						step = Step.FOR_INIT;
+					}
+				}
+				case FOR_INIT -> {
+					expect(TokenKind.SEMICOLON, 40);
+					if (tokens.kind(0) != TokenKind.SEMICOLON) {
+						call(Step.EXPRESSION, Step.FOR_CONDITION);
+					} else {
+						step = Step.FOR_CONDITION;
+					}
+				}
+				case FOR_CONDITION -> {
+					expect(TokenKind.SEMICOLON, 41);
+					ParseRule update = predict(TheParser.FOR_UPDATE, TheParser.PREDICT_FOR_UPDATE);
+					if (update == ParseRule.ASSIGNMENT) {
+						call(Step.ASSIGNMENT, Step.FOR_UPDATE);
+					} else if (update == ParseRule.EXPRESSION) {
+						call(Step.EXPRESSION, Step.FOR_UPDATE);
+					} else {
+						step = Step.FOR_UPDATE;
+					}
+				}
+				case FOR_UPDATE -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
+						error(42);
+					}
+					consume();
+					callThenExit(Step.STATEMENT_BLOCK, ParseRule.FOR);
+				}
+				case SWITCH -> {
+					enter(ParseRule.SWITCH);
+					keywordAndCondition(TokenKind.KW_SWITCH, 52, 51, Step.SWITCH_SUBJECT);
+				}
+				case SWITCH_SUBJECT -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
+						error(50);
+					}
+					consume();
+					if (tokens.kind(0) != TokenKind.LEFT_BRACE) {
+						error(49);
+					}
+					consume();
+					step = Step.SWITCH_CASES;
+				}
+				case SWITCH_CASES -> {
+					if (tokens.kind(0) == TokenKind.RIGHT_BRACE || tokens.kind(0) == TokenKind.EOF) {
+						expect(TokenKind.RIGHT_BRACE, 48);
+						exitAndReturn(ParseRule.SWITCH);
+					} else if (tokens.kind(0) == TokenKind.KW_CASE) {
+						consume();
+						call(Step.EXPRESSION, Step.SWITCH_CASE);
+					} else if (tokens.kind(0) == TokenKind.KW_DEFAULT) {
+						consume();
+						if (tokens.kind(0) != TokenKind.COLON) {
+							error(46);
+						}
+						consume();
+						step = Step.SWITCH_DEFAULT;
+					} else {
+						error(47);
+					}
+				}
+				case SWITCH_CASE -> {
+					if (tokens.kind(0) != TokenKind.COLON) {
+						error(45);
+					}
+					consume();
+					call(Step.BODY, Step.SWITCH_CASE_BODY);
+				}
+				case SWITCH_CASE_BODY -> {
+					if (tokens.kind(0) != TokenKind.KW_BREAK) {
+						error(62); // A case must end with break
+					}
+					consume();
+					if (tokens.kind(0) == TokenKind.SEMICOLON) {
+						consume();
+					}
+					step = Step.SWITCH_CASES;
+				}
+				case SWITCH_DEFAULT -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_BRACE && tokens.kind(0) != TokenKind.EOF) {
+						call(Step.BODY, Step.SWITCH_DEFAULT_BODY);
+					} else {
+						step = Step.SWITCH_CASES;
+					}
+				}
+				case SWITCH_DEFAULT_BODY -> {
+					if (tokens.kind(0) == TokenKind.KW_BREAK) {
+						consume();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						}
+					}
+					step = Step.SWITCH_DEFAULT;
+				}
+				case EXPRESSION -> {
+					enter(ParseRule.EXPRESSION);
+					push(ParseRule.EXPRESSION.ordinal());
+					push(Step.EXIT.ordinal());
+					min = 1;
+					step = Step.CLIMB;
+				}
+				case CLIMB -> {
+					// frame: the lowest precedence, the mark, the depth and the level being parsed
+					push(min);
+					push(tree.mark());
+					push(depth);
+					push(0);
+					push(Step.CLIMB_LOOP.ordinal());
+					step = Step.PREFIX;
+				}
+				case CLIMB_LOOP -> climb();
+				case PREFIX -> prefix();
+				case PREFIX_END -> {
+					closeLevel(stack[--top], stack[--top], stack[--top]);
+					ret();
+				}
+				case PRIMARY -> primary();
+				case PRIMARY_END -> {
+					if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
+						error(59);
+					}
+					consume();
+					ret();
+				}
+				case SEMICOLON -> {
+					expect(TokenKind.SEMICOLON, stack[--top]);
+					step = STEPS[stack[--top]];
+				}
+				case EXIT -> exitAndReturn(RULES[stack[--top]]);
+				case FINISH -> {
+					step = Step.DONE;
+					if (!tokens.atEnd()) {
+						error(99); // Unexpected tokens at the end
+					}
+				}
+				case DONE -> {
+					return;
+				}
+				default -> throw new IllegalStateException("Step cannot be executed: " + step);
+			}
+		}
+	}
+
+	/**
+	 * Dispatches one statement of a body, as the loop of {@code RULE_BODY} does.
+	 */
+	private void bodyStatement() {
+		switch (predict(TheParser.STATEMENT, TheParser.PREDICT_STATEMENT)) {
+			case VARIABLE -> callThenSemicolon(Step.VARIABLE, 16, Step.BODY_NEXT);
+			case ASSIGNMENT -> callThenSemicolon(Step.ASSIGNMENT, 17, Step.BODY_NEXT);
+			case CALL_METHOD -> callThenSemicolon(Step.CALL_METHOD, 18, Step.BODY_NEXT);
+			case RETURN -> call(Step.RETURN, Step.BODY_NEXT);
+			case WHILE -> call(Step.WHILE, Step.BODY_NEXT);
+			case IF -> call(Step.IF, Step.BODY_NEXT);
+			case DO_WHILE -> call(Step.DO_WHILE, Step.BODY_NEXT);
+			case FOR -> call(Step.FOR, Step.BODY_NEXT);
+			case SWITCH -> call(Step.SWITCH, Step.BODY_NEXT);
+			default -> callThenSemicolon(Step.EXPRESSION, 21, Step.BODY_NEXT);
+		}
+	}
+
+	/**
+	 * Dispatches the statement of a block without braces, as {@code RULE_STATEMENT_BLOCK} does.
+	 *
+	 * @param statement The alternative chosen for the block
+	 */
+	private void blockStatement(ParseRule statement) {
+		switch (statement) {
+			case VARIABLE -> callThenSemicolon(Step.VARIABLE, 54, Step.BLOCK_STATEMENT_END);
+			case ASSIGNMENT -> callThenSemicolon(Step.ASSIGNMENT, 55, Step.BLOCK_STATEMENT_END);
+			case CALL_METHOD -> callThenSemicolon(Step.CALL_METHOD, 56, Step.BLOCK_STATEMENT_END);
+			case RETURN -> callThenSemicolon(Step.RETURN, 57, Step.BLOCK_STATEMENT_END);
+			case WHILE -> call(Step.WHILE, Step.BLOCK_STATEMENT_END);
+			case IF -> call(Step.IF, Step.BLOCK_STATEMENT_END);
+			case DO_WHILE -> call(Step.DO_WHILE, Step.BLOCK_STATEMENT_END);
+			case FOR -> call(Step.FOR, Step.BLOCK_STATEMENT_END);
+			case SWITCH -> call(Step.SWITCH, Step.BLOCK_STATEMENT_END);
+			default -> callThenSemicolon(Step.EXPRESSION, 58, Step.BLOCK_STATEMENT_END);
+		}
+	}
+
+	/**
+	 * Continues precedence climbing after an operand, with the frame pushed by CLIMB on top
+	 * of the stack: either the next operator of the level being parsed, or the level is
+	 * closed and an operator of a lower level, down to the lowest precedence, starts a new one.
+	 */
+	private void climb() {
+		int level = stack[top - 1];
+		int operator = TheParser.BINARY[tokens.kind(0).ordinal()];
+		if (level != 0 && operator == level) {
+			consumeOperator(level);
+			return;
+		}
+		if (level != 0) {
+			closeLevel(level, stack[top - 2], stack[top - 3]);
+			stack[top - 1] = 0;
+		}
+		if (operator >= stack[top - 4]) {
+			stack[top - 1] = operator;
+			consumeOperator(operator);
+		} else {
+			top -= 4;
+			ret();
+		}
+	}
+
+	private void consumeOperator(int precedence) {
+		consume();
+		push(Step.CLIMB_LOOP.ordinal());
+		min = precedence + 1;
+		step = Step.CLIMB;
+	}
+
+	private void prefix() {
+		TokenKind operator = tokens.kind(0);
+		int precedence = TheParser.PREFIX[operator.ordinal()];
+		if (precedence < min) {
+			step = Step.PRIMARY;
+			return;
+		}
+		push(tree.mark());
+		push(depth);
+		push(precedence);
+		push(Step.PREFIX_END.ordinal());
+		do {
+			consume();
+		} while (TheParser.REPEATED[operator.ordinal()] && tokens.kind(0) == operator);
+		min = precedence + 1;
+		step = Step.CLIMB;
+	}
+
+	private void primary() {
+		switch (tokens.kind(0)) {
+			case IDENTIFIER -> {
+				if (tokens.kind(1) == TokenKind.LEFT_PAREN) {
+					// a tail call: the method returns where the operand would have
+					step = Step.CALL_METHOD;
+				} else {
+					consume();
+					ret();
+				}
+			}
+			case INTEGER, FLOAT, CHAR, STRING, HEXADECIMAL, BINARY, KW_TRUE, KW_FALSE -> {
+				consume();
+				ret();
+			}
+			case LEFT_PAREN -> {
+				consume();
+				call(Step.EXPRESSION, Step.PRIMARY_END);
+			}
+			default -> {
+				// an empty node stands for the missing operand
+				tree.reduce(ParseRule.C, tree.mark());
+				error(60);
+			}
+		}
+	}
+
+	/**
+	 * Closes an expression level: exits the rules entered inside it and makes the nodes since
+	 * its mark the children of a node of the level.
+	 */
+	private void closeLevel(int precedence, int entered, int mark) {
+		unwind(entered);
+		tree.reduce(TheParser.LEVELS[precedence - 1], mark);
+	}
+
+	/**
+	 * Pops the frames abandoned by a syntax error, up to the nearest loop that recovers
+	 * from it, or ends the parse if there is none.
+	 */
+	private void recover() {
+		while (top > 0) {
+			Step frame = STEPS[stack[--top]];
+			switch (frame) {
+				case MEMBER_RECOVER, BODY_RECOVER, BLOCK_RECOVER -> {
+					unwind(stack[--top]);
+					synchronize();
+					if (frame == Step.MEMBER_RECOVER) {
+						ret();
+					} else {
+						step = frame == Step.BODY_RECOVER ? Step.BODY_LOOP : Step.BLOCK_DONE;
+					}
+					return;
+				}
+				case CLIMB_LOOP -> {
+					int level = stack[--top];
+					int entered = stack[--top];
+					int mark = stack[--top];
+					top--;
+					if (level != 0) {
+						closeLevel(level, entered, mark);
+					}
+				}
+				case PREFIX_END -> closeLevel(stack[--top], stack[--top], stack[--top]);
+				case SEMICOLON -> top -= 2;
+				case EXIT -> top--;
+				default -> {
+				}
+			}
+		}
+		// an error outside of any statement ends the parse; it has been reported already
+		unwind(0);
+		step = Step.DONE;
+	}
+
+	private void type() {
+		enter(ParseRule.TYPE);
+		if (!isType()) {
+			error(61);
+		}
+		consume();
+		exit(ParseRule.TYPE);
+	}
+
+	private void params() {
+		enter(ParseRule.PARAMS);
+		if (isType()) {
+			type();
+			expect(TokenKind.IDENTIFIER, 13);
+			while (tokens.kind(0) == TokenKind.COMMA) {
+				consume();
+				if (!isType()) {
+					error(15);
+				}
+				type();
+				expect(TokenKind.IDENTIFIER, 14);
+			}
+		}
+		exit(ParseRule.PARAMS);
+	}
+
+	/**
+	 * Parses a keyword and the "(" and condition after it, as in "while (x".
+	 */
+	private void keywordAndCondition(TokenKind keyword, int missingKeyword, int missingParen, Step next) {
+		if (tokens.kind(0) != keyword) {
+			error(missingKeyword);
+		}
+		consume();
+		if (tokens.kind(0) != TokenKind.LEFT_PAREN) {
+			error(missingParen);
+		}
+		consume();
+		call(Step.EXPRESSION, next);
+	}
+
+	private void push(int value) {
+		if (top == stack.length) {
+			stack = Arrays.copyOf(stack, top * 2);
+		}
+		stack[top++] = value;
+	}
+
+	/**
+	 * Calls a rule, to continue with a step when it returns.
+	 */
+	private void call(Step rule, Step next) {
+		push(next.ordinal());
+		step = rule;
+	}
+
+	/**
+	 * Calls a rule and expects a ";" after it, to continue with a step.
+	 */
+	private void callThenSemicolon(Step rule, int error, Step next) {
+		push(next.ordinal());
+		push(error);
+		push(Step.SEMICOLON.ordinal());
+		step = rule;
+	}
+
+	/**
+	 * Calls a rule as the last part of another, which is exited when it returns.
+	 */
+	private void callThenExit(Step rule, ParseRule caller) {
+		push(caller.ordinal());
+		push(Step.EXIT.ordinal());
+		step = rule;
+	}
+
+	/**
+	 * Pushes the frame of a loop that recovers from the errors of the statement it parses.
+	 */
+	private void recoverAt(Step recovery) {
+		push(depth);
+		push(recovery.ordinal());
+	}
+
+	private void ret() {
+		step = STEPS[stack[--top]];
+	}
+
+	private void exitAndReturn(ParseRule rule) {
+		exit(rule);
+		ret();
+	}
+
+	private void expect(TokenKind kind, int error) {
+		if (tokens.kind(0) != kind) {
+			error(error);
+		}
+		consume();
+	}
+}
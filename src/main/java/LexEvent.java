@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * LexEvent.java
+ * ---------------
+ * Java Flight Recorder event of the lexing of a file by {@link TheLexer}. Enabled by default,
+ * so continuous recordings show lexing next to GC and safepoint events; its fields are only
+ * filled in when the event is recorded.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+@Name("javiergs.Lex")
+@Label("Lex")
+@Category({"TheParser", "Lexer"})
+@Description("Lexing of a source file")
+@StackTrace(false)
+class LexEvent extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Tokens")
+    int tokens;
+
+    @Label("Lines")
+    int lines;
+
+    @Label("Errors")
+    @Description("Number of ERROR tokens")
+    int errors;
+}
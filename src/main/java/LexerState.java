@@ -0,0 +1,113 @@
+import java.util.Objects;
+
+/**
+ * LexerState.java
+ * ---------------
+ * Everything the lexer remembers between two characters: the DFA state and start of the
+ * current lexeme, whether it is inside a comment, an operator or line break waiting for the
+ * character that completes it, and the line number. Saving a copy of the state is enough to
+ * resume lexing later from the same point, with more input.
+ *
+ * Offsets are positions in the text being lexed when the state was saved.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class LexerState {
+
+    enum Mode {
+        CODE, BLOCK_COMMENT, LINE_COMMENT
+    }
+
+    int dfaState;
+    int lexeme = -1;
+    Mode mode = Mode.CODE;
+    // operator character that may be the first of "==", "/*", "//" and so on, or -1
+    int pendingOperator = -1;
+    int pendingOffset;
+    // last character in a block comment was '*', that a '/' would close
+    boolean blockStar;
+    // last character was '\r', whose '\n' belongs to the same line break
+    boolean afterCR;
+    int lineNumber = 1;
+
+    LexerState(int dfaState) {
+        this.dfaState = dfaState;
+    }
+
+    /**
+     * Creates an independent copy of the state.
+     *
+     * @return The copy
+     */
+    public LexerState copy() {
+        LexerState copy = new LexerState(dfaState);
+        copy.lexeme = lexeme;
+        copy.mode = mode;
+        copy.pendingOperator = pendingOperator;
+        copy.pendingOffset = pendingOffset;
+        copy.blockStar = blockStar;
+        copy.afterCR = afterCR;
+        copy.lineNumber = lineNumber;
+        return copy;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Checks if the lexer is inside a block comment.
+     *
+     * @return true if a block comment was opened and not yet closed
+     */
+    public boolean isInBlockComment() {
+        return mode == Mode.BLOCK_COMMENT;
+    }
+
+    /**
+     * Checks if the lexer is between tokens, with nothing held back: no lexeme or operator in
+     * progress, no pending line break and no comment open.
+     *
+     * @return true if the lexer would start a new token with the next character
+     */
+    public boolean isIdle() {
+        return lexeme < 0 && pendingOperator < 0 && !afterCR && mode == Mode.CODE;
+    }
+
+    /**
+     * Checks if two states lex the text after them the same way. Unlike {@link #equals},
+     * line numbers are not compared, so the states of a line before and after lines are
+     * inserted above it still match.
+     *
+     * @param state The other state
+     * @return true if the states only differ by their line number
+     */
+    boolean sameContext(LexerState state) {
+        return dfaState == state.dfaState && lexeme == state.lexeme && mode == state.mode &&
+                pendingOperator == state.pendingOperator &&
+                (pendingOperator < 0 || pendingOffset == state.pendingOffset) &&
+                blockStar == state.blockStar && afterCR == state.afterCR;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LexerState state && sameContext(state) && lineNumber == state.lineNumber;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dfaState, lexeme, mode, pendingOperator, blockStar, afterCR, lineNumber);
+    }
+
+    @Override
+    public String toString() {
+        return "LexerState[line " + lineNumber + ", " + mode + ", dfa " + dfaState + ", lexeme " + lexeme +
+                ", pending " + pendingOperator + "@" + pendingOffset + (blockStar ? ", *" : "") +
+                (afterCR ? ", \\r" : "") + "]";
+    }
+
+}
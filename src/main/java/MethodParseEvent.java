@@ -0,0 +1,44 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * MethodParseEvent.java
+ * ---------------
+ * Java Flight Recorder event of the parsing of one method declaration by {@link TheParser},
+ * to find the methods behind a slow {@link ParseEvent}. Disabled by default, as there is one
+ * per method; turn it on in the recording settings with "javiergs.ParseMethod#enabled=true".
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+@Name("javiergs.ParseMethod")
+@Label("Parse Method")
+@Category({"TheParser", "Parser"})
+@Description("Parsing of a method declaration")
+@Enabled(false)
+@StackTrace(false)
+class MethodParseEvent extends Event {
+
+	@Label("Source")
+	String source;
+
+	@Label("Method")
+	String method;
+
+	@Label("Line")
+	int line;
+
+	@Label("Tokens")
+	int tokens;
+
+	@Label("Errors")
+	int errors;
+}
@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelLexer.java
+ * ---------------
+ * Lexes one large source text on several threads, producing exactly the tokens of a
+ * sequential run.
+ *
+ * The text is split into chunks that start right after a line break. At that point the
+ * lexer holds no lexeme or operator, strings and chars cannot be open because they never
+ * span lines, and the only context left from the previous chunk is whether a block comment
+ * is open. Every chunk but the first is therefore lexed speculatively from both contexts,
+ * with line numbers relative to the chunk. The run from inside a comment stops as soon as
+ * both runs agree at a line break, and shares the remaining tokens of the other run.
+ *
+ * Each run maps its entry context to an exit context. Composing these mappings from the
+ * first chunk on picks the real run of each chunk, and its tokens are appended with their
+ * line numbers shifted by the lines before the chunk. Tokens refer to the shared source text
+ * by absolute offsets, so they need no other fix.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class ParallelLexer {
+
+    private final TheLexer lexer;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a parallel lexer.
+     *
+     * @param lexer The lexer whose rules and options are used to lex each chunk
+     * @param pool The pool running the chunks
+     */
+    public ParallelLexer(TheLexer lexer, ForkJoinPool pool) {
+        this.lexer = lexer;
+        this.pool = pool;
+    }
+
+    /**
+     * Lexes a source text split into a number of chunks.
+     *
+     * @param source The source text, which must be safe to read from several threads
+     * @param chunks The number of chunks; fewer are used if the text has too few lines
+     * @return The tokens of the text
+     */
+    public TokenBuffer lex(CharSequence source, int chunks) {
+        int[] bounds = split(source, chunks);
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            boolean first = i == 0;
+            boolean last = i + 2 == bounds.length;
+            tasks.add(() -> lexChunk(source, from, to, first, last));
+        }
+        TokenBuffer tokens = new TokenBuffer(source);
+        LexerState.Mode mode = LexerState.Mode.CODE;
+        int lineOffset = 1;
+        for (Future<Chunk> task : pool.invokeAll(tasks)) {
+            Chunk chunk = join(task);
+            Run run = mode == LexerState.Mode.CODE ? chunk.fromCode : chunk.fromComment;
+            tokens.append(run.tokens, 0, run.tokens.size(), lineOffset);
+            lineOffset += run.lines;
+            mode = run.exit;
+        }
+        return tokens;
+    }
+
+    /**
+     * Splits a text into chunks of about the same size, moving each split forward to the
+     * beginning of the next line.
+     *
+     * @param source The source text
+     * @param chunks The number of chunks wanted
+     * @return The offsets where the chunks begin, followed by the length of the text
+     */
+    static int[] split(CharSequence source, int chunks) {
+        int size = source.length();
+        int[] bounds = new int[Math.max(1, chunks) + 1];
+        int count = 1;
+        for (int i = 1; i < chunks; i++) {
+            int bound = nextLine(source, Math.max((int) ((long) size * i / chunks), bounds[count - 1]));
+            if (bound > bounds[count - 1] && bound < size) {
+                bounds[count++] = bound;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Finds the beginning of the line after an offset.
+     *
+     * @param source The source text
+     * @param from The offset to search from
+     * @return The offset after the next "\n", "\r" or "\r\n", or the length of the text
+     */
+    private static int nextLine(CharSequence source, int from) {
+        int size = source.length();
+        for (int index = from; index < size; index++) {
+            char c = source.charAt(index);
+            if (c == '\n') {
+                return index + 1;
+            }
+            if (c == '\r') {
+                return index + 1 < size && source.charAt(index + 1) == '\n' ? index + 2 : index + 1;
+            }
+        }
+        return size;
+    }
+
+    private Chunk lexChunk(CharSequence source, int from, int to, boolean first, boolean last) {
+        Chunk chunk = new Chunk();
+        chunk.fromCode = speculate(source, from, to, LexerState.Mode.CODE, null, last);
+        if (!first) {
+            chunk.fromComment = speculate(source, from, to, LexerState.Mode.BLOCK_COMMENT, chunk.fromCode, last);
+        }
+        return chunk;
+    }
+
+    /**
+     * Lexes a chunk line by line from a given context.
+     *
+     * @param source The source text
+     * @param from The offset where the chunk begins, at the beginning of a line
+     * @param to The offset where the chunk ends
+     * @param entry The context at the beginning of the chunk
+     * @param reference A run of the same chunk to converge with, or null
+     * @param last true if the chunk ends the text
+     * @return The run
+     */
+    private Run speculate(CharSequence source, int from, int to, LexerState.Mode entry, Run reference, boolean last) {
+        LexerState state = lexer.initialState();
+        state.mode = entry;
+        state.lineNumber = 0;
+        Run run = new Run(new TokenBuffer(source));
+        int position = from;
+        while (position < to) {
+            int end = Math.min(nextLine(source, position), to);
+            lexer.scan(state, source, position, end, run.tokens);
+            position = end;
+            if (position == to) {
+                break;
+            }
+            // between lines, states only differ by their mode
+            int line = state.lineNumber;
+            if (reference != null && line <= reference.lineEnds && reference.modes[line - 1] == state.mode) {
+                run.tokens.append(reference.tokens, reference.tokenCounts[line - 1], reference.tokens.size(), 0);
+                run.lines = reference.lines;
+                run.exit = reference.exit;
+                return run;
+            }
+            run.lineEnd(state.mode);
+        }
+        if (last) {
+            lexer.endLine(state, source, to, run.tokens);
+        }
+        run.lines = state.lineNumber;
+        run.exit = state.mode;
+        return run;
+    }
+
+    private static Chunk join(Future<Chunk> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while lexing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Runs of one chunk from each context it may be entered in.
+     */
+    private static class Chunk {
+        Run fromCode;
+        Run fromComment;
+    }
+
+    /**
+     * Tokens of a chunk lexed from one context, the context it leaves, and the mode and
+     * number of tokens after each of its line breaks.
+     */
+    private static class Run {
+        final TokenBuffer tokens;
+        LexerState.Mode exit;
+        int lines;
+        LexerState.Mode[] modes = new LexerState.Mode[16];
+        int[] tokenCounts = new int[16];
+        int lineEnds;
+
+        Run(TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+
+        void lineEnd(LexerState.Mode mode) {
+            if (lineEnds == modes.length) {
+                modes = Arrays.copyOf(modes, lineEnds * 2);
+                tokenCounts = Arrays.copyOf(tokenCounts, lineEnds * 2);
+            }
+            modes[lineEnds] = mode;
+            tokenCounts[lineEnds] = tokens.size();
+            lineEnds++;
+        }
+    }
+
+}
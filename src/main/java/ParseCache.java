@@ -0,0 +1,404 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ParseCache.java
+ * ---------------
+ * Cache on disk of the tokens and parse results of source texts, so that unchanged files are
+ * not lexed and parsed again. Entries are named after a SHA-256 hash of the content and
+ * {@link #VERSION}, which makes them valid for any file with the same content and never for
+ * an older lexer or grammar. Tokens are those of a lexer with its default options.
+ *
+ * An entry is a binary file of big-endian ints and chars: the source text and token arrays,
+ * the diagnostics, and the tree with its own tokens. Entries are mapped into memory when
+ * read; the texts are used in place as views of the mapping and the arrays are copied out in
+ * bulk, with no lexing or parsing.
+ *
+ * Several processes can share a directory. Entries are written to a temporary file and
+ * moved into place atomically, so readers see complete entries or none. Reading an entry
+ * updates its modification time, and when the directory grows past its size bound the
+ * entries least recently used are deleted, by one process at a time under a file lock.
+ * Each process tracks the size from its own writes, so the bound may be exceeded by what
+ * other processes wrote since the last eviction.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.2
+ */
+public class ParseCache {
+
+	/**
+	 * Version of the lexer rules, the grammar and the entry format. Must be increased when
+	 * any of them changes, so that entries written before stop matching.
+	 */
+	public static final int VERSION = 2;
+
+	private static final int MAGIC = 0x50435348;
+	private static final String SUFFIX = ".parse";
+	private static final String LOCK = ".lock";
+	// temporary files older than this were left by a process that died while writing
+	private static final long ABANDONED = 60 * 60 * 1000;
+	// a FileLock cannot be taken twice by one JVM, so its threads take turns first
+	private static final Object EVICTION = new Object();
+
+	private final Path directory;
+	private final long maxBytes;
+	private final AtomicLong size;
+
+	/**
+	 * Opens a cache directory, creating it if needed.
+	 *
+	 * @param directory The directory holding the entries
+	 * @param maxBytes  The size the entries are kept under
+	 * @throws IOException If the directory cannot be created or read
+	 */
+	public ParseCache(Path directory, long maxBytes) throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.maxBytes = maxBytes;
+		long total = 0;
+		for (EntryFile entry : list()) {
+			total += entry.size;
+		}
+		this.size = new AtomicLong(total);
+	}
+
+	/**
+	 * Returns the tokens and parse result of a file, from the cache if its content was
+	 * parsed before.
+	 *
+	 * @param file The file
+	 * @return The tokens and parse result
+	 * @throws IOException If the file cannot be read or the entry cannot be written
+	 */
+	public Entry parse(Path file) throws IOException {
+		return parse(Files.readAllBytes(file), file.toString());
+	}
+
+	/**
+	 * Returns the tokens and parse result of a content, from the cache if it was parsed
+	 * before. The content is decoded with the default charset, as {@link TheLexer#run()} does.
+	 *
+	 * @param content The bytes of the source text
+	 * @return The tokens and parse result
+	 * @throws IOException If the entry cannot be written
+	 */
+	public Entry parse(byte[] content) throws IOException {
+		return parse(content, null);
+	}
+
+	/**
+	 * Returns the tokens and parse result of a content, from the cache if it was parsed
+	 * before, naming the source in the Flight Recorder events of a parse.
+	 *
+	 * @param content    The bytes of the source text
+	 * @param sourceName The name of the source, such as its file
+	 * @return The tokens and parse result
+	 * @throws IOException If the entry cannot be written
+	 */
+	public Entry parse(byte[] content, String sourceName) throws IOException {
+		Path path = directory.resolve(key(content) + SUFFIX);
+		Entry entry = read(path);
+		if (entry != null) {
+			touch(path);
+			return entry;
+		}
+		TheLexer lexer = new TheLexer(null);
+		lexer.feed(new String(content, Charset.defaultCharset()));
+		lexer.finish();
+		TokenBuffer tokens = lexer.getTokenBuffer();
+		ParseResult result = TheParser.parse(tokens, sourceName, true);
+		write(path, tokens, result);
+		return new Entry(tokens, result);
+	}
+
+	/**
+	 * Computes the name of the entry of a content.
+	 *
+	 * @param content The bytes of the source text
+	 * @return The SHA-256 hash of the version and the content, in hexadecimal
+	 */
+	static String key(byte[] content) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(VERSION).array());
+			digest.update(content);
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Maps an entry into memory and reads it.
+	 *
+	 * @param path The entry file
+	 * @return The entry, or null if there is none or it cannot be read
+	 * @throws IOException If the entry exists but cannot be mapped
+	 */
+	private Entry read(Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		try {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			// the identifiers of the tree share the ids of the tokens, as after a parse
+			SymbolTable symbols = new SymbolTable();
+			TokenBuffer tokens = readTokens(buffer, symbols);
+			int count = buffer.getInt();
+			List<Diagnostic> diagnostics = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int code = buffer.getInt();
+				int line = buffer.getInt();
+				diagnostics.add(new Diagnostic(code, line, readText(buffer).toString()));
+			}
+			TokenBuffer treeTokens = readTokens(buffer, symbols);
+			int nodes = buffer.getInt();
+			SyntaxTree tree = new SyntaxTree(readInts(buffer, nodes), readInts(buffer, nodes),
+					readInts(buffer, nodes), readInts(buffer, nodes), treeTokens);
+			return new Entry(tokens, new ParseResult(diagnostics, tree));
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException |
+		         NegativeArraySizeException e) {
+			// not an entry written by this class; it is replaced by the next write
+			return null;
+		}
+	}
+
+	private static TokenBuffer readTokens(ByteBuffer buffer, SymbolTable symbols) {
+		CharSequence source = readText(buffer);
+		int count = buffer.getInt();
+		return new TokenBuffer(source, readInts(buffer, count), readInts(buffer, count),
+				readInts(buffer, count), readInts(buffer, count), symbols);
+	}
+
+	private static CharSequence readText(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		CharBuffer text = buffer.slice(buffer.position(), length * Character.BYTES).asCharBuffer();
+		buffer.position(buffer.position() + length * Character.BYTES);
+		return text;
+	}
+
+	private static int[] readInts(ByteBuffer buffer, int count) {
+		int[] values = new int[count];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + count * Integer.BYTES);
+		return values;
+	}
+
+	/**
+	 * Writes an entry to a temporary file and moves it into place, then evicts entries if
+	 * the cache grew past its bound.
+	 *
+	 * @param path   The entry file
+	 * @param tokens The tokens of the source text
+	 * @param result The parse result
+	 * @throws IOException If the entry cannot be written
+	 */
+	private void write(Path path, TokenBuffer tokens, ParseResult result) throws IOException {
+		Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeTokens(out, tokens);
+				out.writeInt(result.getDiagnostics().size());
+				for (Diagnostic diagnostic : result.getDiagnostics()) {
+					out.writeInt(diagnostic.getCode());
+					out.writeInt(diagnostic.getLineNumber());
+					writeText(out, diagnostic.getToken());
+				}
+				SyntaxTree tree = result.getTree();
+				writeTokens(out, tree.getTokens());
+				out.writeInt(tree.size());
+				for (int node = 0; node < tree.size(); node++) {
+					out.writeInt(tree.isToken(node) ? -1 : tree.getRule(node).ordinal());
+				}
+				for (int node = 0; node < tree.size(); node++) {
+					out.writeInt(tree.getFirstChild(node));
+				}
+				for (int node = 0; node < tree.size(); node++) {
+					out.writeInt(tree.getNextSibling(node));
+				}
+				for (int node = 0; node < tree.size(); node++) {
+					out.writeInt(tree.getToken(node));
+				}
+			}
+			long written = Files.size(temp);
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (size.addAndGet(written) > maxBytes) {
+				evict();
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void writeTokens(DataOutputStream out, TokenBuffer tokens) throws IOException {
+		writeText(out, tokens.getSource());
+		int count = tokens.size();
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			out.writeInt(tokens.getKind(i).ordinal());
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeInt(tokens.getStart(i));
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeInt(tokens.getLength(i));
+		}
+		for (int i = 0; i < count; i++) {
+			out.writeInt(tokens.getLineNumber(i));
+		}
+	}
+
+	private static void writeText(DataOutputStream out, CharSequence text) throws IOException {
+		out.writeInt(text.length());
+		out.writeChars(text.toString());
+	}
+
+	/**
+	 * Marks an entry as used now.
+	 *
+	 * @param path The entry file
+	 */
+	private static void touch(Path path) {
+		try {
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// evicted meanwhile by another process; the entry already read is still valid
+		}
+	}
+
+	/**
+	 * Deletes the entries least recently used until the cache is back under nine tenths of
+	 * its bound, leaving room for a few writes before the next eviction.
+	 *
+	 * @throws IOException If the directory cannot be listed or locked
+	 */
+	@SuppressWarnings("try") // the lock is only held, never referenced
+	private void evict() throws IOException {
+		synchronized (EVICTION) {
+			try (FileChannel channel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			     FileLock lock = channel.lock()) {
+				List<EntryFile> entries = list();
+				entries.sort(Comparator.comparing(entry -> entry.used));
+				long total = 0;
+				for (EntryFile entry : entries) {
+					total += entry.size;
+				}
+				long target = maxBytes / 10 * 9;
+				for (int i = 0; i < entries.size() && total > target; i++) {
+					Files.deleteIfExists(entries.get(i).path);
+					total -= entries.get(i).size;
+				}
+				size.set(total);
+				deleteAbandoned();
+			}
+		}
+	}
+
+	private List<EntryFile> list() throws IOException {
+		List<EntryFile> entries = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			for (Path path : stream) {
+				try {
+					BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+					entries.add(new EntryFile(path, attributes.size(), attributes.lastModifiedTime()));
+				} catch (NoSuchFileException e) {
+					// deleted while listing
+				}
+			}
+		}
+		return entries;
+	}
+
+	private void deleteAbandoned() throws IOException {
+		long before = System.currentTimeMillis() - ABANDONED;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.tmp")) {
+			for (Path path : stream) {
+				try {
+					if (Files.getLastModifiedTime(path).toMillis() < before) {
+						Files.deleteIfExists(path);
+					}
+				} catch (NoSuchFileException e) {
+					// moved into place meanwhile
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tokens and parse result of one source text.
+	 */
+	public static class Entry {
+
+		private final TokenBuffer tokens;
+		private final ParseResult result;
+
+		Entry(TokenBuffer tokens, ParseResult result) {
+			this.tokens = tokens;
+			this.result = result;
+		}
+
+		public TokenBuffer getTokens() {
+			return tokens;
+		}
+
+		public ParseResult getResult() {
+			return result;
+		}
+	}
+
+	/**
+	 * Entry file found when listing the directory.
+	 */
+	private static class EntryFile {
+		final Path path;
+		final long size;
+		final FileTime used;
+
+		EntryFile(Path path, long size, FileTime used) {
+			this.path = path;
+			this.size = size;
+			this.used = used;
+		}
+	}
+}
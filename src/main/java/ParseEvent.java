@@ -0,0 +1,47 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ParseEvent.java
+ * ---------------
+ * Java Flight Recorder event of one run of {@link TheParser}. Enabled by default; its fields
+ * are only filled in when the event is recorded.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+@Name("javiergs.Parse")
+@Label("Parse")
+@Category({"TheParser", "Parser"})
+@Description("Parsing of a source")
+@StackTrace(false)
+class ParseEvent extends Event {
+
+	@Label("Source")
+	@Description("Name of the source, if the parser was given one")
+	String source;
+
+	@Label("Bytes")
+	@Description("Length of the source text, 0 when the tokens are streamed")
+	@DataAmount
+	long bytes;
+
+	@Label("Tokens")
+	@Description("Number of tokens consumed")
+	int tokens;
+
+	@Label("Lines")
+	@Description("Line of the last token")
+	int lines;
+
+	@Label("Errors")
+	int errors;
+}
@@ -0,0 +1,56 @@
+/**
+ * ParseListener.java
+ * ---------------
+ * Receives the events of a parse: the rules entered and exited, the tokens consumed and the
+ * syntax errors found. Every rule entered is exited, also when the parser recovers from an
+ * error inside it.
+ *
+ * All methods do nothing by default. {@link #NONE} is the listener of a parser that only
+ * checks its input; its calls are empty and get inlined away by the JIT.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public interface ParseListener {
+
+	/**
+	 * Listener that ignores every event.
+	 */
+	ParseListener NONE = new ParseListener() {
+	};
+
+	/**
+	 * Called when the parser enters a rule.
+	 *
+	 * @param rule The rule
+	 */
+	default void enterRule(ParseRule rule) {
+	}
+
+	/**
+	 * Called when the parser leaves a rule, completely parsed or not.
+	 *
+	 * @param rule The rule
+	 */
+	default void exitRule(ParseRule rule) {
+	}
+
+	/**
+	 * Called before the parser consumes a token.
+	 *
+	 * @param tokens The token source, whose current token is the one consumed
+	 */
+	default void terminal(TokenSource tokens) {
+	}
+
+	/**
+	 * Called when the parser finds a syntax error.
+	 *
+	 * @param diagnostic The description of the error
+	 */
+	default void syntaxError(Diagnostic diagnostic) {
+	}
+}
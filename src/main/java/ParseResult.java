@@ -0,0 +1,54 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ParseResult.java
+ * ---------------
+ * Outcome of parsing one input: the syntax tree and the diagnostics of every syntax error
+ * found, in the order they were found. The parser recovers from errors, so a single run
+ * reports all of them, and the tree holds what could be parsed around them.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class ParseResult {
+
+	private final List<Diagnostic> diagnostics;
+	private final SyntaxTree tree;
+
+	/**
+	 * Constructs a new ParseResult.
+	 *
+	 * @param diagnostics The diagnostics of the errors found
+	 * @param tree        The syntax tree of the input
+	 */
+	public ParseResult(List<Diagnostic> diagnostics, SyntaxTree tree) {
+		this.diagnostics = Collections.unmodifiableList(diagnostics);
+		this.tree = tree;
+	}
+
+	/**
+	 * Checks if the input was parsed without errors.
+	 *
+	 * @return true if no error was found
+	 */
+	public boolean isSuccess() {
+		return diagnostics.isEmpty();
+	}
+
+	public List<Diagnostic> getDiagnostics() {
+		return diagnostics;
+	}
+
+	public SyntaxTree getTree() {
+		return tree;
+	}
+
+	@Override
+	public String toString() {
+		return isSuccess() ? "No errors" : diagnostics.size() + " error(s)";
+	}
+}
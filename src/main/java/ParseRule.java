@@ -0,0 +1,43 @@
+/**
+ * ParseRule.java
+ * ---------------
+ * Grammar rules of {@link TheParser}, reported to a {@link ParseListener} when the parser
+ * enters and exits them.
+ *
+ * EXPRESSION to B are also the precedence levels of expressions, from "||" to unary "-",
+ * and C is a missing operand. Expressions are parsed by precedence climbing, so only
+ * EXPRESSION is entered and exited; the other levels only appear as nodes of the
+ * {@link SyntaxTree}, for operators and the operands around them.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public enum ParseRule {
+	PROGRAM,
+	METHODS,
+	PARAMS,
+	BODY,
+	VARIABLE,
+	ASSIGNMENT,
+	CALL_METHOD,
+	PARAM_VALUES,
+	RETURN,
+	WHILE,
+	IF,
+	DO_WHILE,
+	FOR,
+	SWITCH,
+	STATEMENT_BLOCK,
+	EXPRESSION,
+	X,
+	Y,
+	R,
+	E,
+	A,
+	B,
+	C,
+	TYPE
+}
@@ -0,0 +1,64 @@
+import java.io.PrintStream;
+
+/**
+ * ParseTreePrinter.java
+ * ---------------
+ * Listener that prints the parse as a tree, one rule or token per line, with dashes showing
+ * how deep it is nested. Identifiers, literals and type names are labeled; other tokens are
+ * printed as they are. Syntax errors are printed where they are found.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class ParseTreePrinter implements ParseListener {
+
+	private final PrintStream out;
+	private int depth;
+
+	/**
+	 * Constructs a new ParseTreePrinter.
+	 *
+	 * @param out The stream to print to
+	 */
+	public ParseTreePrinter(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void enterRule(ParseRule rule) {
+		depth++;
+		out.println("-".repeat(depth) + " RULE_" + rule);
+	}
+
+	@Override
+	public void exitRule(ParseRule rule) {
+		depth--;
+	}
+
+	@Override
+	public void terminal(TokenSource tokens) {
+		out.println("-".repeat(Math.max(depth, 1)) + " " + label(tokens.kind(0), tokens.value(0)));
+	}
+
+	@Override
+	public void syntaxError(Diagnostic diagnostic) {
+		out.println(diagnostic);
+	}
+
+	private String label(TokenKind kind, String value) {
+		switch (kind) {
+			case IDENTIFIER:
+				return "IDENTIFIER: " + value;
+			case INTEGER: case FLOAT: case CHAR: case STRING: case HEXADECIMAL: case BINARY:
+			case KW_TRUE: case KW_FALSE:
+				return "LITERAL: " + value;
+			case KW_INT: case KW_FLOAT: case KW_VOID: case KW_CHAR: case KW_STRING: case KW_BOOLEAN:
+				return "TYPE: " + value;
+			default:
+				return value;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RuleProfiler.java
+ * ---------------
+ * Profile of the rules of {@link TheParser} and {@link IterativeParser} and of the decisions
+ * they take between their alternatives: for each, how many times it ran, the tokens consumed
+ * and the nanoseconds spent, inclusive of what it called and exclusive of it. The iterative
+ * parser calls no methods for its rules, so a rule runs from the step entering it to the
+ * step exiting it.
+ *
+ * Profiling is turned on with the system property "parser.profile", as in
+ * {@code java -Dparser.profile=true TheMain}. The flag is a static final constant, so when it
+ * is off the JIT removes the calls of the parser to its profiler and they cost nothing.
+ * Each parser records its own profile and adds it to the totals of the JVM when its parse
+ * ends, including the member parses of {@link IncrementalDocument}; a report ranking the
+ * rules by exclusive time is printed to the standard error when the JVM exits.
+ *
+ * A recursive rule counts its inclusive time and tokens once, for its outermost call.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.1
+ */
+public class RuleProfiler {
+
+	/**
+	 * Whether parsers profile their rules.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("parser.profile");
+
+	// names of the rules, then of the decisions registered with decision()
+	private static final List<String> NAMES = new ArrayList<>();
+	private static final Object LOCK = new Object();
+	private static long[][] totals = new long[0][];
+
+	static {
+		for (ParseRule rule : ParseRule.values()) {
+			NAMES.add(rule.name());
+		}
+		if (ENABLED) {
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(report())));
+		}
+	}
+
+	// counters of each rule and decision
+	private static final int CALLS = 0;
+	private static final int TOKENS = 1;
+	private static final int EXCLUSIVE_TOKENS = 2;
+	private static final int INCLUSIVE = 3;
+	private static final int EXCLUSIVE = 4;
+
+	private long[][] counters = new long[NAMES.size()][5];
+	// calls of each rule still running, to count recursive calls once
+	private int[] active = new int[NAMES.size()];
+	private long consumed;
+
+	// the calls running, innermost last
+	private int[] keys = new int[32];
+	private long[] starts = new long[32];
+	private long[] startTokens = new long[32];
+	private long[] children = new long[32];
+	private int top;
+
+	/**
+	 * Registers a decision of the parser. Called while initializing the parser, before any
+	 * profile is recorded.
+	 *
+	 * @param name The name of the decision in the report
+	 * @return The key of the decision
+	 */
+	static int decision(String name) {
+		NAMES.add(name);
+		return NAMES.size() - 1;
+	}
+
+	/**
+	 * Returns the key of a rule.
+	 *
+	 * @param rule The rule
+	 * @return The key of the rule
+	 */
+	static int key(ParseRule rule) {
+		return rule.ordinal();
+	}
+
+	/**
+	 * Starts a call of a rule or decision.
+	 *
+	 * @param key The key of the rule or decision
+	 */
+	void enter(int key) {
+		if (key >= counters.length) {
+			// decisions registered after this profiler was created
+			counters = Arrays.copyOf(counters, NAMES.size());
+			active = Arrays.copyOf(active, NAMES.size());
+		}
+		if (counters[key] == null) {
+			counters[key] = new long[5];
+		}
+		if (top == keys.length) {
+			keys = Arrays.copyOf(keys, top * 2);
+			starts = Arrays.copyOf(starts, top * 2);
+			startTokens = Arrays.copyOf(startTokens, top * 2);
+			children = Arrays.copyOf(children, top * 2);
+		}
+		keys[top] = key;
+		startTokens[top] = consumed;
+		children[top] = 0;
+		active[key]++;
+		starts[top++] = System.nanoTime();
+	}
+
+	/**
+	 * Ends the innermost call.
+	 */
+	void exit() {
+		long elapsed = System.nanoTime() - starts[--top];
+		int key = keys[top];
+		long[] counter = counters[key];
+		counter[CALLS]++;
+		counter[EXCLUSIVE] += elapsed - children[top];
+		if (--active[key] == 0) {
+			counter[INCLUSIVE] += elapsed;
+			counter[TOKENS] += consumed - startTokens[top];
+		}
+		if (top > 0) {
+			children[top - 1] += elapsed;
+		}
+	}
+
+	/**
+	 * Counts a token consumed by the innermost call.
+	 */
+	void consume() {
+		consumed++;
+		if (top > 0) {
+			counters[keys[top - 1]][EXCLUSIVE_TOKENS]++;
+		}
+	}
+
+	/**
+	 * Adds this profile to the totals of the JVM and clears it.
+	 */
+	void finish() {
+		synchronized (LOCK) {
+			if (totals.length < counters.length) {
+				totals = Arrays.copyOf(totals, counters.length);
+			}
+			for (int key = 0; key < counters.length; key++) {
+				if (counters[key] == null) {
+					continue;
+				}
+				if (totals[key] == null) {
+					totals[key] = new long[5];
+				}
+				for (int i = 0; i < 5; i++) {
+					totals[key][i] += counters[key][i];
+				}
+				Arrays.fill(counters[key], 0);
+			}
+		}
+	}
+
+	/**
+	 * Clears the totals of the JVM.
+	 */
+	public static void reset() {
+		synchronized (LOCK) {
+			totals = new long[0][];
+		}
+	}
+
+	/**
+	 * Formats the totals of the JVM as a table of the rules and decisions that ran, ranked by
+	 * exclusive time.
+	 *
+	 * @return The report
+	 */
+	public static String report() {
+		List<Integer> ranked = new ArrayList<>();
+		long[][] rows;
+		long total = 0;
+		synchronized (LOCK) {
+			rows = new long[totals.length][];
+			for (int key = 0; key < totals.length; key++) {
+				if (totals[key] != null && totals[key][CALLS] > 0) {
+					rows[key] = totals[key].clone();
+					total += rows[key][EXCLUSIVE];
+					ranked.add(key);
+				}
+			}
+		}
+		ranked.sort((a, b) -> Long.compare(rows[b][EXCLUSIVE], rows[a][EXCLUSIVE]));
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("%-22s %12s %12s %12s %14s %14s %7s%n",
+				"Rule", "Calls", "Tokens", "Own tokens", "Inclusive ms", "Exclusive ms", "Own %"));
+		for (int key : ranked) {
+			long[] row = rows[key];
+			report.append(String.format("%-22s %12d %12d %12d %14.3f %14.3f %6.1f%%%n",
+					NAMES.get(key), row[CALLS], row[TOKENS], row[EXCLUSIVE_TOKENS], row[INCLUSIVE] / 1e6,
+					row[EXCLUSIVE] / 1e6, total == 0 ? 0 : 100.0 * row[EXCLUSIVE] / total));
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ * SymbolTable.java
+ * ---------------
+ * Interns the names of identifiers into dense int ids: the first name interned gets 0, the
+ * next new one 1, and so on. Names are looked up straight from a range of the source text
+ * with an open addressing hash table, so interning a name already in the table allocates
+ * nothing; each name is stored once as a {@link String}, however many tokens spell it.
+ *
+ * A table is not thread safe. Each {@link TokenBuffer} owns one unless it is given a table
+ * to share, so ids can be compared with == only between tokens of buffers sharing a table.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public class SymbolTable {
+
+    // slots hold an id plus one, 0 marking an empty slot
+    private int[] slots = new int[64];
+    private String[] names = new String[32];
+    private int[] hashes = new int[32];
+    private int size;
+
+    /**
+     * Returns the id of a name, adding the name to the table if it is new.
+     *
+     * @param source The text holding the name
+     * @param start The offset of the name in the text
+     * @param length The number of characters of the name
+     * @return The id of the name
+     */
+    public int intern(CharSequence source, int start, int length) {
+        int hash = hash(source, start, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        for (int id; (id = slots[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+            if (hashes[id] == hash && matches(names[id], source, start, length)) {
+                return id;
+            }
+        }
+        return add(source.subSequence(start, start + length).toString(), hash, slot);
+    }
+
+    /**
+     * Returns the id of a name, adding the name to the table if it is new.
+     *
+     * @param name The name
+     * @return The id of the name
+     */
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * Looks up a name without adding it.
+     *
+     * @param name The name
+     * @return The id of the name, or -1 if it is not in the table
+     */
+    public int find(String name) {
+        int hash = hash(name, 0, name.length());
+        int mask = slots.length - 1;
+        for (int slot = hash & mask, id; (id = slots[slot] - 1) >= 0; slot = (slot + 1) & mask) {
+            if (hashes[id] == hash && name.equals(names[id])) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the name of an id.
+     *
+     * @param id The id
+     * @return The name
+     */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the number of names in the table, which is also the next id.
+     *
+     * @return The number of names
+     */
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        names[size] = name;
+        hashes[size] = hash;
+        slots[slot] = size + 1;
+        if (++size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    private static int hash(CharSequence source, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        // spreads the high bits into the low ones the slot is taken from
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, CharSequence source, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,472 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SyntaxTree.java
+ * ---------------
+ * Abstract syntax tree built by {@link TheParser}. Nodes are not objects: they are indexes
+ * into a few parallel int arrays holding the kind of each node, its first child, its next
+ * sibling and its token, so a tree costs a handful of arrays however large it is.
+ *
+ * A node is either a rule node, whose children are the nodes of the rule, or a token node
+ * for an identifier, literal, keyword or operator. Delimiters are left out, since the rule
+ * nodes already say where they were, and expression levels with a single child are replaced
+ * by that child, so "x + 1" is an E node with three children instead of a chain of eight
+ * rules per operand. Nodes are stored in post-order, children before their parent, and the
+ * root is the last node.
+ *
+ * The text of the tokens is copied into a token buffer of the tree, straight from the
+ * source of the tokens, which keeps the tree valid after the input is gone. Identifiers keep
+ * the symbol ids of the source, whose {@link SymbolTable} the tree shares. {@link Node}
+ * gives a typed view over a node; views are created on demand and hold no state of their
+ * own.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.2
+ */
+public class SyntaxTree {
+
+	private static final ParseRule[] RULES = ParseRule.values();
+	private static final int TOKEN = -1;
+
+	private final int[] kinds;
+	private final int[] firstChildren;
+	private final int[] nextSiblings;
+	private final int[] tokenIndexes;
+	private final int size;
+	private final TokenBuffer tokens;
+
+	/**
+	 * Creates a tree over nodes already stored in arrays, such as the ones read back from a
+	 * {@link ParseCache}. The arrays are used as they are, not copied.
+	 *
+	 * @param kinds         The rule ordinals of the nodes, -1 for token nodes
+	 * @param firstChildren The first child of each node, or -1
+	 * @param nextSiblings  The next sibling of each node, or -1
+	 * @param tokenIndexes  The token of each node, or -1
+	 * @param tokens        The tokens of the tree
+	 */
+	SyntaxTree(int[] kinds, int[] firstChildren, int[] nextSiblings, int[] tokenIndexes, TokenBuffer tokens) {
+		this.size = kinds.length;
+		this.kinds = kinds;
+		this.firstChildren = firstChildren;
+		this.nextSiblings = nextSiblings;
+		this.tokenIndexes = tokenIndexes;
+		this.tokens = tokens;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the root of the tree, the node of the program rule.
+	 *
+	 * @return The index of the root, or -1 if the tree is empty
+	 */
+	public int root() {
+		return size - 1;
+	}
+
+	public boolean isToken(int node) {
+		return kinds[node] == TOKEN;
+	}
+
+	/**
+	 * Returns the rule of a node.
+	 *
+	 * @param node The index of the node
+	 * @return The rule, or null for a token node
+	 */
+	public ParseRule getRule(int node) {
+		return kinds[node] == TOKEN ? null : RULES[kinds[node]];
+	}
+
+	/**
+	 * Returns the first child of a node.
+	 *
+	 * @param node The index of the node
+	 * @return The index of the child, or -1 if the node has no children
+	 */
+	public int getFirstChild(int node) {
+		return firstChildren[node];
+	}
+
+	/**
+	 * Returns the sibling after a node.
+	 *
+	 * @param node The index of the node
+	 * @return The index of the sibling, or -1 if the node is the last child of its parent
+	 */
+	public int getNextSibling(int node) {
+		return nextSiblings[node];
+	}
+
+	/**
+	 * Returns the token of a node, as an index into {@link #getTokens()}.
+	 *
+	 * @param node The index of the node
+	 * @return The index of the token, or -1 for a rule node
+	 */
+	public int getToken(int node) {
+		return tokenIndexes[node];
+	}
+
+	/**
+	 * Returns the tokens of the tree, in the order they were parsed.
+	 *
+	 * @return The tokens
+	 */
+	public TokenBuffer getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Returns a view of the root.
+	 *
+	 * @return The root, or null if the tree is empty
+	 */
+	public Node getRoot() {
+		return size == 0 ? null : new Node(root());
+	}
+
+	/**
+	 * Returns a view of a node.
+	 *
+	 * @param node The index of the node
+	 * @return The view
+	 */
+	public Node getNode(int node) {
+		if (node < 0 || node >= size) {
+			throw new IndexOutOfBoundsException(node);
+		}
+		return new Node(node);
+	}
+
+	/**
+	 * Formats the tree as nested lists, such as "(PROGRAM class Foo (METHODS ...))".
+	 *
+	 * @return The tree as text
+	 */
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		if (size > 0) {
+			format(root(), text);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Formats a node and its descendants. The nodes still to format wait on a stack rather
+	 * than in calls, since trees parsed by {@link IterativeParser} may be nested deeper than
+	 * the thread stack allows; a node is pushed as its complement to close its list.
+	 *
+	 * @param node The index of the node
+	 * @param text The text to append to
+	 */
+	private void format(int node, StringBuilder text) {
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = node;
+		while (top > 0) {
+			int next = stack[--top];
+			if (next < 0) {
+				text.append(')');
+				continue;
+			}
+			if (next != node) {
+				text.append(' ');
+			}
+			if (isToken(next)) {
+				tokens.appendValue(tokenIndexes[next], text);
+				continue;
+			}
+			text.append('(').append(getRule(next));
+			int first = top;
+			for (int child = firstChildren[next]; child >= 0; child = nextSiblings[child]) {
+				if (top + 1 >= stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[++top] = child;
+			}
+			// the close of the list goes below the children, which are popped first to last
+			stack[first] = ~next;
+			for (int i = first + 1, j = top; i < j; i++, j--) {
+				int swap = stack[i];
+				stack[i] = stack[j];
+				stack[j] = swap;
+			}
+			top++;
+		}
+	}
+
+	/**
+	 * Typed view of one node of the tree.
+	 */
+	public class Node {
+
+		private final int index;
+
+		private Node(int index) {
+			this.index = index;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public boolean isToken() {
+			return SyntaxTree.this.isToken(index);
+		}
+
+		/**
+		 * Returns the rule of the node.
+		 *
+		 * @return The rule, or null for a token node
+		 */
+		public ParseRule getRule() {
+			return SyntaxTree.this.getRule(index);
+		}
+
+		/**
+		 * Returns the kind of the token of the node.
+		 *
+		 * @return The kind, or null for a rule node
+		 */
+		public TokenKind getKind() {
+			return isToken() ? tokens.getKind(tokenIndexes[index]) : null;
+		}
+
+		/**
+		 * Returns the text of the token of the node.
+		 *
+		 * @return The text, or null for a rule node
+		 */
+		public String getText() {
+			return isToken() ? tokens.getValue(tokenIndexes[index]) : null;
+		}
+
+		/**
+		 * Returns the line of the node, the line of its first token.
+		 *
+		 * @return The line number, or 0 if the node has no tokens
+		 */
+		public int getLineNumber() {
+			int node = index;
+			while (!SyntaxTree.this.isToken(node)) {
+				node = firstChildren[node];
+				if (node < 0) {
+					return 0;
+				}
+			}
+			return tokens.getLineNumber(tokenIndexes[node]);
+		}
+
+		/**
+		 * Returns the first child of the node.
+		 *
+		 * @return The child, or null if the node has no children
+		 */
+		public Node getFirstChild() {
+			return firstChildren[index] < 0 ? null : new Node(firstChildren[index]);
+		}
+
+		/**
+		 * Returns the sibling after the node.
+		 *
+		 * @return The sibling, or null if the node is the last child of its parent
+		 */
+		public Node getNextSibling() {
+			return nextSiblings[index] < 0 ? null : new Node(nextSiblings[index]);
+		}
+
+		public List<Node> getChildren() {
+			List<Node> children = new ArrayList<>();
+			for (int child = firstChildren[index]; child >= 0; child = nextSiblings[child]) {
+				children.add(new Node(child));
+			}
+			return Collections.unmodifiableList(children);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Node node && node.tree() == SyntaxTree.this && node.index == index;
+		}
+
+		@Override
+		public int hashCode() {
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			format(index, text);
+			return text.toString();
+		}
+
+		private SyntaxTree tree() {
+			return SyntaxTree.this;
+		}
+	}
+
+	/**
+	 * Builds a tree from the rules and tokens of a parse, as the parser enters and exits
+	 * rules. Nodes whose rule is still open wait on a stack; exiting a rule links the nodes
+	 * pushed since it was entered as its children.
+	 *
+	 * A builder created disabled records nothing and builds an empty tree, for parses that
+	 * only check their input.
+	 */
+	static class Builder {
+
+		private final boolean enabled;
+
+		private int[] kinds = new int[256];
+		private int[] firstChildren = new int[256];
+		private int[] nextSiblings = new int[256];
+		private int[] tokenIndexes = new int[256];
+		private int size;
+
+		// nodes waiting for their parent, and where each open rule starts on that stack
+		private int[] pending = new int[64];
+		private int top;
+		private int[] marks = new int[32];
+		private int open;
+
+		private final StringBuilder text = new StringBuilder();
+		// created with the first token, over the symbol table of its source
+		private TokenBuffer tokens;
+
+		Builder() {
+			this(true);
+		}
+
+		/**
+		 * Creates a builder.
+		 *
+		 * @param enabled Whether the builder records the parse; if not, it builds an empty tree
+		 */
+		Builder(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		void enter() {
+			if (!enabled) {
+				return;
+			}
+			if (open == marks.length) {
+				marks = Arrays.copyOf(marks, open * 2);
+			}
+			marks[open++] = top;
+		}
+
+		void exit(ParseRule rule) {
+			if (!enabled) {
+				return;
+			}
+			reduce(rule, marks[--open]);
+		}
+
+		/**
+		 * Returns the number of nodes waiting for their parent, to group the nodes pushed
+		 * after it with {@link #reduce}.
+		 *
+		 * @return The mark
+		 */
+		int mark() {
+			return top;
+		}
+
+		/**
+		 * Makes the nodes pushed since a mark the children of a new node, as exiting a rule
+		 * entered at the mark does. Used for the precedence levels of expressions, which the
+		 * parser does not enter as rules.
+		 *
+		 * @param rule The rule of the node
+		 * @param mark The mark before its first child
+		 */
+		void reduce(ParseRule rule, int mark) {
+			if (!enabled || top - mark == 1 && isCollapsed(rule)) {
+				return;
+			}
+			int node = add(rule.ordinal(), -1);
+			if (top > mark) {
+				firstChildren[node] = pending[mark];
+				for (int i = mark; i + 1 < top; i++) {
+					nextSiblings[pending[i]] = pending[i + 1];
+				}
+			}
+			top = mark;
+			push(node);
+		}
+
+		void token(TokenSource source) {
+			if (!enabled) {
+				return;
+			}
+			TokenKind kind = source.kind(0);
+			if (kind.isDelimiter()) {
+				return;
+			}
+			if (tokens == null) {
+				SymbolTable symbols = source.getSymbolTable();
+				tokens = symbols == null ? new TokenBuffer(text) : new TokenBuffer(text, symbols);
+			}
+			int start = text.length();
+			source.appendValue(0, text);
+			int symbol = source.symbol(0);
+			if (symbol >= 0 && source.getSymbolTable() == tokens.getSymbolTable()) {
+				tokens.add(kind, start, text.length() - start, source.line(0), symbol);
+			} else {
+				tokens.add(kind, start, text.length() - start, source.line(0));
+			}
+			push(add(TOKEN, tokens.size() - 1));
+		}
+
+		SyntaxTree build() {
+			if (tokens == null) {
+				tokens = new TokenBuffer(text);
+			}
+			return new SyntaxTree(Arrays.copyOf(kinds, size), Arrays.copyOf(firstChildren, size),
+					Arrays.copyOf(nextSiblings, size), Arrays.copyOf(tokenIndexes, size), tokens);
+		}
+
+		private static boolean isCollapsed(ParseRule rule) {
+			switch (rule) {
+				case EXPRESSION, X, Y, R, E, A, B, C:
+					return true;
+				default:
+					return false;
+			}
+		}
+
+		private int add(int kind, int token) {
+			if (size == kinds.length) {
+				int capacity = size * 2;
+				kinds = Arrays.copyOf(kinds, capacity);
+				firstChildren = Arrays.copyOf(firstChildren, capacity);
+				nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+				tokenIndexes = Arrays.copyOf(tokenIndexes, capacity);
+			}
+			kinds[size] = kind;
+			firstChildren[size] = -1;
+			nextSiblings[size] = -1;
+			tokenIndexes[size] = token;
+			return size++;
+		}
+
+		private void push(int node) {
+			if (top == pending.length) {
+				pending = Arrays.copyOf(pending, top * 2);
+			}
+			pending[top++] = node;
+		}
+	}
+}
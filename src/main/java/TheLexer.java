@@ -1,5 +1,11 @@
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -18,347 +24,464 @@ import java.util.*;
  * - Operators
  * - Delimiters
  *
- * The lexer reads input from a file and produces a sequence of tokens
- * that can be used by subsequent phases of compilation.
+ * The lexer reads input from a file, or from chunks of text given with feed(), and
+ * produces a sequence of tokens that can be used by subsequent phases of compilation.
+ * Its state between two characters is a {@link LexerState}, so lexing can stop and resume
+ * anywhere in the text.
  *
  * @author javiergs
  * @author eduardomv
  * @author santiarr
  * @author yawham
- * @version 2.0
+ * @version 2.3
  */
 public class TheLexer {
 
+    // shared by every lexer: loaded from the precompiled snapshot, or compiled from the rules
+    private static final Automata dfa = AutomataSnapshot.load(tokenRules());
+    private static final int start = dfa.getStateId("s0");
+    private static final TokenKind[] acceptKinds = acceptKinds();
+
+    /**
+     * Smallest number of characters worth lexing on a thread of its own.
+     */
+    public static final int PARALLEL_CHUNK = 1 << 16;
+
     private File file;
-    private Automata dfa;
-    private Vector<TheToken> tokens;
-    private static final Set<String> keywords = new HashSet<>(Arrays.asList(
-            "int", "end", "if", "else", "while", "do", "for", "break", "continue", "class", "float", "true", "false", "string", "char", "void", "boolean", "return", "switch", "case", "default"
-    ));
+    private TokenBuffer tokens;
+    // state and text of the input given with feed()
+    private LexerState state;
+    private StringBuilder fed;
+    private boolean ignoreKeywordCase = true;
+    // token objects handed to legacy callers, and the buffer and tokens they were made from
+    private Vector<TheToken> legacyTokens;
+    private TokenBuffer legacySource;
+    private int legacyCount;
 
     /**
      * Constructs a new Lexer for the specified input file.
-     * Initializes the DFA with transitions for all supported token types.
+     * The DFA is shared by all lexers and built once, when the class is loaded.
      *
      * @param file The input file to be analyzed
      */
     public TheLexer(File file) {
         this.file = file;
-        tokens = new Vector<>();
-        dfa = new Automata();
-
-        //Binary transitions
-        dfa.addTransition("s0", "0", "s1");
-        dfa.addTransition("s1", "b", "s2");
-        dfa.addTransition("s1", "B", "s2");
-        dfa.addTransition("s2", "0", "s3");
-        dfa.addTransition("s2", "1", "s3");
-        dfa.addTransition("s3", "0", "s3");
-        dfa.addTransition("s3", "1", "s3");
-
-        dfa.addAcceptState("s3", "BINARY");
-
-        // Decimal number transitions
-        dfa.addTransition("s0", "1", "s4");
-        dfa.addTransition("s0", "2", "s4");
-        dfa.addTransition("s0", "3", "s4");
-        dfa.addTransition("s0", "4", "s4");
-        dfa.addTransition("s0", "5", "s4");
-        dfa.addTransition("s0", "6", "s4");
-        dfa.addTransition("s0", "7", "s4");
-        dfa.addTransition("s0", "8", "s4");
-        dfa.addTransition("s0", "9", "s4");
-        dfa.addTransition("s4", "0", "s4");
-        dfa.addTransition("s4", "1", "s4");
-        dfa.addTransition("s4", "2", "s4");
-        dfa.addTransition("s4", "3", "s4");
-        dfa.addTransition("s4", "4", "s4");
-        dfa.addTransition("s4", "5", "s4");
-        dfa.addTransition("s4", "6", "s4");
-        dfa.addTransition("s4", "7", "s4");
-        dfa.addTransition("s4", "8", "s4");
-        dfa.addTransition("s4", "9", "s4");
-
-        dfa.addAcceptState("s1", "INTEGER");
-        dfa.addAcceptState("s4", "INTEGER");
-
-        // Identifier transitions (start with letter, can contain letters, numbers, underscore)
-        for (char c = 'a'; c <= 'z'; c++) {
-            dfa.addTransition("s0", String.valueOf(c), "s5");
-            dfa.addTransition("s5", String.valueOf(c), "s5");
-        }
+        tokens = new TokenBuffer("");
+    }
 
-        for (char c = 'A'; c <= 'Z'; c++) {
-            dfa.addTransition("s0", String.valueOf(c), "s5");
-            dfa.addTransition("s5", String.valueOf(c), "s5");
-        }
+    /**
+     * Sets whether keywords are recognized ignoring case, as in "While" or "WHILE". Such
+     * keywords are typed KEYWORD, with the generic {@link TokenKind#KEYWORD} kind. When case
+     * is not ignored they are identifiers. Case is ignored by default.
+     *
+     * @param ignoreKeywordCase true to recognize keywords ignoring case
+     */
+    public void setIgnoreKeywordCase(boolean ignoreKeywordCase) {
+        this.ignoreKeywordCase = ignoreKeywordCase;
+    }
 
-        for (char c = '0'; c <= '9'; c++) {
-            dfa.addTransition("s5", String.valueOf(c), "s5");
-        }
-        dfa.addTransition("s0", "_", "s5");
-        dfa.addTransition("s0", "$", "s5");
-        dfa.addTransition("s5", "_", "s5");
-        dfa.addTransition("s5", "$", "s5");
-        dfa.addAcceptState("s5", "IDENTIFIER");
-
-
-        //String transitions (start with ", can contain letters, numbers, underscore and symbols)
-        dfa.addTransition("s0", "\"", "s6");
-        for (char c = 32; c <= 126; c++) {
-            if (c != '"') {
-                dfa.addTransition("s6", String.valueOf(c), "s6");
-            }
+    /**
+     * Maps every accept state of the DFA to the kind of its tokens.
+     *
+     * @return The token kind of each state, or null for states that do not accept
+     */
+    private static TokenKind[] acceptKinds() {
+        TokenKind[] kinds = new TokenKind[dfa.getStateCount()];
+        for (int state = 0; state < kinds.length; state++) {
+            kinds[state] = dfa.isAcceptState(state) ? TokenKind.valueOf(dfa.getAcceptStateName(state)) : null;
         }
-        dfa.addTransition("s6", "\"", "s7");
-        dfa.addAcceptState("s7", "STRING");
+        return kinds;
+    }
+
+    /**
+     * Declares the token types recognized by the DFA as regular expressions.
+     * Keywords are recognized later among the identifiers, and operators and delimiters
+     * are handled directly by the scan loop. Rule names are {@link TokenKind} names.
+     *
+     * @return The builder holding the token rules
+     */
+    static AutomataBuilder tokenRules() {
+        return new AutomataBuilder()
+                // decimal digits, allowing a leading zero only when an 8 or a 9 rules out octal
+                .define("DECIMAL", "[1-9][0-9]*|0[0-7]*[89][0-9]*")
+                .define("DIGITS", "[0-9]+")
+                .define("EXPONENT", "[eE]-?[1-9][0-9]*")
+                .define("FRACTION", "{DIGITS}\\.[0-9]*|{DIGITS}\\.[0-9]+{EXPONENT}")
+                .addRule("BINARY", "0[bB][01]+", 1)
+                .addRule("OCTAL", "0[0-7]+", 1)
+                .addRule("HEXADECIMAL", "0[xX][0-9a-fA-F]+", 1)
+                .addRule("INTEGER", "0|{DECIMAL}|({DECIMAL}){EXPONENT}", 1)
+                .addRule("FLOAT", "{FRACTION}|(0|{DECIMAL}|{FRACTION})[fF]", 1)
+                .addRule("IDENTIFIER", "[a-zA-Z_$][a-zA-Z0-9_$]*", 1)
+                .addQuotedRule("STRING", "\"[ !#-~]*\"", 1)
+                .addQuotedRule("CHAR", "'[ -&(-~]'", 1);
+    }
 
+    /**
+     * Executes the lexical analysis on the input file.
+     * Reads the whole file into one source text and processes it character by character using the DFA.
+     * Tokens refer to their range of the source text instead of copying their lexeme.
+     *
+     * @throws IOException If an I/O error occurs while reading the input file
+     */
+    public void run() throws IOException {
+        LexEvent event = new LexEvent();
+        event.begin();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        scan(new String(bytes, Charset.defaultCharset()));
+        commit(event, bytes.length);
+    }
 
-        //Hexadecimal transitions
-        dfa.addTransition("s1", "x", "s8");
-        dfa.addTransition("s1", "X", "s8");
-        for (char c = 'a'; c <= 'f'; c++) {
-            dfa.addTransition("s8", String.valueOf(c), "s9");
-            dfa.addTransition("s9", String.valueOf(c), "s9");
+    /**
+     * Executes the lexical analysis over a memory-mapped view of the input file.
+     * The DFA runs directly over the bytes, without decoding them; lines end at "\n", "\r"
+     * or "\r\n" as with {@link #run()}. Input is expected to be ASCII, but any UTF-8 text
+     * produces the same tokens as {@link #run()}: non-ASCII bytes can only end up in ERROR
+     * tokens, whose value is decoded as UTF-8 when it is materialized.
+     *
+     * @throws IOException If an I/O error occurs while mapping the input file, or if the file
+     *                     is larger than 2 GB
+     */
+    public void runMapped() throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to be mapped: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         }
-        for (char c = 'A'; c <= 'F'; c++) {
-            dfa.addTransition("s8", String.valueOf(c), "s9");
-            dfa.addTransition("s9", String.valueOf(c), "s9");
+        LexEvent event = new LexEvent();
+        event.begin();
+        scan(new ByteSource(buffer));
+        commit(event, buffer.capacity());
+    }
+
+    /**
+     * Executes the lexical analysis on several threads of the common fork-join pool.
+     * Produces the same tokens as {@link #run()}; files smaller than {@link #PARALLEL_CHUNK},
+     * or machines with a single core, lex on the calling thread.
+     *
+     * @throws IOException If an I/O error occurs while reading the input file
+     */
+    public void runParallel() throws IOException {
+        LexEvent event = new LexEvent();
+        event.begin();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String source = new String(bytes, Charset.defaultCharset());
+        int chunks = pool.getParallelism() < 2 ? 1 : Math.min(pool.getParallelism() * 4, source.length() / PARALLEL_CHUNK);
+        if (chunks < 2) {
+            scan(source);
+        } else {
+            runParallel(source, pool, chunks);
         }
+        commit(event, bytes.length);
+    }
 
-        for (char c = '0'; c <= '9'; c++) {
-            dfa.addTransition("s8", String.valueOf(c), "s9");
-            dfa.addTransition("s9", String.valueOf(c), "s9");
+    /**
+     * Records the lexing of the input file as a Flight Recorder event, if it is recorded.
+     *
+     * @param event The event, begun before the file was read
+     * @param bytes The size of the file
+     */
+    private void commit(LexEvent event, long bytes) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
         }
-        dfa.addAcceptState("s9", "HEXADECIMAL");
-
-
-        //Octal transition
-        dfa.addTransition("s1", "0", "s10");
-        dfa.addTransition("s1", "1", "s10");
-        dfa.addTransition("s1", "2", "s10");
-        dfa.addTransition("s1", "3", "s10");
-        dfa.addTransition("s1", "4", "s10");
-        dfa.addTransition("s1", "5", "s10");
-        dfa.addTransition("s1", "6", "s10");
-        dfa.addTransition("s1", "7", "s10");
-        dfa.addTransition("s1", "8", "s4");
-        dfa.addTransition("s1", "9", "s4");
-        dfa.addTransition("s10", "0", "s10");
-        dfa.addTransition("s10", "1", "s10");
-        dfa.addTransition("s10", "2", "s10");
-        dfa.addTransition("s10", "3", "s10");
-        dfa.addTransition("s10", "4", "s10");
-        dfa.addTransition("s10", "5", "s10");
-        dfa.addTransition("s10", "6", "s10");
-        dfa.addTransition("s10", "7", "s10");
-        dfa.addTransition("s10", "8", "s4");
-        dfa.addTransition("s10", "9", "s4");
-
-        dfa.addAcceptState("s10", "OCTAL");
-
-//		Float transitions
-        dfa.addTransition("s1", ".", "s11");
-        dfa.addTransition("s4", ".", "s11");
-        dfa.addTransition("s10", ".", "s11");
-        for (char c = '0'; c <= '9'; c++) {
-            dfa.addTransition("s11", String.valueOf(c), "s12");
-            dfa.addTransition("s12", String.valueOf(c), "s12");
+        int errors = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.getKind(i) == TokenKind.ERROR) {
+                errors++;
+            }
         }
-        dfa.addAcceptState("s11", "FLOAT");
-        dfa.addAcceptState("s12", "FLOAT");
+        event.source = file.getPath();
+        event.bytes = bytes;
+        event.tokens = tokens.size();
+        event.lines = tokens.size() == 0 ? 0 : tokens.getLineNumber(tokens.size() - 1);
+        event.errors = errors;
+        event.commit();
+    }
 
+    /**
+     * Executes the lexical analysis of a source text split into chunks lexed in parallel.
+     *
+     * @param source The source text
+     * @param pool The pool lexing the chunks
+     * @param chunks The number of chunks, split at line breaks
+     * @see ParallelLexer
+     */
+    public void runParallel(CharSequence source, ForkJoinPool pool, int chunks) {
+        fed = null;
+        state = null;
+        tokens = new ParallelLexer(this, pool).lex(source, chunks);
+    }
 
+    /**
+     * Opens a stream that lexes the input file on demand, as the parser consumes its tokens.
+     * The file is read one line at a time, so only the line being lexed and the tokens
+     * waiting to be consumed are held in memory.
+     *
+     * @return The token stream, to be closed by the caller
+     * @throws IOException If the input file cannot be opened
+     */
+    public TokenStream stream() throws IOException {
+        // an InputStreamReader replaces malformed input as run() does, instead of failing
+        return new TokenStream(this, new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), Charset.defaultCharset())));
+    }
 
-        // Exponent transition from integer
-        dfa.addTransition("s4", "e", "s13");
-        dfa.addTransition("s4", "E", "s13");
-        dfa.addTransition("s13", "-", "s14");
+    /**
+     * Lexes one line of text on behalf of a {@link TokenStream}, resuming from the state
+     * left by the previous line so that block comments can span lines.
+     *
+     * @param state The state after the previous line, updated to the state after this one
+     * @param line The text of the line, without its line terminator
+     * @param tokens The buffer receiving the tokens of the line
+     */
+    void scanLine(LexerState state, CharSequence line, TokenBuffer tokens) {
+        scan(state, line, 0, line.length(), tokens);
+        endLine(state, line, line.length(), tokens);
+        state.lineNumber++;
+    }
 
-        for (char c = '1'; c <= '9'; c++) {
-            dfa.addTransition("s13", String.valueOf(c), "s15");
-            dfa.addTransition("s14", String.valueOf(c), "s15");
-            dfa.addTransition("s15", String.valueOf(c), "s15");
-        }
-        dfa.addTransition("s15", String.valueOf('0'), "s15");
-        dfa.addAcceptState("s15", "INTEGER");
-
-        // Exponent transition from float
-        dfa.addTransition("s12", "e", "s16");
-        dfa.addTransition("s12", "E", "s16");
-        dfa.addTransition("s16", "-", "s17");
-
-        for (char c = '1'; c <= '9'; c++) {
-            dfa.addTransition("s16", String.valueOf(c), "s18");
-            dfa.addTransition("s17", String.valueOf(c), "s18");
-            dfa.addTransition("s18", String.valueOf(c), "s18");
+    /**
+     * Creates the state of a lexer at the beginning of a text.
+     *
+     * @return The initial state
+     */
+    LexerState initialState() {
+        return new LexerState(start);
+    }
+
+    /**
+     * Returns a copy of the lexer's state, from which lexing may later resume.
+     *
+     * @return The state after the last character fed, or an initial state before feeding
+     */
+    public LexerState getState() {
+        return state == null ? initialState() : state.copy();
+    }
+
+    /**
+     * Lexes the next chunk of a text that arrives in pieces. Chunks may be split anywhere,
+     * even in the middle of a token, a comment or a "\r\n" line break; tokens are produced as
+     * soon as they are complete. The text fed so far is kept, since tokens refer to it.
+     *
+     * @param chunk The next characters of the text
+     */
+    public void feed(CharSequence chunk) {
+        if (fed == null) {
+            fed = new StringBuilder();
+            tokens = new TokenBuffer(fed);
+            state = initialState();
         }
-        dfa.addTransition("s18", String.valueOf('0'), "s18");
-        dfa.addAcceptState("s18", "FLOAT");
-
-
-        //Add F to be float
-        dfa.addTransition("s1", String.valueOf('f'), "s19");
-        dfa.addTransition("s1", String.valueOf('F'), "s19");
-        dfa.addTransition("s4", String.valueOf('f'), "s19");
-        dfa.addTransition("s4", String.valueOf('F'), "s19");
-        dfa.addTransition("s11", String.valueOf('f'), "s19");
-        dfa.addTransition("s11", String.valueOf('F'), "s19");
-        dfa.addTransition("s12", String.valueOf('f'), "s19");
-        dfa.addTransition("s12", String.valueOf('F'), "s19");
-        dfa.addTransition("s18", String.valueOf('f'), "s19");
-        dfa.addTransition("s18", String.valueOf('F'), "s19");
-
-        dfa.addAcceptState("s19", "FLOAT");
-
-        //Char transitions (start with ', can contain just letters, numbers, underscore or symbols)
-        dfa.addTransition("s0", "'", "s20");
-        for (char c = 32; c <= 126; c++) {
-            if (c != '\'') {
-                dfa.addTransition("s20", String.valueOf(c), "s21");
-            }
+        int from = fed.length();
+        fed.append(chunk);
+        scan(state, fed, from, fed.length(), tokens);
+    }
+
+    /**
+     * Ends a text given with {@link #feed(CharSequence)}, producing the token held back for
+     * the characters that might have followed it. Feeding after this starts a new text.
+     */
+    public void finish() {
+        if (fed == null) {
+            feed("");
         }
-        dfa.addTransition("s21", "'", "s22");
-        dfa.addAcceptState("s22", "CHAR");
+        endLine(state, fed, fed.length(), tokens);
+        fed = null;
+    }
 
+    /**
+     * Lexes a whole source text.
+     *
+     * @param source The source text
+     */
+    private void scan(CharSequence source) {
+        tokens = new TokenBuffer(source);
+        fed = null;
+        state = initialState();
+        scan(state, source, 0, source.length(), tokens);
+        endLine(state, source, source.length(), tokens);
     }
 
     /**
-     * Executes the lexical analysis on the input file.
-     * Reads the file line by line and processes each line using the DFA.
+     * Lexes a range of a source text character by character, resuming from a saved state.
+     * Lines end at "\n", "\r" or "\r\n"; the end of a line ends any lexeme, operator or line
+     * comment, while block comments go on until they are closed.
      *
-     * @throws IOException If an I/O error occurs while reading the input file
+     * @param state The state before the range, updated to the state after it
+     * @param source The source text, whose offsets the state and tokens refer to
+     * @param from The offset of the first character to lex
+     * @param to The offset after the last character to lex
+     * @param tokens The buffer receiving the tokens
      */
-    public void run() throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line;
-        int lineNumber = 1;
-        while ((line = reader.readLine()) != null) {
-            algorithm(line, lineNumber);
-            lineNumber++;
+    void scan(LexerState state, CharSequence source, int from, int to, TokenBuffer tokens) {
+        for (int index = from; index < to; index++) {
+            char currentChar = source.charAt(index);
+            if (state.afterCR) {
+                state.afterCR = false;
+                if (currentChar == '\n') {
+                    continue;
+                }
+            }
+            if (currentChar == '\n' || currentChar == '\r') {
+                endLine(state, source, index, tokens);
+                state.lineNumber++;
+                state.afterCR = currentChar == '\r';
+            } else {
+                algorithm(state, source, index, currentChar, tokens);
+            }
         }
     }
 
     /**
-     * Processes a single line of input text using the DFA.
+     * Processes a single character of a line using the DFA.
      * Implements the main lexical analysis algorithm that:
      * 1. Processes characters one by one
      * 2. Tracks the current state in the DFA
-     * 3. Builds up token strings
+     * 3. Tracks where the current lexeme started
      * 4. Recognizes and creates tokens
+     * An operator is held back until the next character shows whether both form a
+     * two-character operator or open a comment.
      *
-     * @param line The line of text to process
-     * @param lineNumber The current line number in the input file
+     * @param state The state of the lexer, updated with the character
+     * @param source The source text
+     * @param index The offset of the character
+     * @param currentChar The character
+     * @param tokens The buffer receiving the tokens
      */
-    private void algorithm(String line, int lineNumber) {
-        String currentState = "s0";
-        String nextState;
-        String string = "";
-        int index = 0;
-        boolean inBlockComment = false;
-
-        while (index < line.length()) {
-
-            char currentChar = line.charAt(index);
-
-            if (inBlockComment) {
-                if (currentChar == '*' && index + 1 < line.length() && line.charAt(index + 1) == '/') {
-                    inBlockComment = false;
-                    index++;
+    private void algorithm(LexerState state, CharSequence source, int index, char currentChar, TokenBuffer tokens) {
+        switch (state.mode) {
+            case LINE_COMMENT:
+                return;
+            case BLOCK_COMMENT:
+                if (state.blockStar && currentChar == '/') {
+                    state.mode = LexerState.Mode.CODE;
+                    state.blockStar = false;
+                } else {
+                    state.blockStar = currentChar == '*';
                 }
-                index++;
-                continue;
-            }
+                return;
+            default:
+                break;
+        }
 
-            if (currentChar == '/' && index + 1 < line.length() && line.charAt(index + 1) == '*') {
-                inBlockComment = true;
-                index++;
-                index++;
-                continue;
+        if (state.pendingOperator >= 0) {
+            char operator = (char) state.pendingOperator;
+            state.pendingOperator = -1;
+            TokenKind doubleOperator = TokenKind.operator(operator, currentChar);
+            if (doubleOperator != null) {
+                tokens.add(doubleOperator, state.pendingOffset, 2, state.lineNumber);
+                return;
             }
-            if (
-                //Pass if String or Char
-                    (Objects.equals(currentState, "s6") || Objects.equals(currentState, "s20")|| Objects.equals(currentState, "s21")) ||
-                            //Pass if Integer and Octal To Float
-                            ((Objects.equals(currentState, "s4") || Objects.equals(currentState, "s1")|| Objects.equals(currentState, "s10")) && currentChar == '.') ||
-                            // Pass if Integer of Float with negative Exp
-                            (Objects.equals(currentState,"s13") || (Objects.equals(currentState,"s16")) && currentChar == '-')
-
-            ){
-                //Ignores specific operators and delimiters for certain states
-                nextState = dfa.getNextState(currentState, currentChar);
-                string = string + currentChar;
-                currentState = nextState;
-
-                if (Objects.equals(currentState, "s7")|| Objects.equals(currentState, "s22")) {
-                    //Accepts a complete string
-                    String tokenType = dfa.getAcceptStateName(currentState);
-                    tokens.add(new TheToken(string, tokenType, lineNumber));
-                    currentState = "s0";
-                    string = "";
-                }
-            } else if (!(isOperator(currentChar) || isDelimiter(currentChar) || isSpace(currentChar))) {
-                if ((currentChar == '"'|| currentChar == '\'') && !string.isEmpty()) {
-                    processString(currentState, string, lineNumber);
-                    currentState = "s0";
-                    string = "";
-                }
-                nextState = dfa.getNextState(currentState, currentChar);
-                string = string + currentChar;
-                currentState = nextState;
-            } else {
-                if (!string.isEmpty()) {
-                    processString(currentState, string, lineNumber);
-                }
-                if (isOperator(currentChar)) {
-                    if (index + 1 < line.length()) {
-                        char nextChar = line.charAt(index + 1);
-                        String s =  "" + currentChar + nextChar;
-                        if (isDoubleOperator(s)) {
-                            tokens.add(new TheToken(s, "OPERATOR", lineNumber));
-                            index++;
-                        } else if (s.equals("//")) {
-                            index = line.length();
-                            break;
-                        } else{
-                            tokens.add(new TheToken(String.valueOf(currentChar), "OPERATOR", lineNumber));
-                        }
-                    }else{
-                        tokens.add(new TheToken(String.valueOf(currentChar), "OPERATOR", lineNumber));
-                    }
-                } else if (isDelimiter(currentChar)) {
-                    tokens.add(new TheToken(String.valueOf(currentChar), "DELIMITER", lineNumber));
-                }
-                currentState = "s0";
-                string = "";
+            if (operator == '/' && currentChar == '/') {
+                state.mode = LexerState.Mode.LINE_COMMENT;
+                return;
+            }
+            if (operator == '/' && currentChar == '*') {
+                state.mode = LexerState.Mode.BLOCK_COMMENT;
+                return;
+            }
+            tokens.add(TokenKind.operator(operator), state.pendingOffset, 1, state.lineNumber);
+        }
 
+        int currentState = state.dfaState;
+        boolean quoted = dfa.isQuotedState(currentState);
+        if (
+            //Pass if String or Char
+                quoted ||
+                        //Pass if the lexeme continues through a delimiter or operator, as '.' in floats or '-' in exponents
+                        (currentState != start && dfa.getNextState(currentState, currentChar) != Automata.NO_STATE)
+
+        ){
+            //Ignores specific operators and delimiters for certain states
+            state.dfaState = dfa.getNextState(currentState, currentChar);
+
+            if (quoted && dfa.isAcceptState(state.dfaState)) {
+                //Accepts a complete string
+                tokens.add(acceptKinds[state.dfaState], state.lexeme, index + 1 - state.lexeme, state.lineNumber);
+                state.dfaState = start;
+                state.lexeme = -1;
+            }
+        } else if (!(isOperator(currentChar) || isDelimiter(currentChar) || isSpace(currentChar))) {
+            if ((currentChar == '"'|| currentChar == '\'') && state.lexeme >= 0) {
+                processLexeme(tokens, currentState, source, state.lexeme, index, state.lineNumber);
+                currentState = start;
+                state.lexeme = -1;
+            }
+            if (state.lexeme < 0) {
+                state.lexeme = index;
+            }
+            state.dfaState = dfa.getNextState(currentState, currentChar);
+        } else {
+            //An operator, delimiter, space or comment ends the current lexeme
+            if (state.lexeme >= 0) {
+                processLexeme(tokens, currentState, source, state.lexeme, index, state.lineNumber);
+            }
+            state.dfaState = start;
+            state.lexeme = -1;
+            if (isOperator(currentChar)) {
+                state.pendingOperator = currentChar;
+                state.pendingOffset = index;
+            } else if (isDelimiter(currentChar)) {
+                tokens.add(TokenKind.delimiter(currentChar), index, 1, state.lineNumber);
             }
-            index++;
+        }
+    }
+
+    /**
+     * Ends the current line: produces the operator held back and the last lexeme, and ends
+     * a line comment. An open block comment goes on in the next line.
+     *
+     * @param state The state of the lexer, updated to the beginning of a line
+     * @param source The source text
+     * @param index The offset where the line ends
+     * @param tokens The buffer receiving the tokens
+     */
+    void endLine(LexerState state, CharSequence source, int index, TokenBuffer tokens) {
+        if (state.pendingOperator >= 0) {
+            tokens.add(TokenKind.operator((char) state.pendingOperator), state.pendingOffset, 1, state.lineNumber);
+            state.pendingOperator = -1;
         }
         // last word
-        if (!string.isEmpty()) {
-            processString(currentState, string, lineNumber);
+        if (state.lexeme >= 0) {
+            processLexeme(tokens, state.dfaState, source, state.lexeme, index, state.lineNumber);
+            state.lexeme = -1;
+        }
+        state.dfaState = start;
+        state.blockStar = false;
+        if (state.mode == LexerState.Mode.LINE_COMMENT) {
+            state.mode = LexerState.Mode.CODE;
         }
     }
 
     /**
-     * Creates a token from the accumulated string if it represents a valid token.
-     * Handles special cases for identifiers that might be keywords.
+     * Creates a token for the lexeme between two offsets of the source text.
+     * Handles special cases for identifiers that might be keywords, which get the kind of
+     * their keyword.
      *
+     * @param tokens The buffer receiving the token
      * @param currentState The current state of the DFA
-     * @param string The accumulated string to be processed
+     * @param source The source text
+     * @param from The offset of the first character of the lexeme
+     * @param to The offset after the last character of the lexeme
      * @param lineNumber The current line number
      */
-    private void processString(String currentState, String string, int lineNumber) {
+    private void processLexeme(TokenBuffer tokens, int currentState, CharSequence source, int from, int to, int lineNumber) {
+        TokenKind kind;
         if (dfa.isAcceptState(currentState)) {
-            String tokenType = dfa.getAcceptStateName(currentState);
-            if (tokenType.equals("IDENTIFIER") && keywords.contains(string.toLowerCase())) {
-                tokenType = "KEYWORD";
+            kind = acceptKinds[currentState];
+            if (kind == TokenKind.IDENTIFIER) {
+                TokenKind keyword = TokenKind.keyword(source, from, to, ignoreKeywordCase);
+                if (keyword != null) {
+                    kind = keyword;
+                }
             }
-            tokens.add(new TheToken(string, tokenType, lineNumber));
         } else {
-            tokens.add(new TheToken(string, "ERROR", lineNumber));
+            kind = TokenKind.ERROR;
         }
+        tokens.add(kind, from, to - from, lineNumber);
     }
 
     /**
@@ -378,8 +501,7 @@ public class TheLexer {
      * @return true if the character is a delimiter
      */
     private boolean isDelimiter(char c) {
-        return c == ',' || c == ';' || c == '.' || c == '(' || c == ')' ||
-                c == '{' || c == '}' || c == '[' || c == ']' || c == ':';
+        return TokenKind.delimiter(c) != null;
     }
 
     /**
@@ -389,23 +511,7 @@ public class TheLexer {
      * @return true if the character is an operator
      */
     private boolean isOperator(char c) {
-        return c == '=' || c == '+' || c == '-' || c == '*' || c == '/' ||
-                c == '<' || c == '>' || c == '!' || c == '&' || c == '|' || c=='%';
-    }
-    private boolean isDoubleOperator(String c) {
-        return Objects.equals(c, "==") ||
-                Objects.equals(c, "!=")||
-                Objects.equals(c, ">=")||
-                Objects.equals(c, "<=")||
-                Objects.equals(c, "+=")||
-                Objects.equals(c, "-=")||
-                Objects.equals(c, "*=")||
-                Objects.equals(c, "/=")||
-                Objects.equals(c, "%=")||
-                Objects.equals(c, "++")||
-                Objects.equals(c, "--")||
-                Objects.equals(c, "||")||
-                Objects.equals(c, "&&");
+        return TokenKind.operator(c) != null;
     }
 
     /**
@@ -416,19 +522,41 @@ public class TheLexer {
         System.out.println("\nToken List:");
         System.out.printf("%10s\t|\t%10s\t|\t%s\n", "Value", "Type", "Line");
         System.out.println("----------------------------------------");
-        for (TheToken token : tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
             System.out.printf("%10s\t|\t%10s\t|\t%d\n",
-                    token.getValue(), token.getType(), token.getLineNumber());
+                    tokens.getValue(i), tokens.getType(i), tokens.getLineNumber(i));
         }
     }
 
     /**
-     * Returns the vector of tokens produced by the lexical analysis.
+     * Returns the tokens produced by the lexical analysis.
+     *
+     * @return The token buffer
+     */
+    public TokenBuffer getTokenBuffer() {
+        return tokens;
+    }
+
+    /**
+     * Returns the tokens produced by the lexical analysis as a vector of token objects.
+     * Kept for legacy callers; prefer {@link #getTokenBuffer()}.
+     *
+     * The vector is built once and returned by every later call, so indexing it in a loop
+     * costs nothing more and changes made to it are kept; tokens fed since the last call
+     * are appended to it. A new analysis starts a new vector.
      *
      * @return Vector containing all tokens
      */
     public Vector<TheToken> getTokens() {
-        return tokens;
+        if (legacySource != tokens) {
+            legacyTokens = new Vector<>(tokens.size());
+            legacySource = tokens;
+            legacyCount = 0;
+        }
+        for (; legacyCount < tokens.size(); legacyCount++) {
+            legacyTokens.add(tokens.getToken(legacyCount));
+        }
+        return legacyTokens;
     }
 
 }
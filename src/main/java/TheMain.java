@@ -1,26 +1,79 @@
 import java.io.File;
 import java.io.IOException;
-import java.util.Vector;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Main class to run the lexer
  *
+ * Without arguments, parses src/main/resources/inputStatements.txt and prints its parse tree.
+ * With arguments, parses every file of the given files, directories and glob patterns on
+ * virtual threads, printing the status of each file and a summary:
+ *
+ * java TheMain [--parallelism N] [--cache DIRECTORY] INPUT...
+ *
  * @author javiergs
- * @version 1.0
+ * @version 1.2
  */
 public class TheMain {
 	
-	public static void main(String[] args) throws IOException {
+	private static final long CACHE_BYTES = 1L << 30;
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0) {
+			batch(args);
+			return;
+		}
 		File file = new File("src/main/resources/inputStatements.txt");
 		TheLexer lexer = new TheLexer(file);
-		lexer.run();
-		lexer.printTokens();
 		
-		Vector<TheToken> tokens = lexer.getTokens();
-		TheParser parser = new TheParser(tokens);
-		parser.run();
+		// the file is lexed as the parser pulls its tokens; the printer needs no tree
+		try (TokenStream tokens = lexer.stream()) {
+			TheParser parser = new TheParser(tokens, new ParseTreePrinter(System.out));
+			parser.setSourceName(file.getPath());
+			parser.setBuildTree(false);
+			ParseResult result = parser.run();
+			System.out.println(result);
+		}
 		
 	}
 	
+	private static void batch(String[] args) throws IOException, InterruptedException {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		ParseCache cache = null;
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--parallelism" -> parallelism = Integer.parseInt(option(args, ++i));
+				case "--cache" -> cache = new ParseCache(Path.of(option(args, ++i)), CACHE_BYTES);
+				default -> {
+					if (args[i].startsWith("--")) {
+						usage("Unknown option " + args[i]);
+					}
+					inputs.add(args[i]);
+				}
+			}
+		}
+		if (inputs.isEmpty()) {
+			usage("No input given");
+		}
+		BatchParser.Summary summary = new BatchParser(parallelism, cache, System.out).run(inputs);
+		System.out.println(summary);
+		System.exit(summary.isSuccess() ? 0 : 1);
+	}
+	
+	private static String option(String[] args, int index) {
+		if (index >= args.length) {
+			usage("Missing value of " + args[index - 1]);
+		}
+		return args[index];
+	}
+	
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: java TheMain [--parallelism N] [--cache DIRECTORY] INPUT...");
+		System.exit(2);
+	}
+	
 }
-
@@ -1,3 +1,6 @@
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.Vector;
 
 /**
@@ -6,75 +9,257 @@ import java.util.Vector;
  * @author eduardomv
  * @author santiarr
  * @author yawham
- * @version 1.5
+ * @version 1.16
  */
 
-public class TheParser {
-
-	private Vector<TheToken> tokens;
-	private int currentToken;
-
-	public TheParser(Vector<TheToken> tokens) {
-		this.tokens = tokens;
-		currentToken = 0;
+public class TheParser extends AbstractParser {
+
+	/**
+	 * The grammar of the statements, from which the parser chooses between alternatives.
+	 * Expressions are parsed by precedence climbing rather than rule by rule: the tables of
+	 * their operators below are read from the expression rules, one level per rule.
+	 */
+	static final Grammar GRAMMAR = new Grammar("""
+			program        : LEFT_BRACE body RIGHT_BRACE
+			               | KW_CLASS IDENTIFIER LEFT_BRACE members RIGHT_BRACE
+			members        : member members
+			               |
+			member         : methods                                      # METHODS
+			               | variable SEMICOLON                           # VARIABLE
+			methods        : type IDENTIFIER LEFT_PAREN params RIGHT_PAREN LEFT_BRACE body RIGHT_BRACE
+			params         : type IDENTIFIER moreParams
+			               |
+			moreParams     : COMMA type IDENTIFIER moreParams
+			               |
+			body           : statement body
+			               |
+			statement      : variable SEMICOLON                           # VARIABLE
+			               | assignment SEMICOLON                         # ASSIGNMENT
+			               | callMethod SEMICOLON                         # CALL_METHOD
+			               | return                                       # RETURN
+			               | while                                        # WHILE
+			               | if                                           # IF
+			               | doWhile                                      # DO_WHILE
+			               | for                                          # FOR
+			               | switch                                       # SWITCH
+			               | expression SEMICOLON                         # EXPRESSION
+			block          : LEFT_BRACE body RIGHT_BRACE                  # BODY
+			               | variable SEMICOLON                           # VARIABLE
+			               | assignment SEMICOLON                         # ASSIGNMENT
+			               | callMethod SEMICOLON                         # CALL_METHOD
+			               | return SEMICOLON                             # RETURN
+			               | while                                        # WHILE
+			               | if                                           # IF
+			               | doWhile                                      # DO_WHILE
+			               | for                                          # FOR
+			               | switch                                       # SWITCH
+			               | expression SEMICOLON                         # EXPRESSION
+			variable       : type IDENTIFIER initializer
+			initializer    : ASSIGN expression
+			               |
+			assignment     : IDENTIFIER ASSIGN expression
+			callMethod     : IDENTIFIER LEFT_PAREN paramValues RIGHT_PAREN
+			paramValues    : expression moreValues
+			               |
+			moreValues     : COMMA expression moreValues
+			               |
+			return         : KW_RETURN returnValue SEMICOLON
+			returnValue    : expression
+			               |
+			while          : KW_WHILE LEFT_PAREN expression RIGHT_PAREN block
+			if             : KW_IF LEFT_PAREN expression RIGHT_PAREN block else
+			else           : KW_ELSE block
+			               |
+			doWhile        : KW_DO block KW_WHILE LEFT_PAREN expression RIGHT_PAREN SEMICOLON
+			for            : KW_FOR LEFT_PAREN forInit SEMICOLON condition SEMICOLON forUpdate RIGHT_PAREN block
+			forInit        : variable                                     # VARIABLE
+			               | expression                                   # EXPRESSION
+			               |
+			condition      : expression
+			               |
+			forUpdate      : assignment                                   # ASSIGNMENT
+			               | expression                                   # EXPRESSION
+			               |
+			switch         : KW_SWITCH LEFT_PAREN expression RIGHT_PAREN LEFT_BRACE cases RIGHT_BRACE
+			cases          : KW_CASE expression COLON body KW_BREAK semicolon cases
+			               | KW_DEFAULT COLON defaultBody
+			               |
+			defaultBody    : body defaultBreak
+			defaultBreak   : KW_BREAK semicolon defaultBody
+			               |
+			semicolon      : SEMICOLON
+			               |
+			expression     : conjunction disjunctions
+			disjunctions   : OR conjunction disjunctions
+			               |
+			conjunction    : negation conjunctions
+			conjunctions   : AND negation conjunctions
+			               |
+			negation       : NOT negation
+			               | relation
+			relation       : sum comparisons
+			comparisons    : LESS sum comparisons
+			               | GREATER sum comparisons
+			               | LESS_EQUAL sum comparisons
+			               | GREATER_EQUAL sum comparisons
+			               | EQUAL sum comparisons
+			               | NOT_EQUAL sum comparisons
+			               |
+			sum            : product sums
+			sums           : PLUS product sums
+			               | MINUS product sums
+			               |
+			product        : operand products
+			products       : STAR operand products
+			               | SLASH operand products
+			               | PERCENT operand products
+			               |
+			operand        : MINUS primary
+			               | primary
+			primary        : IDENTIFIER
+			               | callMethod
+			               | INTEGER | FLOAT | CHAR | STRING | HEXADECIMAL | BINARY | KW_TRUE | KW_FALSE
+			               | LEFT_PAREN expression RIGHT_PAREN
+			type           : KW_INT | KW_FLOAT | KW_VOID | KW_CHAR | KW_STRING | KW_BOOLEAN
+			""");
+	// decisions of the parser, each a lookup on the next tokens
+	static final Grammar.Choice MEMBER = GRAMMAR.choice("member", null);
+	static final Grammar.Choice STATEMENT = GRAMMAR.choice("statement", ParseRule.EXPRESSION);
+	static final Grammar.Choice BLOCK = GRAMMAR.choice("block", ParseRule.EXPRESSION);
+	static final Grammar.Choice FOR_INIT = GRAMMAR.choice("forInit", ParseRule.EXPRESSION);
+	static final Grammar.Choice FOR_UPDATE = GRAMMAR.choice("forUpdate", ParseRule.EXPRESSION);
+	// tokens ending a body, and the end of the input where the parser stops anyway
+	static final Set<TokenKind> BODY_END = EnumSet.of(TokenKind.EOF);
+	// keys of the decisions in the profile of the parser
+	static final int PREDICT_MEMBER = RuleProfiler.decision("predict member");
+	static final int PREDICT_STATEMENT = RuleProfiler.decision("predict statement");
+	static final int PREDICT_BLOCK = RuleProfiler.decision("predict block");
+	static final int PREDICT_FOR_INIT = RuleProfiler.decision("predict forInit");
+	static final int PREDICT_FOR_UPDATE = RuleProfiler.decision("predict forUpdate");
+
+	// precedence levels of expressions, from the loosest, and the rules of their nodes
+	static final ParseRule[] LEVELS = {
+			ParseRule.EXPRESSION, ParseRule.X, ParseRule.Y, ParseRule.R, ParseRule.E, ParseRule.A, ParseRule.B
+	};
+	// precedence of binary and prefix operators by token kind, 0 for other tokens
+	static final int[] BINARY = new int[TokenKind.values().length];
+	static final int[] PREFIX = new int[TokenKind.values().length];
+	// prefix operators that may be repeated, as in "!!a"
+	static final boolean[] REPEATED = new boolean[TokenKind.values().length];
+
+	static {
+		int levels = operators(GRAMMAR, BINARY, PREFIX, REPEATED);
+		if (levels != LEVELS.length) {
+			throw new IllegalStateException("The expression rules of the grammar have " + levels +
+					" precedence levels, but the parser has " + LEVELS.length);
+		}
+		BODY_END.addAll(GRAMMAR.follow("body"));
 	}
 
-	public void run() {
-		RULE_PROGRAM();
-		if (currentToken != tokens.size()) {
-			error(99); // Unexpected tokens at the end
+	public TheParser(Vector<TheToken> tokens) {
+		this(TokenBuffer.of(tokens));
+	}
+
+	public TheParser(TokenBuffer tokens) {
+		this(tokens.cursor());
+		sourceLength = tokens.getSource().length();
+	}
+
+	/**
+	 * Parses the tokens of a source as they are pulled, such as a {@link TokenStream} that
+	 * lexes its input on demand.
+	 *
+	 * @param tokens The source of the tokens
+	 */
+	public TheParser(TokenSource tokens) {
+		this(tokens, ParseListener.NONE);
+	}
+
+	/**
+	 * Parses the tokens of a source, reporting the parse to a listener.
+	 *
+	 * @param tokens   The source of the tokens
+	 * @param listener The listener receiving the rules, tokens and errors of the parse
+	 */
+	public TheParser(TokenSource tokens, ParseListener listener) {
+		super(tokens, listener);
+	}
+
+	/**
+	 * Parses the tokens, recovering from syntax errors to report all of them.
+	 * Nothing is printed unless the parser was given a listener such as {@link ParseTreePrinter}.
+	 *
+	 * @return The syntax tree and the diagnostics of the errors found
+	 */
+	public ParseResult run() {
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		int entered = depth;
+		try {
+			RULE_PROGRAM();
+			if (!tokens.atEnd()) {
+				error(99); // Unexpected tokens at the end
+			}
+		} catch (ParseError e) {
+			// an error outside of any statement ends the parse; it has been reported already
+			unwind(entered);
+		}
+		return finish(event);
+	}
+
+	/**
+	 * Parses a buffer of tokens, falling back to an {@link IterativeParser} when the input is
+	 * nested deeper than the stack of the thread allows. Used where whole files are parsed
+	 * unattended, as {@link BatchParser} and {@link ParseCache} do on virtual threads.
+	 *
+	 * @param tokens     The tokens
+	 * @param sourceName The name of the source, for the Flight Recorder events
+	 * @param buildTree  Whether to build the syntax tree
+	 * @return The syntax tree and the diagnostics of the errors found
+	 */
+	static ParseResult parse(TokenBuffer tokens, String sourceName, boolean buildTree) {
+		try {
+			TheParser parser = new TheParser(tokens);
+			parser.setSourceName(sourceName);
+			parser.setBuildTree(buildTree);
+			return parser.run();
+		} catch (StackOverflowError e) {
+			// the stack is unwound by now; the same tokens are parsed again without recursion
+			IterativeParser parser = new IterativeParser(tokens);
+			parser.setSourceName(sourceName);
+			parser.setBuildTree(buildTree);
+			return parser.run();
 		}
 	}
 
 	private void RULE_PROGRAM() {
-		System.out.println("- RULE_PROGRAM");
-		if (tokens.get(currentToken).getValue().equals("{")) {
-			currentToken++;
-			System.out.println("- {");
+		enter(ParseRule.PROGRAM);
+		if (tokens.kind(0) == TokenKind.LEFT_BRACE) {
+			consume();
 			RULE_BODY();
-			if (tokens.get(currentToken).getValue().equals("}")) {
-				currentToken++;
-				System.out.println("- }");
+			if (tokens.kind(0) == TokenKind.RIGHT_BRACE) {
+				consume();
 			} else {
 				error(1);
 			}
-		} else if (tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("class")) {
-			currentToken++;
-			System.out.println("-- class");
-
-			if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-				System.out.println("--- IDENTIFIER: " + tokens.get(currentToken).getValue());
-				currentToken++;
+		} else if (tokens.kind(0) == TokenKind.KW_CLASS) {
+			consume();
+
+			if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+				consume();
 			} else {
 				error(2);
 			}
 
-			if (tokens.get(currentToken).getValue().equals("{")) {
-				currentToken++;
-				System.out.println("---- {");
+			if (tokens.kind(0) == TokenKind.LEFT_BRACE) {
+				consume();
 
-				while (!tokens.get(currentToken).getValue().equals("}")) {
-					if (isType()) {
-						if (isMethodDeclaration()) {
-							RULE_METHODS();
-						} else {
-							RULE_VARIABLE();
-							if (tokens.get(currentToken).getValue().equals(";")) {
-								currentToken++;
-								System.out.println("---- ;");
-							} else {
-								error(3);
-							}
-						}
-					} else {
-						error(4);
-					}
+				while (tokens.kind(0) != TokenKind.RIGHT_BRACE && tokens.kind(0) != TokenKind.EOF) {
+					member();
 				}
 
-				if (tokens.get(currentToken).getValue().equals("}")) {
-					currentToken++;
-					System.out.println("---- }");
+				if (tokens.kind(0) == TokenKind.RIGHT_BRACE) {
+					consume();
 				} else {
 					error(5);
 				}
@@ -84,39 +269,106 @@ public class TheParser {
 		} else {
 			error(7);
 		}
+		exit(ParseRule.PROGRAM);
+	}
+
+	/**
+	 * Parses one member of a class, a method or a variable, as {@link IncrementalDocument}
+	 * does to re-parse the members touched by an edit.
+	 *
+	 * @return The tree of the member, empty if it was skipped by error recovery, and the
+	 * diagnostics of its errors
+	 */
+	ParseResult runMember() {
+		member();
+		if (RuleProfiler.ENABLED) {
+			profiler.finish();
+		}
+		return new ParseResult(diagnostics, tree.build());
+	}
+
+	/**
+	 * Parses one member of a class. The members of a class are parsed independently: errors
+	 * are recovered from at the end of the member, so nothing is left pending for the next.
+	 */
+	private void member() {
+		int entered = depth;
+		try {
+			ParseRule member = predict(MEMBER, PREDICT_MEMBER);
+			if (member == ParseRule.METHODS) {
+				methods();
+			} else if (member == ParseRule.VARIABLE) {
+				RULE_VARIABLE();
+				if (tokens.kind(0) == TokenKind.SEMICOLON) {
+					consume();
+				} else {
+					error(3);
+				}
+			} else {
+				error(4);
+			}
+		} catch (ParseError e) {
+			unwind(entered);
+			synchronize();
+		}
+	}
+
+	/**
+	 * Parses a method declaration, recording it as a Flight Recorder event when such events
+	 * are enabled.
+	 */
+	private void methods() {
+		MethodParseEvent event = new MethodParseEvent();
+		if (!event.isEnabled()) {
+			RULE_METHODS();
+			return;
+		}
+		int line = tokens.line(0);
+		String method = tokens.kind(1) == TokenKind.IDENTIFIER ? tokens.value(1) : null;
+		int before = consumed;
+		int errors = diagnostics.size();
+		event.begin();
+		try {
+			RULE_METHODS();
+		} finally {
+			event.end();
+			if (event.shouldCommit()) {
+				event.source = sourceName;
+				event.method = method;
+				event.line = line;
+				event.tokens = consumed - before;
+				event.errors = diagnostics.size() - errors;
+				event.commit();
+			}
+		}
 	}
 
 	private void RULE_METHODS() {
-		System.out.println("----- RULE_METHODS");
+		enter(ParseRule.METHODS);
 		RULE_TYPE();
 
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			System.out.println("----- IDENTIFIER: " + tokens.get(currentToken).getValue());
-			currentToken++;
+		if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+			consume();
 		} else {
 			error(8);
 		}
 
-		if (tokens.get(currentToken).getValue().equals("(")) {
-			currentToken++;
-			System.out.println("----- (");
+		if (tokens.kind(0) == TokenKind.LEFT_PAREN) {
+			consume();
 			RULE_PARAMS();
 
-			if (tokens.get(currentToken).getValue().equals(")")) {
-				currentToken++;
-				System.out.println("----- )");
+			if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+				consume();
 			} else {
 				error(9);
 			}
 
-			if (tokens.get(currentToken).getValue().equals("{")) {
-				currentToken++;
-				System.out.println("----- {");
+			if (tokens.kind(0) == TokenKind.LEFT_BRACE) {
+				consume();
 				RULE_BODY();
 
-				if (tokens.get(currentToken).getValue().equals("}")) {
-					currentToken++;
-					System.out.println("----- }");
+				if (tokens.kind(0) == TokenKind.RIGHT_BRACE) {
+					consume();
 				} else {
 					error(10);
 				}
@@ -126,30 +378,28 @@ public class TheParser {
 		} else {
 			error(12);
 		}
+		exit(ParseRule.METHODS);
 	}
 
 	private void RULE_PARAMS() {
-		System.out.println("------ RULE_PARAMS");
+		enter(ParseRule.PARAMS);
 		if (isType()) {
 			RULE_TYPE();
 
-			if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-				System.out.println("------ IDENTIFIER: " + tokens.get(currentToken).getValue());
-				currentToken++;
+			if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+				consume();
 			} else {
 				error(13);
 			}
 
-			while (tokens.get(currentToken).getValue().equals(",")) {
-				currentToken++;
-				System.out.println("------ ,");
+			while (tokens.kind(0) == TokenKind.COMMA) {
+				consume();
 
 				if (isType()) {
 					RULE_TYPE();
 
-					if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-						System.out.println("------ IDENTIFIER: " + tokens.get(currentToken).getValue());
-						currentToken++;
+					if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+						consume();
 					} else {
 						error(14);
 					}
@@ -158,95 +408,86 @@ public class TheParser {
 				}
 			}
 		}
+		exit(ParseRule.PARAMS);
 	}
 
 	private void RULE_BODY() {
-		System.out.println("-- RULE_BODY");
-		while (!(tokens.get(currentToken).getValue().equals("}")||tokens.get(currentToken).getValue().equals("break"))) {
-			if (isType()) {
-				RULE_VARIABLE();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("-- ;");
-				} else {
-					error(16);
-				}
-			} else if (isAssignment()) {
-				RULE_ASSIGNMENT();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("-- ;");
-				} else {
-					error(17);
-				}
-			} else if (isMethodCall()) {
-				RULE_CALL_METHOD();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("-- ;");
-				} else {
-					error(18);
-				}
-			} else if (isReturnStatement()) {
-				RULE_RETURN();
-			} else if (isWhileStatement()) {
-				RULE_WHILE();
-			} else if (isIfStatement()) {
-				RULE_IF();
-			} else if (isDoStatement()) {
-				RULE_DO_WHILE();
-			} else if (isForStatement()) {
-				RULE_FOR();
-			} else if (isSwitchStatement()) {
-				RULE_SWITCH();
-			} else if (tokens.get(currentToken).getValue().equals("break")) {
-				currentToken++;
-				System.out.println("-- break");
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("-- ;");
-				} else {
-					error(20);
-				}
-			} else {
-				RULE_EXPRESSION();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("-- ;");
-				} else {
-					error(21);
+		enter(ParseRule.BODY);
+		while (!BODY_END.contains(tokens.kind(0))) {
+			int entered = depth;
+			try {
+				switch (predict(STATEMENT, PREDICT_STATEMENT)) {
+					case VARIABLE -> {
+						RULE_VARIABLE();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(16);
+						}
+					}
+					case ASSIGNMENT -> {
+						RULE_ASSIGNMENT();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(17);
+						}
+					}
+					case CALL_METHOD -> {
+						RULE_CALL_METHOD();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(18);
+						}
+					}
+					case RETURN -> RULE_RETURN();
+					case WHILE -> RULE_WHILE();
+					case IF -> RULE_IF();
+					case DO_WHILE -> RULE_DO_WHILE();
+					case FOR -> RULE_FOR();
+					case SWITCH -> RULE_SWITCH();
+					default -> {
+						RULE_EXPRESSION();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(21);
+						}
+					}
 				}
+			} catch (ParseError e) {
+				unwind(entered);
+				synchronize();
 			}
 		}
+		exit(ParseRule.BODY);
 	}
 
 	private void RULE_VARIABLE() {
-		System.out.println("--- RULE_VARIABLE");
+		enter(ParseRule.VARIABLE);
 		RULE_TYPE();
 
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			System.out.println("--- IDENTIFIER: " + tokens.get(currentToken).getValue());
-			currentToken++;
+		if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+			consume();
 
-			if (tokens.get(currentToken).getValue().equals("=")) {
-				currentToken++;
-				System.out.println("--- =");
+			if (tokens.kind(0) == TokenKind.ASSIGN) {
+				consume();
 				RULE_EXPRESSION();
 			}
 		} else {
 			error(22);
 		}
+		exit(ParseRule.VARIABLE);
 	}
 
 	private void RULE_ASSIGNMENT() {
-		System.out.println("--- RULE_ASSIGNMENT");
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			System.out.println("--- IDENTIFIER: " + tokens.get(currentToken).getValue());
-			currentToken++;
-
-			if (tokens.get(currentToken).getValue().equals("=")) {
-				currentToken++;
-				System.out.println("--- =");
+		enter(ParseRule.ASSIGNMENT);
+		if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+			consume();
+
+			if (tokens.kind(0) == TokenKind.ASSIGN) {
+				consume();
 				RULE_EXPRESSION();
 			} else {
 				error(23);
@@ -254,22 +495,20 @@ public class TheParser {
 		} else {
 			error(24);
 		}
+		exit(ParseRule.ASSIGNMENT);
 	}
 
 	private void RULE_CALL_METHOD() {
-		System.out.println("--- RULE_CALL_METHOD");
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			System.out.println("--- IDENTIFIER: " + tokens.get(currentToken).getValue());
-			currentToken++;
-
-			if (tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				System.out.println("--- (");
+		enter(ParseRule.CALL_METHOD);
+		if (tokens.kind(0) == TokenKind.IDENTIFIER) {
+			consume();
+
+			if (tokens.kind(0) == TokenKind.LEFT_PAREN) {
+				consume();
 				RULE_PARAM_VALUES();
 
-				if (tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					System.out.println("--- )");
+				if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+					consume();
 				} else {
 					error(25);
 				}
@@ -279,56 +518,53 @@ public class TheParser {
 		} else {
 			error(27);
 		}
+		exit(ParseRule.CALL_METHOD);
 	}
 
 	private void RULE_PARAM_VALUES() {
-		System.out.println("---- RULE_PARAM_VALUES");
-		if (!tokens.get(currentToken).getValue().equals(")")) {
+		enter(ParseRule.PARAM_VALUES);
+		if (tokens.kind(0) != TokenKind.RIGHT_PAREN) {
 			RULE_EXPRESSION();
 
-			while (tokens.get(currentToken).getValue().equals(",")) {
-				currentToken++;
-				System.out.println("---- ,");
+			while (tokens.kind(0) == TokenKind.COMMA) {
+				consume();
 				RULE_EXPRESSION();
 			}
 		}
+		exit(ParseRule.PARAM_VALUES);
 	}
 
 	private void RULE_RETURN() {
-		System.out.println("--- RULE_RETURN");
-		if (tokens.get(currentToken).getValue().equals("return")) {
-			currentToken++;
-			System.out.println("--- return");
+		enter(ParseRule.RETURN);
+		if (tokens.kind(0) == TokenKind.KW_RETURN) {
+			consume();
 
-			if (!tokens.get(currentToken).getValue().equals(";")) {
+			if (tokens.kind(0) != TokenKind.SEMICOLON) {
 				RULE_EXPRESSION();
 			}
 
-			if (tokens.get(currentToken).getValue().equals(";")) {
-				currentToken++;
-				System.out.println("--- ;");
+			if (tokens.kind(0) == TokenKind.SEMICOLON) {
+				consume();
 			} else {
 				error(19);
 			}
 		} else {
 			error(28);
 		}
+		exit(ParseRule.RETURN);
 	}
 
 	private void RULE_WHILE() {
-		System.out.println("--- RULE_WHILE");
-		if (tokens.get(currentToken).getValue().equals("while")) {
-			currentToken++;
-			System.out.println("--- while");
-
-			if (tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				System.out.println("--- (");
+		enter(ParseRule.WHILE);
+		if (tokens.kind(0) == TokenKind.KW_WHILE) {
+			consume();
+
+			if (tokens.kind(0) == TokenKind.LEFT_PAREN) {
+				consume();
 				RULE_EXPRESSION();
 
-				if (tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					System.out.println("--- )");
+				if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+					consume();
 					RULE_STATEMENT_BLOCK();
 				} else {
 					error(29);
@@ -339,27 +575,24 @@ public class TheParser {
 		} else {
 			error(31);
 		}
+		exit(ParseRule.WHILE);
 	}
 
 	private void RULE_IF() {
-		System.out.println("--- RULE_IF");
-		if (tokens.get(currentToken).getValue().equals("if")) {
-			currentToken++;
-			System.out.println("--- if");
-
-			if (tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				System.out.println("--- (");
+		enter(ParseRule.IF);
+		if (tokens.kind(0) == TokenKind.KW_IF) {
+			consume();
+
+			if (tokens.kind(0) == TokenKind.LEFT_PAREN) {
+				consume();
 				RULE_EXPRESSION();
 
-				if (tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					System.out.println("--- )");
+				if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+					consume();
 					RULE_STATEMENT_BLOCK();
 
-					if (tokens.get(currentToken).getValue().equals("else")) {
-						currentToken++;
-						System.out.println("--- else");
+					if (tokens.kind(0) == TokenKind.KW_ELSE) {
+						consume();
 						RULE_STATEMENT_BLOCK();
 					}
 				} else {
@@ -371,31 +604,27 @@ public class TheParser {
 		} else {
 			error(34);
 		}
+		exit(ParseRule.IF);
 	}
 
 	private void RULE_DO_WHILE() {
-		System.out.println("--- RULE_DO_WHILE");
-		if (tokens.get(currentToken).getValue().equals("do")) {
-			currentToken++;
-			System.out.println("--- do");
+		enter(ParseRule.DO_WHILE);
+		if (tokens.kind(0) == TokenKind.KW_DO) {
+			consume();
 			RULE_STATEMENT_BLOCK();
 
-			if (tokens.get(currentToken).getValue().equals("while")) {
-				currentToken++;
-				System.out.println("--- while");
+			if (tokens.kind(0) == TokenKind.KW_WHILE) {
+				consume();
 
-				if (tokens.get(currentToken).getValue().equals("(")) {
-					currentToken++;
-					System.out.println("--- (");
+				if (tokens.kind(0) == TokenKind.LEFT_PAREN) {
+					consume();
 					RULE_EXPRESSION();
 
-					if (tokens.get(currentToken).getValue().equals(")")) {
-						currentToken++;
-						System.out.println("--- )");
+					if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+						consume();
 
-						if (tokens.get(currentToken).getValue().equals(";")) {
-							currentToken++;
-							System.out.println("--- ;");
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
 						} else {
 							error(35);
 						}
@@ -411,53 +640,49 @@ public class TheParser {
 		} else {
 			error(39);
 		}
+		exit(ParseRule.DO_WHILE);
 	}
 
 	private void RULE_FOR() {
-		System.out.println("--- RULE_FOR");
-		if (tokens.get(currentToken).getValue().equals("for")) {
-			currentToken++;
-			System.out.println("--- for");
+		enter(ParseRule.FOR);
+		if (tokens.kind(0) == TokenKind.KW_FOR) {
+			consume();
 
-			if (tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				System.out.println("--- (");
+			if (tokens.kind(0) == TokenKind.LEFT_PAREN) {
+				consume();
 
-				if (isType()) {
+				ParseRule init = predict(FOR_INIT, PREDICT_FOR_INIT);
+				if (init == ParseRule.VARIABLE) {
 					RULE_VARIABLE();
-				} else if (!tokens.get(currentToken).getValue().equals(";")) {
+				} else if (init == ParseRule.EXPRESSION) {
 					RULE_EXPRESSION();
 				}
 
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("--- ;");
+				if (tokens.kind(0) == TokenKind.SEMICOLON) {
+					consume();
 				} else {
 					error(40);
 				}
 
-				if (!tokens.get(currentToken).getValue().equals(";")) {
+				if (tokens.kind(0) != TokenKind.SEMICOLON) {
 					RULE_EXPRESSION();
 				}
 
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("--- ;");
+				if (tokens.kind(0) == TokenKind.SEMICOLON) {
+					consume();
 				} else {
 					error(41);
 				}
 
-				if (!tokens.get(currentToken).getValue().equals(")")) {
-					if (isAssignment()) {
-						RULE_ASSIGNMENT();
-					} else {
-						RULE_EXPRESSION();
-					}
+				ParseRule update = predict(FOR_UPDATE, PREDICT_FOR_UPDATE);
+				if (update == ParseRule.ASSIGNMENT) {
+					RULE_ASSIGNMENT();
+				} else if (update == ParseRule.EXPRESSION) {
+					RULE_EXPRESSION();
 				}
 
-				if (tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					System.out.println("--- )");
+				if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+					consume();
 					RULE_STATEMENT_BLOCK();
 				} else {
 					error(42);
@@ -468,61 +693,58 @@ public class TheParser {
 		} else {
 			error(44);
 		}
+		exit(ParseRule.FOR);
 	}
 
 	private void RULE_SWITCH() {
-		System.out.println("--- RULE_SWITCH");
-		if (tokens.get(currentToken).getValue().equals("switch")) {
-			currentToken++;
-			System.out.println("--- switch");
-
-			if (tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				System.out.println("--- (");
+		enter(ParseRule.SWITCH);
+		if (tokens.kind(0) == TokenKind.KW_SWITCH) {
+			consume();
+
+			if (tokens.kind(0) == TokenKind.LEFT_PAREN) {
+				consume();
 				RULE_EXPRESSION();
 
-				if (tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					System.out.println("--- )");
+				if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+					consume();
 
-					if (tokens.get(currentToken).getValue().equals("{")) {
-						currentToken++;
-						System.out.println("--- {");
+					if (tokens.kind(0) == TokenKind.LEFT_BRACE) {
+						consume();
 
-						while (!tokens.get(currentToken).getValue().equals("}")) {
-							if (tokens.get(currentToken).getValue().equals("case")) {
-								currentToken++;
-								System.out.println("---- case");
+						while (tokens.kind(0) != TokenKind.RIGHT_BRACE && tokens.kind(0) != TokenKind.EOF) {
+							if (tokens.kind(0) == TokenKind.KW_CASE) {
+								consume();
 								RULE_EXPRESSION();
 
-								if (tokens.get(currentToken).getValue().equals(":")) {
-									currentToken++;
-									System.out.println("---- :");
-
-									while (!tokens.get(currentToken).getValue().equals("break")) {
-										RULE_BODY();
+								if (tokens.kind(0) == TokenKind.COLON) {
+									consume();
+
+									RULE_BODY();
+									if (tokens.kind(0) == TokenKind.KW_BREAK) {
+										consume();
+										if (tokens.kind(0) == TokenKind.SEMICOLON) {
+											consume();
+										}
+									} else {
+										error(62); // A case must end with break
 									}
-									currentToken++;
-									System.out.println("---- break");
-									if (tokens.get(currentToken).getValue().equals(";")) {
-										currentToken++;
-										System.out.println("---- ;");
-									}
-
-
 								} else {
 									error(45);
 								}
-							} else if (tokens.get(currentToken).getValue().equals("default")) {
-								currentToken++;
-								System.out.println("---- default");
+							} else if (tokens.kind(0) == TokenKind.KW_DEFAULT) {
+								consume();
 
-								if (tokens.get(currentToken).getValue().equals(":")) {
-									currentToken++;
-									System.out.println("---- :");
+								if (tokens.kind(0) == TokenKind.COLON) {
+									consume();
 
-									while (!tokens.get(currentToken).getValue().equals("}")) {
+									while (tokens.kind(0) != TokenKind.RIGHT_BRACE && tokens.kind(0) != TokenKind.EOF) {
 										RULE_BODY();
+										if (tokens.kind(0) == TokenKind.KW_BREAK) {
+											consume();
+											if (tokens.kind(0) == TokenKind.SEMICOLON) {
+												consume();
+											}
+										}
 									}
 								} else {
 									error(46);
@@ -532,9 +754,8 @@ public class TheParser {
 							}
 						}
 
-						if (tokens.get(currentToken).getValue().equals("}")) {
-							currentToken++;
-							System.out.println("--- }");
+						if (tokens.kind(0) == TokenKind.RIGHT_BRACE) {
+							consume();
 						} else {
 							error(48);
 						}
@@ -550,295 +771,243 @@ public class TheParser {
 		} else {
 			error(52);
 		}
+		exit(ParseRule.SWITCH);
 	}
 
 	private void RULE_STATEMENT_BLOCK() {
-		System.out.println("---- RULE_STATEMENT_BLOCK");
-		if (tokens.get(currentToken).getValue().equals("{")) {
-			currentToken++;
-			System.out.println("---- {");
+		enter(ParseRule.STATEMENT_BLOCK);
+		ParseRule statement = predict(BLOCK, PREDICT_BLOCK);
+		if (statement == ParseRule.BODY) {
+			consume();
 			RULE_BODY();
 
-			if (tokens.get(currentToken).getValue().equals("}")) {
-				currentToken++;
-				System.out.println("---- }");
+			if (tokens.kind(0) == TokenKind.RIGHT_BRACE) {
+				consume();
 			} else {
 				error(53);
 			}
 		} else {
-			if (isType()) {
-				RULE_VARIABLE();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("---- ;");
-				} else {
-					error(54);
-				}
-			} else if (isAssignment()) {
-				RULE_ASSIGNMENT();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("---- ;");
-				} else {
-					error(55);
-				}
-			} else if (isMethodCall()) {
-				RULE_CALL_METHOD();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("---- ;");
-				} else {
-					error(56);
-				}
-			} else if (isReturnStatement()) {
-				RULE_RETURN();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("---- ;");
-				} else {
-					error(57);
-				}
-			} else if (isWhileStatement()) {
-				RULE_WHILE();
-			} else if (isIfStatement()) {
-				RULE_IF();
-			} else if (isDoStatement()) {
-				RULE_DO_WHILE();
-			} else if (isForStatement()) {
-				RULE_FOR();
-			} else if (isSwitchStatement()) {
-				RULE_SWITCH();
-			} else {
-				RULE_EXPRESSION();
-				if (tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					System.out.println("---- ;");
-				} else {
-					error(58);
+			int entered = depth;
+			try {
+				switch (statement) {
+					case VARIABLE -> {
+						RULE_VARIABLE();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(54);
+						}
+					}
+					case ASSIGNMENT -> {
+						RULE_ASSIGNMENT();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(55);
+						}
+					}
+					case CALL_METHOD -> {
+						RULE_CALL_METHOD();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(56);
+						}
+					}
+					case RETURN -> {
+						RULE_RETURN();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(57);
+						}
+					}
+					case WHILE -> RULE_WHILE();
+					case IF -> RULE_IF();
+					case DO_WHILE -> RULE_DO_WHILE();
+					case FOR -> RULE_FOR();
+					case SWITCH -> RULE_SWITCH();
+					default -> {
+						RULE_EXPRESSION();
+						if (tokens.kind(0) == TokenKind.SEMICOLON) {
+							consume();
+						} else {
+							error(58);
+						}
+					}
 				}
+			} catch (ParseError e) {
+				unwind(entered);
+				synchronize();
 			}
 		}
+		exit(ParseRule.STATEMENT_BLOCK);
 	}
 
 	private void RULE_EXPRESSION() {
-		System.out.println("--- RULE_EXPRESSION");
-		RULE_X();
-
-		while (tokens.get(currentToken).getValue().equals("||")) {
-			currentToken++;
-			System.out.println("--- ||");
-			RULE_X();
-		}
-	}
-
-	private void RULE_X() {
-		System.out.println("---- RULE_X");
-		RULE_Y();
-
-		while (tokens.get(currentToken).getValue().equals("&&")) {
-			currentToken++;
-			System.out.println("---- &&");
-			RULE_Y();
-		}
-	}
-
-	private void RULE_Y() {
-		System.out.println("----- RULE_Y");
-		while (tokens.get(currentToken).getValue().equals("!")) {
-			currentToken++;
-			System.out.println("----- !");
-		}
-		RULE_R();
-	}
-
-	private void RULE_R() {
-		System.out.println("------ RULE_R");
-		RULE_E();
-
-		while (true) {
-			String currentVal = tokens.get(currentToken).getValue();
-			if (currentVal.equals("<") || currentVal.equals(">")) {
-				System.out.println("------ " + currentVal);
-				currentToken++;
-				RULE_E();
-			} else if (currentVal.equals("==")) {
-				System.out.println("------ ==");
-				currentToken++;
-				RULE_E();
-			} else if (currentVal.equals("!=")) {
-				System.out.println("------ !=");
-				currentToken++;
-				RULE_E();
-			} else {
-				break;
+		enter(ParseRule.EXPRESSION);
+		climb(1);
+		exit(ParseRule.EXPRESSION);
+	}
+
+	/**
+	 * Parses an expression whose binary operators have at least a given precedence, by
+	 * precedence climbing: an operand, then each operator of the lowest precedence found
+	 * with its right operand, parsed with the precedence above. Operators of the same
+	 * precedence are left associative and become children of one node of their level.
+	 *
+	 * @param min The lowest precedence of the operators to parse
+	 */
+	private void climb(int min) {
+		int mark = tree.mark();
+		int entered = depth;
+		prefix(min);
+		int precedence;
+		while ((precedence = BINARY[tokens.kind(0).ordinal()]) >= min) {
+			try {
+				do {
+					consume();
+					climb(precedence + 1);
+				} while (BINARY[tokens.kind(0).ordinal()] == precedence);
+			} finally {
+				// on a syntax error, the rules and levels entered inside are closed first
+				unwind(entered);
+				tree.reduce(LEVELS[precedence - 1], mark);
 			}
 		}
 	}
 
-	private void RULE_E() {
-		System.out.println("------- RULE_E");
-		RULE_A();
-
-		while (tokens.get(currentToken).getValue().equals("+") ||
-				tokens.get(currentToken).getValue().equals("-")) {
-			System.out.println("------- " + tokens.get(currentToken).getValue());
-			currentToken++;
-			RULE_A();
-		}
-	}
-
-	private void RULE_A() {
-		System.out.println("-------- RULE_A");
-		RULE_B();
-
-		while (tokens.get(currentToken).getValue().equals("*") ||
-				tokens.get(currentToken).getValue().equals("/")) {
-			System.out.println("-------- " + tokens.get(currentToken).getValue());
-			currentToken++;
-			RULE_B();
+	/**
+	 * Parses an operand: a prefix operator allowed at a given precedence and its operand, or
+	 * a primary expression.
+	 *
+	 * @param min The lowest precedence of the operators allowed
+	 */
+	private void prefix(int min) {
+		TokenKind operator = tokens.kind(0);
+		int precedence = PREFIX[operator.ordinal()];
+		if (precedence < min) {
+			primary();
+			return;
 		}
-	}
-
-	private void RULE_B() {
-		System.out.println("--------- RULE_B");
-		if (tokens.get(currentToken).getValue().equals("-")) {
-			currentToken++;
-			System.out.println("--------- -");
+		int mark = tree.mark();
+		int entered = depth;
+		try {
+			do {
+				consume();
+			} while (REPEATED[operator.ordinal()] && tokens.kind(0) == operator);
+			climb(precedence + 1);
+		} finally {
+			unwind(entered);
+			tree.reduce(LEVELS[precedence - 1], mark);
 		}
-		RULE_C();
 	}
 
-	private void RULE_C() {
-		System.out.println("---------- RULE_C");
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			if (currentToken + 1 < tokens.size() && tokens.get(currentToken + 1).getValue().equals("(")) {
-				RULE_CALL_METHOD();
-			} else {
-				System.out.println("---------- IDENTIFIER: " + tokens.get(currentToken).getValue());
-				currentToken++;
+	private void primary() {
+		switch (tokens.kind(0)) {
+			case IDENTIFIER -> {
+				if (tokens.kind(1) == TokenKind.LEFT_PAREN) {
+					RULE_CALL_METHOD();
+				} else {
+					consume();
+				}
 			}
-		} else if (tokens.get(currentToken).getType().equals("INTEGER") ||
-				tokens.get(currentToken).getType().equals("FLOAT") ||
-				tokens.get(currentToken).getType().equals("CHAR") ||
-				tokens.get(currentToken).getType().equals("STRING") ||
-				tokens.get(currentToken).getType().equals("HEXADECIMAL") ||
-				tokens.get(currentToken).getType().equals("BINARY") ||
-				(tokens.get(currentToken).getType().equals("KEYWORD") &&
-						(tokens.get(currentToken).getValue().equals("true") ||
-								tokens.get(currentToken).getValue().equals("false")))) {
-			System.out.println("---------- LITERAL: " + tokens.get(currentToken).getValue());
-			currentToken++;
-		} else if (tokens.get(currentToken).getValue().equals("(")) {
-			currentToken++;
-			System.out.println("---------- (");
-			RULE_EXPRESSION();
-			if (tokens.get(currentToken).getValue().equals(")")) {
-				currentToken++;
-				System.out.println("---------- )");
-			} else {
-				error(59);
+			case INTEGER, FLOAT, CHAR, STRING, HEXADECIMAL, BINARY, KW_TRUE, KW_FALSE -> {
+				consume();
+			}
+			case LEFT_PAREN -> {
+				consume();
+				RULE_EXPRESSION();
+				if (tokens.kind(0) == TokenKind.RIGHT_PAREN) {
+					consume();
+				} else {
+					error(59);
+				}
+			}
+			default -> {
+				// an empty node stands for the missing operand
+				tree.reduce(ParseRule.C, tree.mark());
+				error(60);
 			}
-		} else {
-			error(60);
 		}
 	}
 
 	private void RULE_TYPE() {
-		System.out.println("----- RULE_TYPE");
-		if (tokens.get(currentToken).getType().equals("KEYWORD") &&
-				(tokens.get(currentToken).getValue().equals("int") ||
-						tokens.get(currentToken).getValue().equals("float") ||
-						tokens.get(currentToken).getValue().equals("void") ||
-						tokens.get(currentToken).getValue().equals("char") ||
-						tokens.get(currentToken).getValue().equals("string") ||
-						tokens.get(currentToken).getValue().equals("boolean"))) {
-			System.out.println("----- TYPE: " + tokens.get(currentToken).getValue());
-			currentToken++;
+		enter(ParseRule.TYPE);
+		if (isType()) {
+			consume();
 		} else {
 			error(61);
 		}
-	}
-
-	private boolean isType() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				(tokens.get(currentToken).getValue().equals("int") ||
-						tokens.get(currentToken).getValue().equals("float") ||
-						tokens.get(currentToken).getValue().equals("void") ||
-						tokens.get(currentToken).getValue().equals("char") ||
-						tokens.get(currentToken).getValue().equals("string") ||
-						tokens.get(currentToken).getValue().equals("boolean"));
-	}
-
-	private boolean isMethodDeclaration() {
-		int savePos = currentToken;
-		try {
-			if (isType()) {
-				currentToken++;
-				if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-					currentToken++;
-					return tokens.get(currentToken).getValue().equals("(");
+		exit(ParseRule.TYPE);
+	}
+
+	/**
+	 * Reads the operators of a grammar from its expression rules, starting at the rule
+	 * "expression", each rule one precedence level tighter than the one before:
+	 *
+	 * <pre>
+	 * level       : next tail                  binary operators, left associative
+	 * tail        : OPERATOR next tail | ...
+	 *             |
+	 * level       : OPERATOR level | ... | next    prefix operators that may be repeated
+	 * level       : OPERATOR next | ... | next     prefix operators that may not
+	 * </pre>
+	 *
+	 * The first rule of another shape, such as the primary expressions, ends the levels.
+	 *
+	 * @param grammar  The grammar
+	 * @param binary   Receives the precedence of each binary operator, from 1 for the loosest
+	 * @param prefix   Receives the precedence of each prefix operator
+	 * @param repeated Receives whether each prefix operator may be repeated
+	 * @return The number of precedence levels
+	 * @throws IllegalArgumentException If a tail rule is not a list of operators
+	 */
+	static int operators(Grammar grammar, int[] binary, int[] prefix, boolean[] repeated) {
+		int rule = grammar.ruleNumber("expression");
+		int level = 0;
+		while (true) {
+			int[][] alternatives = grammar.alternatives(rule);
+			int[] last = alternatives[alternatives.length - 1];
+			if (alternatives.length == 1 && last.length == 2 && last[0] < 0 && last[1] < 0) {
+				level++;
+				int next = last[0];
+				int tail = last[1];
+				for (int[] alternative : grammar.alternatives(-1 - tail)) {
+					if (alternative.length == 0) {
+						continue;
+					}
+					if (alternative.length != 3 || alternative[0] < 0 || alternative[1] != next || alternative[2] != tail) {
+						throw new IllegalArgumentException("Expected operators of precedence " + level +
+								" as OPERATOR operand tail: " + Arrays.toString(alternative));
+					}
+					binary[alternative[0]] = level;
 				}
-			}
-			return false;
-		} finally {
-			currentToken = savePos;
-		}
-	}
-
-	private boolean isAssignment() {
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			if (currentToken + 1 < tokens.size() &&
-					tokens.get(currentToken + 1).getValue().equals("=")) {
-				return true;
+				rule = -1 - next;
+			} else if (alternatives.length > 1 && last.length == 1 && last[0] < 0 && isPrefix(alternatives, rule, last[0])) {
+				level++;
+				for (int i = 0; i + 1 < alternatives.length; i++) {
+					prefix[alternatives[i][0]] = level;
+					repeated[alternatives[i][0]] = alternatives[i][1] == -1 - rule;
+				}
+				rule = -1 - last[0];
+			} else {
+				return level;
 			}
 		}
-		return false;
 	}
 
-	private boolean isMethodCall() {
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			if (currentToken + 1 < tokens.size() &&
-					tokens.get(currentToken + 1).getValue().equals("(")) {
-				return true;
+	/**
+	 * Checks if the alternatives of a rule but the last are a prefix operator followed by the
+	 * rule itself or by the rule of the last alternative.
+	 */
+	private static boolean isPrefix(int[][] alternatives, int rule, int next) {
+		for (int i = 0; i + 1 < alternatives.length; i++) {
+			int[] alternative = alternatives[i];
+			if (alternative.length != 2 || alternative[0] < 0 || alternative[1] != -1 - rule && alternative[1] != next) {
+				return false;
 			}
 		}
-		return false;
-	}
-
-	private boolean isReturnStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("return");
-	}
-
-	private boolean isWhileStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("while");
-	}
-
-	private boolean isIfStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("if");
-	}
-
-	private boolean isDoStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("do");
-	}
-
-	private boolean isForStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("for");
-	}
-
-	private boolean isSwitchStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("switch");
-	}
-
-	private void error(int error) {
-		System.out.println("Error " + error +
-				" at line " + tokens.get(currentToken).getLineNumber() +
-				", token: " + tokens.get(currentToken).getValue());
-		System.exit(1);
+		return true;
 	}
-}
\ No newline at end of file
+}
@@ -5,14 +5,20 @@
  * This class is fundamental for the lexical analysis process, storing the essential
  * information about each token identified in the source code.
  *
+ * Tokens produced by the lexer only record where their lexeme lies in the source text;
+ * the value is materialized the first time {@link #getValue()} is called.
+ *
  * @author javiergs
  * @author eduardomv
  * @author santiarr
  * @author yawham
- * @version 2.0
+ * @version 3.0
  */
 public class TheToken {
 
+	private CharSequence source;
+	private int start;
+	private int length;
 	private String value;
 	private String type;
 	private int lineNumber;
@@ -25,12 +31,32 @@ public class TheToken {
 	 * @param lineNumber The line number where the token appears
 	 */
 	public TheToken(String value, String type, int lineNumber) {
+		this(value, 0, value.length(), type, lineNumber);
 		this.value = value;
+	}
+
+	/**
+	 * Constructs a new Token whose value is a range of the source text.
+	 *
+	 * @param source     The source text the token was found in
+	 * @param start      The offset of the first character of the token in the source
+	 * @param length     The number of characters of the token
+	 * @param type       The type/category of the token
+	 * @param lineNumber The line number where the token appears
+	 */
+	public TheToken(CharSequence source, int start, int length, String type, int lineNumber) {
+		this.source = source;
+		this.start = start;
+		this.length = length;
 		this.type = type;
 		this.lineNumber = lineNumber;
 	}
 
 	public String getValue() {
+		if (value == null) {
+			value = source.subSequence(start, start + length).toString();
+			source = null;
+		}
 		return value;
 	}
 
@@ -41,5 +67,12 @@ public class TheToken {
 	public int getLineNumber() {
 		return lineNumber;
 	}
-}
 
+	public int getStart() {
+		return start;
+	}
+
+	public int getLength() {
+		return length;
+	}
+}
@@ -0,0 +1,433 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * TokenBuffer.java
+ * ---------------
+ * Stores the tokens of one source text as parallel growable int arrays (kind, start, length
+ * and line) instead of one object per token. Kinds are stored as their {@link TokenKind}
+ * ordinal. Values stay in the source text and are only
+ * materialized on request; comparisons against a given text are done in place.
+ *
+ * Identifiers are also interned into a {@link SymbolTable} as they are added, and each
+ * carries its symbol id, so they can be told apart with int comparisons and their values
+ * are materialized once per name rather than once per token.
+ *
+ * The parser reads the buffer through a {@link Cursor}, and {@link #asVector()} gives legacy
+ * callers the tokens as {@link TheToken} objects.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.3
+ */
+public class TokenBuffer {
+
+    private final CharSequence source;
+    private final SymbolTable symbolTable;
+    private int size;
+    private int[] kinds = new int[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private int[] lines = new int[64];
+    // symbol id of each identifier, -1 for the other tokens
+    private int[] symbols = new int[64];
+
+    /**
+     * Creates an empty buffer for the tokens of a source text.
+     *
+     * @param source The source text the tokens refer to
+     */
+    public TokenBuffer(CharSequence source) {
+        this(source, new SymbolTable());
+    }
+
+    /**
+     * Creates an empty buffer whose identifiers are interned into a table shared with other
+     * buffers, so their symbol ids can be compared across buffers.
+     *
+     * @param source The source text the tokens refer to
+     * @param symbolTable The table interning the identifiers
+     */
+    public TokenBuffer(CharSequence source, SymbolTable symbolTable) {
+        this.source = source;
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Creates a buffer over tokens already stored in arrays, such as the ones read back from
+     * a {@link ParseCache}. The arrays are used as they are, not copied.
+     *
+     * @param source The source text the tokens refer to
+     * @param kinds The kind ordinals of the tokens
+     * @param starts The offsets of the tokens
+     * @param lengths The lengths of the tokens
+     * @param lines The line numbers of the tokens
+     * @param symbolTable The table interning the identifiers
+     */
+    TokenBuffer(CharSequence source, int[] kinds, int[] starts, int[] lengths, int[] lines, SymbolTable symbolTable) {
+        this.source = source;
+        this.symbolTable = symbolTable;
+        this.size = kinds.length;
+        this.kinds = kinds;
+        this.starts = starts;
+        this.lengths = lengths;
+        this.lines = lines;
+        this.symbols = new int[size];
+        for (int i = 0; i < size; i++) {
+            symbols[i] = intern(kinds[i], starts[i], lengths[i]);
+        }
+    }
+
+    /**
+     * Builds a buffer holding a copy of a list of tokens.
+     *
+     * @param tokens The tokens to copy
+     * @return The buffer
+     * @throws IllegalArgumentException If a token has an unknown type or value
+     */
+    public static TokenBuffer of(List<TheToken> tokens) {
+        StringBuilder text = new StringBuilder();
+        TokenBuffer buffer = new TokenBuffer(text);
+        for (TheToken token : tokens) {
+            TokenKind kind = TokenKind.of(token.getType(), token.getValue());
+            int start = text.length();
+            text.append(token.getValue());
+            buffer.add(kind, start, token.getValue().length(), token.getLineNumber());
+        }
+        return buffer;
+    }
+
+    /**
+     * Appends a token. The text of the token must already be in the source text, since an
+     * identifier is interned from it.
+     *
+     * @param kind The kind of the token
+     * @param start The offset of the token in the source text
+     * @param length The number of characters of the token
+     * @param line The line number where the token appears
+     */
+    public void add(TokenKind kind, int start, int length, int line) {
+        add(kind, start, length, line, intern(kind.ordinal(), start, length));
+    }
+
+    /**
+     * Appends a token whose identifier is already interned in the table of this buffer, as
+     * when copying tokens between buffers sharing a table.
+     *
+     * @param kind The kind of the token
+     * @param start The offset of the token in the source text
+     * @param length The number of characters of the token
+     * @param line The line number where the token appears
+     * @param symbol The id of the identifier in {@link #getSymbolTable()}, or -1 for other tokens
+     */
+    public void add(TokenKind kind, int start, int length, int line, int symbol) {
+        if (size == kinds.length) {
+            int capacity = Math.max(size * 2, 64);
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+        kinds[size] = kind.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        symbols[size] = symbol;
+        size++;
+    }
+
+    private int intern(int kind, int start, int length) {
+        return kind == TokenKind.IDENTIFIER.ordinal() ? symbolTable.intern(source, start, length) : -1;
+    }
+
+    /**
+     * Appends a range of the tokens of another buffer over the same source text.
+     *
+     * @param other The buffer holding the tokens
+     * @param from The index of the first token to append
+     * @param to The index after the last token to append
+     * @param lineOffset The number added to the line numbers of the tokens
+     */
+    public void append(TokenBuffer other, int from, int to, int lineOffset) {
+        int count = to - from;
+        if (size + count > kinds.length) {
+            int capacity = Math.max(size * 2, size + count);
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+        System.arraycopy(other.kinds, from, kinds, size, count);
+        System.arraycopy(other.starts, from, starts, size, count);
+        System.arraycopy(other.lengths, from, lengths, size, count);
+        for (int i = 0; i < count; i++) {
+            lines[size + i] = other.lines[from + i] + lineOffset;
+        }
+        if (other.symbolTable == symbolTable) {
+            System.arraycopy(other.symbols, from, symbols, size, count);
+        } else {
+            // each id of the other table is looked up here once
+            int[] ids = new int[other.symbolTable.size()];
+            for (int i = 0; i < count; i++) {
+                int id = other.symbols[from + i];
+                if (id >= 0 && ids[id] == 0) {
+                    ids[id] = symbolTable.intern(other.symbolTable.name(id)) + 1;
+                }
+                symbols[size + i] = id < 0 ? -1 : ids[id] - 1;
+            }
+        }
+        size += count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public TokenKind getKind(int index) {
+        return TokenKind.of(kinds[index]);
+    }
+
+    /**
+     * Returns the legacy type name of a token, such as "KEYWORD".
+     *
+     * @param index The token index
+     * @return The type name
+     */
+    public String getType(int index) {
+        return TokenKind.of(kinds[index]).getType();
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public int getLineNumber(int index) {
+        return lines[index];
+    }
+
+    /**
+     * Returns the symbol id of an identifier token.
+     *
+     * @param index The token index
+     * @return The id of the identifier in {@link #getSymbolTable()}, or -1 for other tokens
+     */
+    public int getSymbol(int index) {
+        return symbols[index];
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Materializes the value of a token. Identifiers return the name held by the symbol
+     * table, without allocating.
+     *
+     * @param index The token index
+     * @return The value of the token
+     */
+    public String getValue(int index) {
+        if (symbols[index] >= 0) {
+            return symbolTable.name(symbols[index]);
+        }
+        return source.subSequence(starts[index], starts[index] + lengths[index]).toString();
+    }
+
+    /**
+     * Appends the value of a token to a text without materializing it.
+     *
+     * @param index The token index
+     * @param text The text to append to
+     */
+    public void appendValue(int index, StringBuilder text) {
+        if (symbols[index] >= 0) {
+            text.append(symbolTable.name(symbols[index]));
+        } else {
+            text.append(source, starts[index], starts[index] + lengths[index]);
+        }
+    }
+
+    /**
+     * Compares the value of a token with a text without materializing it.
+     *
+     * @param index The token index
+     * @param text The text to compare with
+     * @return true if the token's value is equal to the text
+     */
+    public boolean valueEquals(int index, String text) {
+        int length = lengths[index];
+        if (length != text.length()) {
+            return false;
+        }
+        int start = starts[index];
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a token as a {@link TheToken} object for legacy callers. The object refers to
+     * the same source text, so its value is still lazy.
+     *
+     * @param index The token index
+     * @return A new token object
+     */
+    public TheToken getToken(int index) {
+        return new TheToken(source, starts[index], lengths[index], getType(index), lines[index]);
+    }
+
+    /**
+     * Returns the tokens as {@link TheToken} objects for legacy callers.
+     * The tokens refer to the same source text, so their values are still lazy.
+     *
+     * @return A new vector holding one token object per token
+     */
+    public Vector<TheToken> asVector() {
+        Vector<TheToken> tokens = new Vector<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(getToken(i));
+        }
+        return tokens;
+    }
+
+    /**
+     * Creates a cursor positioned at the first token.
+     *
+     * @return The cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Moves over the tokens of the buffer. Lookahead positions past the last token read as
+     * an {@link TokenKind#EOF} token with an empty value, on the line of the last token.
+     */
+    public class Cursor implements TokenSource {
+
+        private int position;
+
+        public int getPosition() {
+            return position;
+        }
+
+        public void setPosition(int position) {
+            this.position = position;
+        }
+
+        /**
+         * Moves to the next token.
+         */
+        @Override
+        public void advance() {
+            position++;
+        }
+
+        /**
+         * Checks if every token has been consumed.
+         *
+         * @return true if the cursor is past the last token
+         */
+        @Override
+        public boolean atEnd() {
+            return position >= size;
+        }
+
+        /**
+         * Returns the kind of a token ahead of the cursor.
+         *
+         * @param lookahead 0 for the current token, 1 for the next one, and so on
+         * @return The kind
+         */
+        @Override
+        public TokenKind kind(int lookahead) {
+            int index = position + lookahead;
+            return index < size ? TokenKind.of(kinds[index]) : TokenKind.EOF;
+        }
+
+        /**
+         * Compares the value of a token ahead of the cursor with a text.
+         *
+         * @param lookahead 0 for the current token, 1 for the next one, and so on
+         * @param text The text to compare with
+         * @return true if the token's value is equal to the text
+         */
+        public boolean is(int lookahead, String text) {
+            int index = position + lookahead;
+            return index < size && valueEquals(index, text);
+        }
+
+        /**
+         * Materializes the value of a token ahead of the cursor.
+         *
+         * @param lookahead 0 for the current token, 1 for the next one, and so on
+         * @return The value, or an empty string past the last token
+         */
+        @Override
+        public String value(int lookahead) {
+            int index = position + lookahead;
+            return index < size ? getValue(index) : "";
+        }
+
+        /**
+         * Appends the value of a token ahead of the cursor to a text.
+         *
+         * @param lookahead 0 for the current token, 1 for the next one, and so on
+         * @param text The text to append to; nothing is appended past the last token
+         */
+        @Override
+        public void appendValue(int lookahead, StringBuilder text) {
+            int index = position + lookahead;
+            if (index < size) {
+                TokenBuffer.this.appendValue(index, text);
+            }
+        }
+
+        /**
+         * Returns the symbol id of a token ahead of the cursor.
+         *
+         * @param lookahead 0 for the current token, 1 for the next one, and so on
+         * @return The id in the symbol table of the buffer, or -1 if the token is not an
+         *         identifier or is past the last token
+         */
+        @Override
+        public int symbol(int lookahead) {
+            int index = position + lookahead;
+            return index < size ? symbols[index] : -1;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable() {
+            return symbolTable;
+        }
+
+        /**
+         * Returns the line of a token ahead of the cursor.
+         *
+         * @param lookahead 0 for the current token, 1 for the next one, and so on
+         * @return The line number
+         */
+        @Override
+        public int line(int lookahead) {
+            int index = Math.min(position + lookahead, size - 1);
+            return index < 0 ? 0 : lines[index];
+        }
+    }
+
+}
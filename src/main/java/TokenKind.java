@@ -0,0 +1,297 @@
+/**
+ * TokenKind.java
+ * ---------------
+ * Compact kind of a token. Literals, identifiers and errors have one kind each, while every
+ * keyword, operator and delimiter has a kind of its own, so the parser can branch with a
+ * switch on the kind instead of comparing token values.
+ *
+ * Each kind keeps the legacy type name reported by {@link TheToken#getType()} ("KEYWORD",
+ * "OPERATOR", "DELIMITER", or the literal type) and, for keywords, operators and delimiters,
+ * the fixed text of the token.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.0
+ */
+public enum TokenKind {
+
+    ERROR("ERROR", null),
+    BINARY("BINARY", null),
+    OCTAL("OCTAL", null),
+    HEXADECIMAL("HEXADECIMAL", null),
+    INTEGER("INTEGER", null),
+    FLOAT("FLOAT", null),
+    IDENTIFIER("IDENTIFIER", null),
+    STRING("STRING", null),
+    CHAR("CHAR", null),
+    /**
+     * Keyword spelled with capital letters, such as "While", when the lexer recognizes
+     * keywords ignoring case. The grammar only uses their lower-case spelling.
+     */
+    KEYWORD("KEYWORD", null),
+
+    KW_INT("KEYWORD", "int"),
+    KW_END("KEYWORD", "end"),
+    KW_IF("KEYWORD", "if"),
+    KW_ELSE("KEYWORD", "else"),
+    KW_WHILE("KEYWORD", "while"),
+    KW_DO("KEYWORD", "do"),
+    KW_FOR("KEYWORD", "for"),
+    KW_BREAK("KEYWORD", "break"),
+    KW_CONTINUE("KEYWORD", "continue"),
+    KW_CLASS("KEYWORD", "class"),
+    KW_FLOAT("KEYWORD", "float"),
+    KW_TRUE("KEYWORD", "true"),
+    KW_FALSE("KEYWORD", "false"),
+    KW_STRING("KEYWORD", "string"),
+    KW_CHAR("KEYWORD", "char"),
+    KW_VOID("KEYWORD", "void"),
+    KW_BOOLEAN("KEYWORD", "boolean"),
+    KW_RETURN("KEYWORD", "return"),
+    KW_SWITCH("KEYWORD", "switch"),
+    KW_CASE("KEYWORD", "case"),
+    KW_DEFAULT("KEYWORD", "default"),
+
+    ASSIGN("OPERATOR", "="),
+    PLUS("OPERATOR", "+"),
+    MINUS("OPERATOR", "-"),
+    STAR("OPERATOR", "*"),
+    SLASH("OPERATOR", "/"),
+    LESS("OPERATOR", "<"),
+    GREATER("OPERATOR", ">"),
+    NOT("OPERATOR", "!"),
+    AMPERSAND("OPERATOR", "&"),
+    BAR("OPERATOR", "|"),
+    PERCENT("OPERATOR", "%"),
+    EQUAL("OPERATOR", "=="),
+    NOT_EQUAL("OPERATOR", "!="),
+    GREATER_EQUAL("OPERATOR", ">="),
+    LESS_EQUAL("OPERATOR", "<="),
+    PLUS_ASSIGN("OPERATOR", "+="),
+    MINUS_ASSIGN("OPERATOR", "-="),
+    STAR_ASSIGN("OPERATOR", "*="),
+    SLASH_ASSIGN("OPERATOR", "/="),
+    PERCENT_ASSIGN("OPERATOR", "%="),
+    INCREMENT("OPERATOR", "++"),
+    DECREMENT("OPERATOR", "--"),
+    OR("OPERATOR", "||"),
+    AND("OPERATOR", "&&"),
+
+    COMMA("DELIMITER", ","),
+    SEMICOLON("DELIMITER", ";"),
+    DOT("DELIMITER", "."),
+    LEFT_PAREN("DELIMITER", "("),
+    RIGHT_PAREN("DELIMITER", ")"),
+    LEFT_BRACE("DELIMITER", "{"),
+    RIGHT_BRACE("DELIMITER", "}"),
+    LEFT_BRACKET("DELIMITER", "["),
+    RIGHT_BRACKET("DELIMITER", "]"),
+    COLON("DELIMITER", ":"),
+
+    /**
+     * Kind reported past the last token.
+     */
+    EOF("EOF", null);
+
+    private static final TokenKind[] KINDS = values();
+    private static final TokenKind[] SINGLE = new TokenKind[128];
+    // keyword kinds by the perfect hash of their text, see keywordHash
+    private static final TokenKind[] KEYWORDS = new TokenKind[64];
+
+    static {
+        for (TokenKind kind : KINDS) {
+            if (kind.text == null) {
+                continue;
+            }
+            if (kind.isKeyword()) {
+                int hash = keywordHash(kind.text.length(), kind.text.charAt(0), kind.text.charAt(kind.text.length() - 1));
+                if (KEYWORDS[hash] != null) {
+                    throw new IllegalStateException("Keywords " + KEYWORDS[hash].text + " and " + kind.text + " collide");
+                }
+                KEYWORDS[hash] = kind;
+            } else if (kind.text.length() == 1) {
+                SINGLE[kind.text.charAt(0)] = kind;
+            }
+        }
+    }
+
+    private final String type;
+    private final String text;
+
+    TokenKind(String type, String text) {
+        this.type = type;
+        this.text = text;
+    }
+
+    /**
+     * Returns the legacy type name of the kind, such as "KEYWORD" or "IDENTIFIER".
+     *
+     * @return The type name
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the fixed text of keywords, operators and delimiters.
+     *
+     * @return The text, or null for kinds whose text varies
+     */
+    public String getText() {
+        return text;
+    }
+
+    public boolean isKeyword() {
+        return type.equals("KEYWORD");
+    }
+
+    public boolean isDelimiter() {
+        return type.equals("DELIMITER");
+    }
+
+    /**
+     * Returns the kind with a given ordinal, as stored in a token buffer.
+     *
+     * @param ordinal The ordinal of the kind
+     * @return The kind
+     */
+    public static TokenKind of(int ordinal) {
+        return KINDS[ordinal];
+    }
+
+    /**
+     * Returns the kind of a token given its legacy type name and value.
+     *
+     * @param type The type name, such as "KEYWORD"
+     * @param value The value of the token
+     * @return The kind
+     * @throws IllegalArgumentException If the type and value do not describe a known kind
+     */
+    public static TokenKind of(String type, String value) {
+        TokenKind kind;
+        switch (type) {
+            case "KEYWORD" -> kind = keyword(value, 0, value.length(), true);
+            case "OPERATOR" -> kind = value.length() == 1 ? operator(value.charAt(0))
+                    : value.length() == 2 ? operator(value.charAt(0), value.charAt(1)) : null;
+            case "DELIMITER" -> kind = value.length() == 1 ? delimiter(value.charAt(0)) : null;
+            default -> {
+                kind = null;
+                for (TokenKind candidate : KINDS) {
+                    if (candidate.text == null && candidate != EOF && candidate.type.equals(type)) {
+                        kind = candidate;
+                    }
+                }
+            }
+        }
+        if (kind == null) {
+            throw new IllegalArgumentException("Unknown token " + type + " " + value);
+        }
+        return kind;
+    }
+
+    /**
+     * Returns the keyword kind of an identifier found in a source text, without copying it.
+     * Candidates are looked up with a perfect hash of the length, first and last characters
+     * of the identifier, so at most one keyword is compared.
+     *
+     * When case is ignored, a keyword that is not spelled in lower case is a {@link #KEYWORD}.
+     *
+     * @param source The source text
+     * @param from The offset of the first character of the identifier
+     * @param to The offset after the last character of the identifier
+     * @param ignoreCase true to recognize keywords ignoring case
+     * @return The keyword kind, or null if the identifier is not a keyword
+     */
+    public static TokenKind keyword(CharSequence source, int from, int to, boolean ignoreCase) {
+        int length = to - from;
+        if (length == 0) {
+            return null;
+        }
+        TokenKind kind = KEYWORDS[keywordHash(length, source.charAt(from), source.charAt(to - 1))];
+        if (kind == null || kind.text.length() != length) {
+            return null;
+        }
+        boolean lowerCase = true;
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(from + i);
+            char k = kind.text.charAt(i);
+            if (c != k) {
+                // keywords are only made of lower-case letters, whose capital is 0x20 below
+                if (!ignoreCase || (c | 0x20) != k) {
+                    return null;
+                }
+                lowerCase = false;
+            }
+        }
+        return lowerCase ? kind : KEYWORD;
+    }
+
+    /**
+     * Hashes a keyword candidate into the keyword table, ignoring the case of its letters.
+     * The shifts were chosen so that no two keywords collide; the class fails to load if a
+     * new keyword breaks that.
+     */
+    private static int keywordHash(int length, char first, char last) {
+        return ((length << 3) + ((first | 0x20) << 1) + (last | 0x20)) & 63;
+    }
+
+    /**
+     * Returns the kind of a one-character operator.
+     *
+     * @param c The operator character
+     * @return The operator kind, or null if the character is not an operator
+     */
+    public static TokenKind operator(char c) {
+        TokenKind kind = c < SINGLE.length ? SINGLE[c] : null;
+        return kind != null && kind.type.equals("OPERATOR") ? kind : null;
+    }
+
+    /**
+     * Returns the kind of a two-character operator.
+     *
+     * @param first The first character
+     * @param second The character following it
+     * @return The operator kind, or null if the characters do not form an operator
+     */
+    public static TokenKind operator(char first, char second) {
+        switch (second) {
+            case '=':
+                switch (first) {
+                    case '=': return EQUAL;
+                    case '!': return NOT_EQUAL;
+                    case '>': return GREATER_EQUAL;
+                    case '<': return LESS_EQUAL;
+                    case '+': return PLUS_ASSIGN;
+                    case '-': return MINUS_ASSIGN;
+                    case '*': return STAR_ASSIGN;
+                    case '/': return SLASH_ASSIGN;
+                    case '%': return PERCENT_ASSIGN;
+                    default: return null;
+                }
+            case '+':
+                return first == '+' ? INCREMENT : null;
+            case '-':
+                return first == '-' ? DECREMENT : null;
+            case '|':
+                return first == '|' ? OR : null;
+            case '&':
+                return first == '&' ? AND : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the kind of a delimiter.
+     *
+     * @param c The delimiter character
+     * @return The delimiter kind, or null if the character is not a delimiter
+     */
+    public static TokenKind delimiter(char c) {
+        TokenKind kind = c < SINGLE.length ? SINGLE[c] : null;
+        return kind != null && kind.type.equals("DELIMITER") ? kind : null;
+    }
+
+}
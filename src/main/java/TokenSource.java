@@ -0,0 +1,84 @@
+/**
+ * TokenSource.java
+ * ---------------
+ * Sequence of tokens consumed by the parser, one at a time, with a small lookahead.
+ * Positions past the last token read as an {@link TokenKind#EOF} token with an empty value,
+ * on the line of the last token.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.3
+ */
+public interface TokenSource {
+
+    /**
+     * Moves to the next token.
+     */
+    void advance();
+
+    /**
+     * Checks if every token has been consumed.
+     *
+     * @return true if there are no tokens left
+     */
+    boolean atEnd();
+
+    /**
+     * Returns the kind of a token ahead of the current position.
+     *
+     * @param lookahead 0 for the current token, 1 for the next one, and so on
+     * @return The kind
+     */
+    TokenKind kind(int lookahead);
+
+    /**
+     * Materializes the value of a token ahead of the current position.
+     *
+     * @param lookahead 0 for the current token, 1 for the next one, and so on
+     * @return The value, or an empty string past the last token
+     */
+    String value(int lookahead);
+
+    /**
+     * Appends the value of a token ahead of the current position to a text. Sources holding
+     * their text copy the characters straight from it, without materializing the value.
+     *
+     * @param lookahead 0 for the current token, 1 for the next one, and so on
+     * @param text The text to append to; nothing is appended past the last token
+     */
+    default void appendValue(int lookahead, StringBuilder text) {
+        text.append(value(lookahead));
+    }
+
+    /**
+     * Returns the symbol id of a token ahead of the current position. Identifiers spelled the
+     * same read the same id from one source; sources that do not intern their identifiers
+     * read -1 for every token.
+     *
+     * @param lookahead 0 for the current token, 1 for the next one, and so on
+     * @return The id, or -1 if the token is not an identifier or is past the last token
+     */
+    default int symbol(int lookahead) {
+        return -1;
+    }
+
+    /**
+     * Returns the table the ids of {@link #symbol(int)} refer to.
+     *
+     * @return The symbol table, or null if the source does not intern its identifiers
+     */
+    default SymbolTable getSymbolTable() {
+        return null;
+    }
+
+    /**
+     * Returns the line of a token ahead of the current position.
+     *
+     * @param lookahead 0 for the current token, 1 for the next one, and so on
+     * @return The line number
+     */
+    int line(int lookahead);
+
+}
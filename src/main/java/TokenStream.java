@@ -0,0 +1,184 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * TokenStream.java
+ * ---------------
+ * Token source that lexes its input on demand. Lines are read and lexed only when the
+ * parser looks at a token that has not been produced yet, and tokens are kept in a small
+ * ring buffer that holds the current token and the lookahead after it. Memory stays bounded
+ * by the lookahead and the length of one line instead of growing with the input.
+ *
+ * Streams are created by {@link TheLexer#stream()} and close their reader once the last
+ * line has been read.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 1.2
+ */
+public class TokenStream implements TokenSource, Closeable {
+
+    /**
+     * Number of tokens that can be looked at, the current one included. The grammar looks
+     * at most two tokens past the current one, in method declarations.
+     */
+    public static final int LOOKAHEAD = 4;
+
+    private static final int MASK = LOOKAHEAD - 1;
+
+    private final TheLexer lexer;
+    private final BufferedReader reader;
+    private final LexerState state;
+    private boolean exhausted;
+
+    // interns the identifiers of every line, so their ids hold across lines
+    private final SymbolTable symbolTable = new SymbolTable();
+    // tokens of the last line read, waiting to enter the ring
+    private TokenBuffer pending = new TokenBuffer("", symbolTable);
+    private int next;
+
+    private final TokenKind[] kinds = new TokenKind[LOOKAHEAD];
+    private final CharSequence[] sources = new CharSequence[LOOKAHEAD];
+    private final int[] starts = new int[LOOKAHEAD];
+    private final int[] lengths = new int[LOOKAHEAD];
+    private final int[] lines = new int[LOOKAHEAD];
+    private final int[] symbols = new int[LOOKAHEAD];
+    private int head;
+    private int count;
+    private int lastLine;
+
+    TokenStream(TheLexer lexer, BufferedReader reader) {
+        this.lexer = lexer;
+        this.reader = reader;
+        this.state = lexer.initialState();
+    }
+
+    @Override
+    public void advance() {
+        if (fill(1)) {
+            head = (head + 1) & MASK;
+            count--;
+        }
+    }
+
+    @Override
+    public boolean atEnd() {
+        return !fill(1);
+    }
+
+    @Override
+    public TokenKind kind(int lookahead) {
+        return fill(lookahead + 1) ? kinds[slot(lookahead)] : TokenKind.EOF;
+    }
+
+    @Override
+    public String value(int lookahead) {
+        if (!fill(lookahead + 1)) {
+            return "";
+        }
+        int slot = slot(lookahead);
+        if (symbols[slot] >= 0) {
+            return symbolTable.name(symbols[slot]);
+        }
+        return sources[slot].subSequence(starts[slot], starts[slot] + lengths[slot]).toString();
+    }
+
+    @Override
+    public void appendValue(int lookahead, StringBuilder text) {
+        if (!fill(lookahead + 1)) {
+            return;
+        }
+        int slot = slot(lookahead);
+        if (symbols[slot] >= 0) {
+            text.append(symbolTable.name(symbols[slot]));
+        } else {
+            text.append(sources[slot], starts[slot], starts[slot] + lengths[slot]);
+        }
+    }
+
+    @Override
+    public int symbol(int lookahead) {
+        return fill(lookahead + 1) ? symbols[slot(lookahead)] : -1;
+    }
+
+    /**
+     * Returns the table interning the identifiers of the stream.
+     *
+     * @return The symbol table
+     */
+    @Override
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    @Override
+    public int line(int lookahead) {
+        return fill(lookahead + 1) ? lines[slot(lookahead)] : lastLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        exhausted = true;
+        reader.close();
+    }
+
+    private int slot(int lookahead) {
+        return (head + lookahead) & MASK;
+    }
+
+    /**
+     * Lexes until the ring holds a given number of tokens, or the input ends.
+     *
+     * @param size The number of tokens needed
+     * @return true if the ring holds that many tokens
+     * @throws IllegalArgumentException If more tokens than {@link #LOOKAHEAD} are needed
+     * @throws UncheckedIOException If the input cannot be read
+     */
+    private boolean fill(int size) {
+        if (size > LOOKAHEAD) {
+            throw new IllegalArgumentException("Lookahead " + (size - 1) + " exceeds " + (LOOKAHEAD - 1));
+        }
+        while (count < size) {
+            while (next == pending.size()) {
+                if (!readLine()) {
+                    return false;
+                }
+            }
+            int slot = slot(count);
+            kinds[slot] = pending.getKind(next);
+            sources[slot] = pending.getSource();
+            starts[slot] = pending.getStart(next);
+            lengths[slot] = pending.getLength(next);
+            lines[slot] = pending.getLineNumber(next);
+            symbols[slot] = pending.getSymbol(next);
+            lastLine = lines[slot];
+            next++;
+            count++;
+        }
+        return true;
+    }
+
+    private boolean readLine() {
+        if (exhausted) {
+            return false;
+        }
+        try {
+            String line = reader.readLine();
+            if (line == null) {
+                close();
+                return false;
+            }
+            pending = new TokenBuffer(line, symbolTable);
+            next = 0;
+            lexer.scanLine(state, line, pending);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
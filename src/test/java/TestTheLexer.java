@@ -0,0 +1,343 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTheLexer {
+
+	@TempDir
+	Path folder;
+
+	private TheLexer lexer(String source) throws IOException {
+		Path file = folder.resolve("input.txt");
+		Files.writeString(file, source);
+		TheLexer lexer = new TheLexer(file.toFile());
+		lexer.run();
+		return lexer;
+	}
+
+	private Vector<TheToken> lex(String source) throws IOException {
+		return lexer(source).getTokens();
+	}
+
+	private String types(Vector<TheToken> tokens) {
+		StringBuilder types = new StringBuilder();
+		for (TheToken token : tokens) {
+			types.append(token.getType()).append(' ');
+		}
+		return types.toString().trim();
+	}
+
+	private int walk(Automata dfa, String input) {
+		int state = dfa.getStateId("s0");
+		for (char c : input.toCharArray()) {
+			state = dfa.getNextState(state, c);
+		}
+		return state;
+	}
+
+	@Test
+	public void testNumbers() throws IOException {
+		System.out.println("testing numbers =============================================================================");
+		Vector<TheToken> tokens = lex("0b101 017 08 0 0x1fA 12.34e-5 12.3E4f 5e3 3.F 0b");
+		assertEquals("BINARY OCTAL INTEGER INTEGER HEXADECIMAL FLOAT FLOAT INTEGER FLOAT ERROR", types(tokens));
+		assertEquals("12.34e-5", tokens.get(5).getValue());
+	}
+
+	@Test
+	public void testStringsAndChars() throws IOException {
+		System.out.println("testing strings and chars ===================================================================");
+		Vector<TheToken> tokens = lex("s = \"a; (b+c)\" + 'x';");
+		assertEquals("IDENTIFIER OPERATOR STRING OPERATOR CHAR DELIMITER", types(tokens));
+		assertEquals("\"a; (b+c)\"", tokens.get(2).getValue());
+	}
+
+	@Test
+	public void testOperatorsAndKeywords() throws IOException {
+		System.out.println("testing operators and keywords ==============================================================");
+		Vector<TheToken> tokens = lex("while (a <= b) a += 1; // done");
+		assertEquals("KEYWORD DELIMITER IDENTIFIER OPERATOR IDENTIFIER DELIMITER IDENTIFIER OPERATOR INTEGER DELIMITER",
+				types(tokens));
+		assertEquals("<=", tokens.get(3).getValue());
+	}
+
+	@Test
+	public void testComments() throws IOException {
+		System.out.println("testing comments ============================================================================");
+		Vector<TheToken> tokens = lex("ab// c\nx/*y*/z \"/* kept */\"");
+		assertEquals("IDENTIFIER IDENTIFIER IDENTIFIER STRING", types(tokens));
+		assertEquals("z", tokens.get(2).getValue());
+		assertEquals("\"/* kept */\"", tokens.get(3).getValue());
+		assertEquals(tokens.get(3).getValue().length(), tokens.get(3).getLength());
+	}
+
+	@Test
+	public void testMultiLineComments() throws IOException {
+		System.out.println("testing multi-line comments =================================================================");
+		Vector<TheToken> tokens = lex("a /* one\r\ntwo * / three\n**/ b\n/**/c");
+		assertEquals("IDENTIFIER IDENTIFIER IDENTIFIER", types(tokens));
+		assertEquals("b", tokens.get(1).getValue());
+		assertEquals(3, tokens.get(1).getLineNumber());
+		assertEquals(4, tokens.get(2).getLineNumber());
+	}
+
+	@Test
+	public void testChunkedFeed() throws IOException {
+		System.out.println("testing chunked feed ========================================================================");
+		String source = Files.readString(Path.of("src/main/resources/inputStatements.txt")) +
+				"\r\nx = \"a /* b\" / 'c'; /* multi\r\nline */ y >= 1.5e-3;// end\r\nz";
+		TokenBuffer expected = lexer(source).getTokenBuffer();
+		for (int chunk : new int[]{1, 2, 3, 7, 64}) {
+			TheLexer lexer = new TheLexer(null);
+			for (int from = 0; from < source.length(); from += chunk) {
+				lexer.feed(source.subSequence(from, Math.min(source.length(), from + chunk)));
+			}
+			lexer.finish();
+			TokenBuffer actual = lexer.getTokenBuffer();
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.getKind(i), actual.getKind(i));
+				assertEquals(expected.getStart(i), actual.getStart(i));
+				assertEquals(expected.getValue(i), actual.getValue(i));
+				assertEquals(expected.getLineNumber(i), actual.getLineNumber(i));
+			}
+		}
+		TheLexer lexer = new TheLexer(null);
+		lexer.feed("a /* b");
+		LexerState state = lexer.getState();
+		assertTrue(state.isInBlockComment());
+		lexer.feed(" */ c");
+		assertTrue(state.isInBlockComment());
+		assertFalse(lexer.getState().isInBlockComment());
+		assertEquals(state, state.copy());
+	}
+
+	@Test
+	public void testTokenBuffer() throws IOException {
+		System.out.println("testing token buffer ========================================================================");
+		Vector<TheToken> tokens = lex("int x = 10;\nx = x + 1;");
+		TokenBuffer buffer = TokenBuffer.of(tokens);
+		assertEquals(tokens.size(), buffer.size());
+		assertTrue(buffer.valueEquals(1, "x"));
+		assertFalse(buffer.valueEquals(3, "1"));
+		assertEquals(TokenKind.INTEGER, buffer.getKind(3));
+		assertEquals("INTEGER", buffer.getType(3));
+		TokenBuffer.Cursor cursor = buffer.cursor();
+		cursor.setPosition(buffer.size() - 1);
+		assertTrue(cursor.is(0, ";"));
+		assertEquals(TokenKind.EOF, cursor.kind(1));
+		assertEquals(2, cursor.line(1));
+
+		// legacy callers get one vector, kept across calls and extended as text is fed
+		TheLexer lexer = new TheLexer(null);
+		lexer.feed("int x = 10;\n");
+		Vector<TheToken> legacy = lexer.getTokens();
+		assertSame(legacy, lexer.getTokens());
+		assertEquals(5, legacy.size());
+		legacy.remove(0);
+		lexer.feed("x = x + 1;");
+		lexer.finish();
+		assertSame(legacy, lexer.getTokens());
+		assertEquals(tokens.size() - 1, legacy.size());
+		assertEquals("x", legacy.get(0).getValue());
+		assertEquals(2, legacy.get(legacy.size() - 1).getLineNumber());
+		lexer.feed("y");
+		lexer.finish();
+		assertNotSame(legacy, lexer.getTokens());
+	}
+
+	@Test
+	public void testTokenKinds() throws IOException {
+		System.out.println("testing token kinds ========================================================================");
+		TokenBuffer buffer = lexer("while (x >= 1) { x += 2; } WHILE").getTokenBuffer();
+		TokenKind[] expected = {
+				TokenKind.KW_WHILE, TokenKind.LEFT_PAREN, TokenKind.IDENTIFIER, TokenKind.GREATER_EQUAL,
+				TokenKind.INTEGER, TokenKind.RIGHT_PAREN, TokenKind.LEFT_BRACE, TokenKind.IDENTIFIER,
+				TokenKind.PLUS_ASSIGN, TokenKind.INTEGER, TokenKind.SEMICOLON, TokenKind.RIGHT_BRACE,
+				TokenKind.KEYWORD
+		};
+		assertEquals(expected.length, buffer.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], buffer.getKind(i));
+		}
+		assertEquals("KEYWORD", buffer.getType(12));
+		assertEquals(TokenKind.KW_WHILE, TokenBuffer.of(buffer.asVector()).getKind(0));
+	}
+
+	@Test
+	public void testKeywordCase() throws IOException {
+		System.out.println("testing keyword case =======================================================================");
+		String source = "boolean Boolean CASE cases whilst default$ iff";
+		assertEquals("KEYWORD KEYWORD KEYWORD IDENTIFIER IDENTIFIER IDENTIFIER IDENTIFIER", types(lex(source)));
+		TheLexer lexer = lexer(source);
+		lexer.setIgnoreKeywordCase(false);
+		lexer.run();
+		assertEquals("KEYWORD IDENTIFIER IDENTIFIER IDENTIFIER IDENTIFIER IDENTIFIER IDENTIFIER", types(lexer.getTokens()));
+		assertEquals(TokenKind.KW_BOOLEAN, lexer.getTokenBuffer().getKind(0));
+		for (TokenKind kind : TokenKind.values()) {
+			if (kind.getText() != null && kind.isKeyword()) {
+				String text = kind.getText();
+				assertEquals(kind, TokenKind.keyword("(" + text + ")", 1, text.length() + 1, false));
+				assertEquals(TokenKind.KEYWORD, TokenKind.keyword(text.toUpperCase(), 0, text.length(), true));
+				assertNull(TokenKind.keyword(text.toUpperCase(), 0, text.length(), false));
+			}
+		}
+	}
+
+	@Test
+	public void testGeneratedAutomata() {
+		System.out.println("testing generated automata ==================================================================");
+		Automata dfa = TheLexer.tokenRules().build();
+		assertEquals("HEXADECIMAL", dfa.getAcceptStateName(walk(dfa, "0x1F")));
+		assertEquals("FLOAT", dfa.getAcceptStateName(walk(dfa, "1.5e-3")));
+		assertEquals(Automata.NO_STATE, walk(dfa, "0e5"));
+		Automata keywords = new AutomataBuilder()
+				.addRule("WORD", "[a-z]+", 1)
+				.addRule("ABC", "abc", 2)
+				.build();
+		assertEquals("ABC", keywords.getAcceptStateName(walk(keywords, "abc")));
+		assertEquals("WORD", keywords.getAcceptStateName(walk(keywords, "abd")));
+		AutomataBuilder conflicting = new AutomataBuilder()
+				.addRule("WORD", "[a-z]+", 1)
+				.addRule("ABC", "abc", 1);
+		assertThrows(IllegalStateException.class, conflicting::build);
+	}
+
+	@Test
+	public void testAutomataSnapshot() throws IOException {
+		System.out.println("testing automata snapshot ===================================================================");
+		AutomataBuilder rules = TheLexer.tokenRules();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AutomataSnapshot.write(rules.build(), rules.describe(), out);
+		byte[] snapshot = out.toByteArray();
+		Automata dfa = AutomataSnapshot.read(new ByteArrayInputStream(snapshot), rules.describe());
+		assertEquals("FLOAT", dfa.getAcceptStateName(walk(dfa, "3.5f")));
+		assertThrows(IllegalStateException.class, () -> dfa.addTransition("s0", "a", "s1"));
+		String changed = TheLexer.tokenRules().addRule("EXTRA", "#", 1).describe();
+		assertThrows(IOException.class, () -> AutomataSnapshot.read(new ByteArrayInputStream(snapshot), changed));
+		snapshot[snapshot.length - 1] ^= 1;
+		assertThrows(IOException.class, () -> AutomataSnapshot.read(new ByteArrayInputStream(snapshot), rules.describe()));
+	}
+
+	@Test
+	public void testMappedMatchesReader() throws IOException {
+		System.out.println("testing memory-mapped lexing ================================================================");
+		Path file = folder.resolve("mapped.txt");
+		Files.writeString(file, "x = \"caf\u00e9\";\r\ny\u00e9 = 1.5e-3; /* c */\rz = 'a';\n");
+		for (File input : new File[]{file.toFile(), new File("src/main/resources/inputStatements.txt")}) {
+			TheLexer reader = new TheLexer(input);
+			reader.run();
+			TheLexer mapped = new TheLexer(input);
+			mapped.runMapped();
+			assertEquals(reader.getTokens().size(), mapped.getTokens().size());
+			for (int i = 0; i < reader.getTokens().size(); i++) {
+				TheToken expected = reader.getTokens().get(i);
+				TheToken actual = mapped.getTokens().get(i);
+				assertEquals(expected.getValue(), actual.getValue());
+				assertEquals(expected.getType(), actual.getType());
+				assertEquals(expected.getLineNumber(), actual.getLineNumber());
+			}
+		}
+	}
+
+	@Test
+	public void testStreamMatchesBuffer() throws IOException {
+		System.out.println("testing token stream ========================================================================");
+		Path file = folder.resolve("stream.txt");
+		Files.writeString(file, "int f(int a) {\r\n  return a * 2; // twice\r\n}\n\nx = f(1);");
+		for (File input : new File[]{file.toFile(), new File("src/main/resources/inputMethods.txt")}) {
+			TheLexer lexer = new TheLexer(input);
+			lexer.run();
+			TokenBuffer.Cursor cursor = lexer.getTokenBuffer().cursor();
+			try (TokenStream stream = lexer.stream()) {
+				while (!cursor.atEnd()) {
+					assertFalse(stream.atEnd());
+					for (int lookahead = 0; lookahead < TokenStream.LOOKAHEAD; lookahead++) {
+						assertEquals(cursor.kind(lookahead), stream.kind(lookahead));
+						assertEquals(cursor.value(lookahead), stream.value(lookahead));
+						assertEquals(cursor.line(lookahead), stream.line(lookahead));
+					}
+					cursor.advance();
+					stream.advance();
+				}
+				assertTrue(stream.atEnd());
+				assertEquals(TokenKind.EOF, stream.kind(0));
+				assertEquals(cursor.line(0), stream.line(0));
+				assertThrows(IllegalArgumentException.class, () -> stream.kind(TokenStream.LOOKAHEAD));
+			}
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() throws IOException {
+		System.out.println("testing parallel lexing =====================================================================");
+		StringBuilder source = new StringBuilder();
+		String statements = Files.readString(Path.of("src/main/resources/inputStatements.txt"));
+		for (int i = 0; i < 20; i++) {
+			source.append(statements).append(i % 3 == 0 ? "\r\n/* open\r\n" : "\n");
+			source.append("x = 'a' + \"*/ in string\"; // /* not open\n");
+			source.append(i % 3 == 0 ? "still comment */ y = 2;\r" : "z = 3;\r\n");
+		}
+		source.append("last /* unterminated");
+		TokenBuffer expected = lexer(source.toString()).getTokenBuffer();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int chunks = 1; chunks <= 40; chunks += 3) {
+				TheLexer lexer = new TheLexer(null);
+				lexer.runParallel(source, pool, chunks);
+				TokenBuffer actual = lexer.getTokenBuffer();
+				assertEquals(expected.size(), actual.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(expected.getKind(i), actual.getKind(i));
+					assertEquals(expected.getStart(i), actual.getStart(i));
+					assertEquals(expected.getLength(i), actual.getLength(i));
+					assertEquals(expected.getLineNumber(i), actual.getLineNumber(i));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testSymbolTable() throws IOException {
+		System.out.println("testing symbol table ========================================================================");
+		TokenBuffer tokens = lexer("int count = count + total; total = count;").getTokenBuffer();
+		SymbolTable symbols = tokens.getSymbolTable();
+		assertEquals(2, symbols.size());
+		assertEquals(-1, tokens.getSymbol(0));
+		assertEquals(symbols.find("count"), tokens.getSymbol(1));
+		assertEquals(tokens.getSymbol(1), tokens.getSymbol(3));
+		assertEquals(tokens.getSymbol(1), tokens.getSymbol(9));
+		assertEquals(tokens.getSymbol(5), tokens.getSymbol(7));
+		assertNotEquals(tokens.getSymbol(1), tokens.getSymbol(5));
+		assertSame(tokens.getValue(1), tokens.getValue(3));
+		assertEquals(-1, symbols.find("missing"));
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i + 2, symbols.intern("name" + i));
+		}
+		assertEquals(2 + 999, symbols.intern("xname999", 1, 7));
+		assertEquals("name999", symbols.name(2 + 999));
+
+		TokenBuffer copy = new TokenBuffer(tokens.getSource());
+		copy.append(tokens, 3, tokens.size(), 0);
+		assertEquals(0, copy.getSymbol(0));
+		assertEquals(copy.getSymbol(0), copy.getSymbol(6));
+		assertEquals("total", copy.getSymbolTable().name(copy.getSymbol(2)));
+		TokenBuffer.Cursor cursor = copy.cursor();
+		assertEquals(0, cursor.symbol(0));
+		assertEquals(-1, cursor.symbol(1));
+		assertEquals(-1, cursor.symbol(copy.size()));
+	}
+
+}
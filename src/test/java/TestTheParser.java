@@ -1,9 +1,27 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Vector;
+import java.util.stream.Stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -56,4 +74,665 @@ public class TestTheParser {
 		assertDoesNotThrow(() -> parser.run());
 	}
 	
-}
\ No newline at end of file
+	private ParseResult parse(String source) {
+		TheLexer lexer = new TheLexer(null);
+		lexer.feed(source);
+		lexer.finish();
+		return new TheParser(lexer.getTokenBuffer()).run();
+	}
+	
+	@Test
+	public void testErrorRecovery() {
+		System.out.println("testing error recovery ======================================================================");
+		ParseResult result = parse("class A {\n int x = ;\n int f(int a) {\n  a = 1 +;\n  if (a) ; else a = 2;\n  return a;\n }\n float y\n int z;\n}");
+		assertFalse(result.isSuccess());
+		List<Diagnostic> diagnostics = result.getDiagnostics();
+		assertEquals(4, diagnostics.size());
+		assertEquals(60, diagnostics.get(0).getCode());
+		assertEquals(2, diagnostics.get(0).getLineNumber());
+		assertEquals(";", diagnostics.get(0).getToken());
+		assertEquals(4, diagnostics.get(1).getLineNumber());
+		assertEquals(5, diagnostics.get(2).getLineNumber());
+		assertEquals(3, diagnostics.get(3).getCode());
+		assertEquals("int", diagnostics.get(3).getToken());
+		assertTrue(parse("{ x = 1; }").isSuccess());
+	}
+	
+	@Test
+	public void testErrorsAtEndOfInput() {
+		System.out.println("testing errors at end of input ==============================================================");
+		List<Diagnostic> unclosed = parse("class A { int f() { x = 1;").getDiagnostics();
+		assertEquals(2, unclosed.size());
+		assertEquals(10, unclosed.get(0).getCode());
+		assertEquals(5, unclosed.get(1).getCode());
+		assertEquals(62, parse("{ switch (x) { case 1: y = 2; } }").getDiagnostics().get(0).getCode());
+		assertTrue(parse("{ switch (x) { case 1: y = 2; break; default: y = 3; break; } }").isSuccess());
+		assertEquals(99, parse("{ } }").getDiagnostics().get(0).getCode());
+		assertEquals(7, parse("").getDiagnostics().get(0).getCode());
+	}
+	
+	@Test
+	public void testListenerEvents() {
+		System.out.println("testing parse listener ======================================================================");
+		for (String source : new String[]{"{ int x = 1; while (x < 3) { x = x + 1; } }", "{ x = ; y = 2 + ; if (x) ; z = 1; }"}) {
+			TheLexer lexer = new TheLexer(null);
+			lexer.feed(source);
+			lexer.finish();
+			List<String> events = new ArrayList<>();
+			ParseListener recorder = new ParseListener() {
+				@Override
+				public void enterRule(ParseRule rule) {
+					events.add("enter " + rule);
+				}
+				
+				@Override
+				public void exitRule(ParseRule rule) {
+					events.add("exit " + rule);
+				}
+				
+				@Override
+				public void terminal(TokenSource tokens) {
+					events.add("token " + tokens.value(0));
+				}
+			};
+			ParseResult result = new TheParser(lexer.getTokenBuffer().cursor(), recorder).run();
+			Deque<String> open = new ArrayDeque<>();
+			int terminals = 0;
+			for (String event : events) {
+				if (event.startsWith("enter ")) {
+					open.push(event.substring(6));
+				} else if (event.startsWith("exit ")) {
+					assertEquals(open.pop(), event.substring(5));
+				} else {
+					terminals++;
+				}
+			}
+			assertTrue(open.isEmpty());
+			assertEquals("enter PROGRAM", events.get(0));
+			if (result.isSuccess()) {
+				assertEquals(lexer.getTokenBuffer().size(), terminals);
+			} else {
+				assertEquals(3, result.getDiagnostics().size());
+			}
+		}
+	}
+	
+	@Test
+	public void testSyntaxTree() {
+		System.out.println("testing syntax tree ======================================================================");
+		ParseResult result = parse("class A { int f(int a) { x = -(a + 1) * 2; while (a < x) { a = a + 1; } } }");
+		assertTrue(result.isSuccess());
+		SyntaxTree tree = result.getTree();
+		assertEquals("(PROGRAM class A (METHODS (TYPE int) f (PARAMS (TYPE int) a) (BODY " +
+				"(ASSIGNMENT x = (A (B - (E a + 1)) * 2)) " +
+				"(WHILE while (R a < x) (STATEMENT_BLOCK (BODY (ASSIGNMENT a = (E a + 1))))))))", tree.toString());
+		SyntaxTree.Node root = tree.getRoot();
+		assertEquals(ParseRule.PROGRAM, root.getRule());
+		assertEquals(tree.size() - 1, root.getIndex());
+		SyntaxTree.Node name = root.getChildren().get(1);
+		assertTrue(name.isToken());
+		assertEquals(TokenKind.IDENTIFIER, name.getKind());
+		assertEquals("A", name.getText());
+		// children are stored before their parent
+		for (int node = 0; node < tree.size(); node++) {
+			for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+				assertTrue(child < node);
+			}
+		}
+		
+		assertEquals("(PROGRAM (BODY (ASSIGNMENT x = (EXPRESSION (X a && (Y ! ! (R b <= (E (A c % d) + e)))) || f))))",
+				parse("{ x = a && !!b <= c % d + e || f; }").getTree().toString());
+		assertEquals("(PROGRAM (BODY (ASSIGNMENT x = (E (A (B - a) * b) - (A c / d) + e))))",
+				parse("{ x = -a * b - c / d + e; }").getTree().toString());
+		
+		SyntaxTree partial = parse("{ x = ; y = 2; }").getTree();
+		assertEquals("(PROGRAM (BODY (ASSIGNMENT x = (C)) (ASSIGNMENT y = 2)))", partial.toString());
+	}
+	
+	@Test
+	public void testParseCache(@TempDir Path directory) throws IOException {
+		System.out.println("testing parse cache ======================================================================");
+		byte[] content = "class A { int f(int a) { x = a * 2; y = ; } }".getBytes(StandardCharsets.US_ASCII);
+		ParseCache cache = new ParseCache(directory, 1 << 20);
+		ParseCache.Entry parsed = cache.parse(content);
+		ParseCache.Entry cached = new ParseCache(directory, 1 << 20).parse(content);
+		assertNotSame(parsed.getResult(), cached.getResult());
+		TokenBuffer tokens = cached.getTokens();
+		assertEquals(parsed.getTokens().size(), tokens.size());
+		for (int i = 0; i < tokens.size(); i++) {
+			assertEquals(parsed.getTokens().getKind(i), tokens.getKind(i));
+			assertEquals(parsed.getTokens().getValue(i), tokens.getValue(i));
+			assertEquals(parsed.getTokens().getLineNumber(i), tokens.getLineNumber(i));
+		}
+		assertEquals(parsed.getResult().getDiagnostics().toString(), cached.getResult().getDiagnostics().toString());
+		assertEquals(parsed.getResult().getTree().toString(), cached.getResult().getTree().toString());
+		assertEquals(1, cached.getResult().getDiagnostics().size());
+		
+		// entries used least recently are evicted first
+		Path entry = directory.resolve(ParseCache.key(content) + ".parse");
+		long entrySize = Files.size(entry);
+		Files.setLastModifiedTime(entry, FileTime.fromMillis(0));
+		ParseCache small = new ParseCache(directory, entrySize);
+		for (int i = 0; i < 5; i++) {
+			small.parse(("{ x = " + i + "; }").getBytes(StandardCharsets.US_ASCII));
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			long total = files.filter(file -> file.toString().endsWith(".parse")).mapToLong(file -> file.toFile().length()).sum();
+			assertTrue(total <= entrySize);
+		}
+		assertFalse(Files.exists(entry));
+	}
+	
+	@Test
+	public void testIncrementalDocument() {
+		System.out.println("testing incremental document ======================================================================");
+		StringBuilder text = new StringBuilder("class A {\n");
+		for (int i = 0; i < 40; i++) {
+			text.append("int f").append(i).append("(int a) {\n");
+			text.append("x = a * ").append(i).append(";\n");
+			text.append("\n");
+			text.append("}\n");
+			text.append("int v").append(i).append(" = ").append(i).append(";\n");
+		}
+		text.append("}\n");
+		IncrementalDocument document = new IncrementalDocument(text);
+		assertIncremental(document);
+		
+		// a change inside one method re-lexes one line and re-parses one member
+		document.setLine(42, "x = a + ;");
+		assertEquals(1, document.getRelexedLines());
+		assertEquals(1, document.getReparsedMembers());
+		assertIncremental(document);
+		document.replaceLines(10, 10, List.of("int g() {", "return 1;", "}"));
+		assertEquals(1, document.getReparsedMembers());
+		assertIncremental(document);
+		
+		// opening a block comment re-lexes until it is closed
+		document.setLine(100, "/* x = 1;");
+		assertEquals(document.getLineCount() - 100, document.getRelexedLines());
+		assertIncremental(document);
+		document.replaceLines(100, 101, List.of("/* x = 1;", "x = 2; */"));
+		assertEquals(document.getLineCount() - 100, document.getRelexedLines());
+		assertIncremental(document);
+		document.replaceLines(100, 102, List.of("/* x = 1; */"));
+		assertEquals(1, document.getRelexedLines());
+		assertIncremental(document);
+		
+		String[] edits = {"", "}", "{", "int", "x = 3;", "int h(", "float y = 1 2;", "/*", "*/", "while (x) { x = x - 1; }"};
+		Random random = new Random(16);
+		for (int i = 0; i < 300; i++) {
+			int from = random.nextInt(document.getLineCount() + 1);
+			int to = Math.min(document.getLineCount(), from + random.nextInt(3));
+			List<String> replacement = new ArrayList<>();
+			for (int j = random.nextInt(3); j > 0; j--) {
+				replacement.add(edits[random.nextInt(edits.length)]);
+			}
+			document.replaceLines(from, to, replacement);
+			assertIncremental(document);
+		}
+	}
+	
+	private static void assertIncremental(IncrementalDocument document) {
+		TheLexer lexer = new TheLexer(null);
+		for (int i = 0; i < document.getLineCount(); i++) {
+			lexer.feed(document.getLine(i));
+			lexer.feed("\n");
+		}
+		lexer.finish();
+		ParseResult expected = new TheParser(lexer.getTokenBuffer()).run();
+		ParseResult actual = document.getResult();
+		assertEquals(expected.getDiagnostics().toString(), actual.getDiagnostics().toString());
+		assertEquals(expected.getTree().toString(), actual.getTree().toString());
+		TokenBuffer tokens = actual.getTree().getTokens();
+		for (int i = 0; i < tokens.size(); i++) {
+			assertEquals(expected.getTree().getTokens().getLineNumber(i), tokens.getLineNumber(i));
+		}
+	}
+	
+	private static List<String> record(TokenBuffer tokens, boolean iterative) {
+		List<String> events = new ArrayList<>();
+		ParseListener recorder = new ParseListener() {
+			@Override
+			public void enterRule(ParseRule rule) {
+				events.add("enter " + rule);
+			}
+			
+			@Override
+			public void exitRule(ParseRule rule) {
+				events.add("exit " + rule);
+			}
+			
+			@Override
+			public void terminal(TokenSource tokens) {
+				events.add("token " + tokens.value(0));
+			}
+			
+			@Override
+			public void syntaxError(Diagnostic diagnostic) {
+				events.add("error " + diagnostic);
+			}
+		};
+		ParseResult result = iterative ? new IterativeParser(tokens.cursor(), recorder).run()
+				: new TheParser(tokens.cursor(), recorder).run();
+		events.add(result.getDiagnostics().toString());
+		events.add(result.getTree().toString());
+		return events;
+	}
+	
+	@Test
+	public void testIterativeParser() throws IOException {
+		System.out.println("testing iterative parser ====================================================================");
+		List<String> sources = new ArrayList<>();
+		try (Stream<Path> files = Files.list(Path.of("src/main/resources"))) {
+			for (Path file : files.sorted().toList()) {
+				sources.add(Files.readString(file));
+			}
+		}
+		String[] words = {"{", "}", "(", ")", "x", "f", "=", "1", "+", "-", "!", "*", "<", "&&", ";", ",", ":",
+				"int", "if", "else", "while", "do", "for", "switch", "case", "default", "break", "return", "class"};
+		Random random = new Random(19);
+		for (int i = 0; i < 500; i++) {
+			StringBuilder source = new StringBuilder(random.nextBoolean() ? "class A { int f() { " : "{ ");
+			for (int j = random.nextInt(60); j > 0; j--) {
+				source.append(words[random.nextInt(words.length)]).append(' ');
+			}
+			sources.add(source.toString());
+		}
+		for (String source : sources) {
+			TheLexer lexer = new TheLexer(null);
+			lexer.feed(source);
+			lexer.finish();
+			assertEquals(record(lexer.getTokenBuffer(), false), record(lexer.getTokenBuffer(), true), source);
+		}
+	}
+	
+	@Test
+	public void testDeepNesting() {
+		System.out.println("testing deep nesting ========================================================================");
+		int nesting = 50000;
+		StringBuilder source = new StringBuilder("{ x = ");
+		source.append("(-".repeat(nesting)).append('1').append(")".repeat(nesting)).append(";\n");
+		source.append("if (x) ".repeat(nesting)).append("{ while (x < 1) x = f(x, 2); }\n");
+		source.append("while (x) { ".repeat(nesting)).append("y = (1 + ;").append(" }".repeat(nesting)).append(" }");
+		TheLexer lexer = new TheLexer(null);
+		lexer.feed(source.toString());
+		lexer.finish();
+		ParseResult result = new IterativeParser(lexer.getTokenBuffer()).run();
+		assertEquals(1, result.getDiagnostics().size());
+		assertEquals(60, result.getDiagnostics().get(0).getCode());
+		assertEquals(3, result.getDiagnostics().get(0).getLineNumber());
+		SyntaxTree tree = result.getTree();
+		assertEquals(ParseRule.PROGRAM, tree.getRule(tree.root()));
+		// the parenthesized operand is a chain of negations down to the literal
+		SyntaxTree.Node node = tree.getRoot().getFirstChild().getFirstChild().getChildren().get(2);
+		for (int i = 0; i < nesting; i++) {
+			assertEquals(ParseRule.B, node.getRule());
+			node = node.getChildren().get(1);
+		}
+		assertEquals("1", node.getText());
+		
+		// trees this deep are formatted without recursion too
+		String text = tree.toString();
+		assertTrue(text.startsWith("(PROGRAM (BODY (ASSIGNMENT x = (B - (B - "), text.substring(0, 60));
+		assertTrue(text.contains("(B - 1)" + ")".repeat(nesting - 1) + ") (IF if x (STATEMENT_BLOCK (IF if x "));
+		assertEquals(text.chars().filter(c -> c == '(').count(), text.chars().filter(c -> c == ')').count());
+		assertEquals(tree.getRoot().getChildren().get(0).getChildren().get(0).toString(),
+				text.substring("(PROGRAM (BODY ".length(), text.indexOf(" (IF if x")));
+		
+		// documents this deep are parsed again without recursion, in full or member by member
+		IncrementalDocument document = new IncrementalDocument(source);
+		assertEquals(result.getDiagnostics().toString(), document.getResult().getDiagnostics().toString());
+		assertEquals(text, document.getResult().getTree().toString());
+		document = new IncrementalDocument("class A {\nint f() {\n" + source.substring(2, source.indexOf(";") + 1) +
+				"\n}\nint g() { y = ; }\n}\n");
+		assertIterative(document);
+		document.setLine(2, "x = " + "((".repeat(nesting) + "1" + "))".repeat(nesting) + " +;");
+		assertEquals(1, document.getReparsedMembers());
+		assertIterative(document);
+	}
+	
+	private static void assertIterative(IncrementalDocument document) {
+		TheLexer lexer = new TheLexer(null);
+		for (int i = 0; i < document.getLineCount(); i++) {
+			lexer.feed(document.getLine(i));
+			lexer.feed("\n");
+		}
+		lexer.finish();
+		ParseResult expected = new IterativeParser(lexer.getTokenBuffer()).run();
+		ParseResult actual = document.getResult();
+		assertEquals(expected.getDiagnostics().toString(), actual.getDiagnostics().toString());
+		assertEquals(expected.getTree().toString(), actual.getTree().toString());
+	}
+	
+	@Test
+	public void testGrammar() {
+		System.out.println("testing grammar =============================================================================");
+		assertEquals(EnumSet.of(TokenKind.RIGHT_BRACE, TokenKind.KW_BREAK), TheParser.GRAMMAR.follow("body"));
+		assertEquals(EnumSet.of(TokenKind.SEMICOLON, TokenKind.RIGHT_PAREN, TokenKind.COMMA, TokenKind.COLON),
+				TheParser.GRAMMAR.follow("expression"));
+		assertTrue(TheParser.GRAMMAR.first("statement").containsAll(TheParser.GRAMMAR.first("expression")));
+		assertThrows(IllegalArgumentException.class, () -> new Grammar("a : b"));
+		assertThrows(IllegalArgumentException.class, () -> new Grammar("a : NO_SUCH_TOKEN"));
+		
+		// the operator tables are read from the expression rules, one level per rule
+		assertEquals(1, TheParser.BINARY[TokenKind.OR.ordinal()]);
+		assertEquals(2, TheParser.BINARY[TokenKind.AND.ordinal()]);
+		assertEquals(3, TheParser.PREFIX[TokenKind.NOT.ordinal()]);
+		assertTrue(TheParser.REPEATED[TokenKind.NOT.ordinal()]);
+		for (TokenKind comparison : List.of(TokenKind.LESS, TokenKind.GREATER, TokenKind.LESS_EQUAL,
+				TokenKind.GREATER_EQUAL, TokenKind.EQUAL, TokenKind.NOT_EQUAL)) {
+			assertEquals(4, TheParser.BINARY[comparison.ordinal()]);
+		}
+		assertEquals(5, TheParser.BINARY[TokenKind.PLUS.ordinal()]);
+		assertEquals(5, TheParser.BINARY[TokenKind.MINUS.ordinal()]);
+		assertEquals(6, TheParser.BINARY[TokenKind.STAR.ordinal()]);
+		assertEquals(6, TheParser.BINARY[TokenKind.PERCENT.ordinal()]);
+		assertEquals(7, TheParser.PREFIX[TokenKind.MINUS.ordinal()]);
+		assertFalse(TheParser.REPEATED[TokenKind.MINUS.ordinal()]);
+		assertEquals(0, TheParser.BINARY[TokenKind.NOT.ordinal()] + TheParser.PREFIX[TokenKind.PLUS.ordinal()]);
+		int[] binary = new int[TokenKind.values().length];
+		int[] prefix = new int[TokenKind.values().length];
+		boolean[] repeated = new boolean[TokenKind.values().length];
+		assertEquals(2, TheParser.operators(new Grammar("""
+				expression : term terms
+				terms      : PLUS term terms
+				           | MINUS term terms
+				           |
+				term       : NOT term
+				           | MINUS factor
+				           | factor
+				factor     : IDENTIFIER
+				           | LEFT_PAREN expression RIGHT_PAREN
+				"""), binary, prefix, repeated));
+		assertEquals(1, binary[TokenKind.MINUS.ordinal()]);
+		assertEquals(2, prefix[TokenKind.MINUS.ordinal()]);
+		assertTrue(repeated[TokenKind.NOT.ordinal()]);
+		assertFalse(repeated[TokenKind.MINUS.ordinal()]);
+		assertThrows(IllegalArgumentException.class, () -> TheParser.operators(new Grammar("""
+				expression : term terms
+				terms      : PLUS terms term
+				           |
+				term       : IDENTIFIER
+				"""), binary, prefix, repeated));
+		
+		// the tables choose as the predicates they replaced did, for every three tokens
+		TokenKind[] kinds = TokenKind.values();
+		TokenKind[] ahead = new TokenKind[3];
+		TokenSource source = new TokenSource() {
+			public void advance() {
+			}
+			
+			public boolean atEnd() {
+				return false;
+			}
+			
+			public TokenKind kind(int lookahead) {
+				return ahead[lookahead];
+			}
+			
+			public String value(int lookahead) {
+				return "";
+			}
+			
+			public int line(int lookahead) {
+				return 1;
+			}
+		};
+		for (TokenKind first : kinds) {
+			for (TokenKind second : kinds) {
+				for (TokenKind third : kinds) {
+					ahead[0] = first;
+					ahead[1] = second;
+					ahead[2] = third;
+					boolean type = TheParser.GRAMMAR.first("type").contains(first);
+					boolean assignment = first == TokenKind.IDENTIFIER && second == TokenKind.ASSIGN;
+					boolean call = first == TokenKind.IDENTIFIER && second == TokenKind.LEFT_PAREN;
+					ParseRule statement = switch (first) {
+						case KW_INT, KW_FLOAT, KW_VOID, KW_CHAR, KW_STRING, KW_BOOLEAN -> ParseRule.VARIABLE;
+						case KW_RETURN -> ParseRule.RETURN;
+						case KW_WHILE -> ParseRule.WHILE;
+						case KW_IF -> ParseRule.IF;
+						case KW_DO -> ParseRule.DO_WHILE;
+						case KW_FOR -> ParseRule.FOR;
+						case KW_SWITCH -> ParseRule.SWITCH;
+						default -> assignment ? ParseRule.ASSIGNMENT : call ? ParseRule.CALL_METHOD : ParseRule.EXPRESSION;
+					};
+					assertEquals(statement, TheParser.STATEMENT.predict(source));
+					assertEquals(first == TokenKind.LEFT_BRACE ? ParseRule.BODY : statement, TheParser.BLOCK.predict(source));
+					assertEquals(!type ? null : second == TokenKind.IDENTIFIER && third == TokenKind.LEFT_PAREN
+							? ParseRule.METHODS : ParseRule.VARIABLE, TheParser.MEMBER.predict(source));
+					assertEquals(type ? ParseRule.VARIABLE : first == TokenKind.SEMICOLON ? null : ParseRule.EXPRESSION,
+							TheParser.FOR_INIT.predict(source));
+					assertEquals(assignment ? ParseRule.ASSIGNMENT : first == TokenKind.RIGHT_PAREN ? null : ParseRule.EXPRESSION,
+							TheParser.FOR_UPDATE.predict(source));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testBatchParser(@TempDir Path directory) throws IOException, InterruptedException {
+		System.out.println("testing batch parser ======================================================================");
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		BatchParser batch = new BatchParser(2, null, new PrintStream(output, true));
+		BatchParser.Summary summary = batch.run(List.of("src/main/resources", "src/main/resources/input*.txt", "missing.txt"));
+		assertEquals(10, summary.getFiles());
+		assertEquals(1, summary.getFailed());
+		assertEquals(2, summary.getFilesWithErrors());
+		assertEquals(4, summary.getErrors());
+		assertFalse(summary.isSuccess());
+		
+		TheLexer lexer = new TheLexer(new File("src/main/resources/inputStatements.txt"));
+		lexer.run();
+		assertTrue(output.toString().contains("inputStatements.txt: 2 error(s) (" + lexer.getTokenBuffer().size() + " tokens)"));
+		assertTrue(output.toString().contains("missing.txt: failed"));
+		
+		// a file nested deeper than the stack allows is parsed again without recursion
+		Path inputs = Files.createDirectory(directory.resolve("inputs"));
+		Files.writeString(inputs.resolve("deep.txt"), "{ x = " + "(".repeat(100000) + "1" + ")".repeat(100000) + "; }");
+		Files.writeString(inputs.resolve("valid.txt"), "{ x = 1; }");
+		ParseCache cache = new ParseCache(directory.resolve("cache"), 1 << 20);
+		for (BatchParser deep : new BatchParser[]{batch, new BatchParser(2, cache, new PrintStream(output, true))}) {
+			output.reset();
+			summary = deep.run(List.of(inputs.toString()));
+			assertEquals(2, summary.getFiles());
+			assertEquals(0, summary.getFailed());
+			assertTrue(summary.isSuccess());
+			assertTrue(output.toString().contains("deep.txt: No errors (200006 tokens)"), output.toString());
+		}
+	}
+	
+	@Test
+	public void testValidationOnly() throws IOException {
+		System.out.println("testing validation only ===================================================================");
+		try (Stream<Path> files = Files.list(Path.of("src/main/resources"))) {
+			for (Path file : files.sorted().toList()) {
+				TheLexer lexer = new TheLexer(file.toFile());
+				lexer.run();
+				ParseResult expected = new TheParser(lexer.getTokenBuffer()).run();
+				// the tree copies its tokens straight from the stream
+				try (TokenStream tokens = lexer.stream()) {
+					ParseResult streamed = new TheParser(tokens).run();
+					assertEquals(expected.getDiagnostics().toString(), streamed.getDiagnostics().toString(), file.toString());
+					assertEquals(expected.getTree().toString(), streamed.getTree().toString(), file.toString());
+				}
+				try (TokenStream tokens = lexer.stream()) {
+					TheParser parser = new TheParser(tokens);
+					parser.setBuildTree(false);
+					ParseResult validated = parser.run();
+					assertEquals(expected.getDiagnostics().toString(), validated.getDiagnostics().toString(), file.toString());
+					assertEquals(0, validated.getTree().size());
+					assertNull(validated.getTree().getRoot());
+				}
+				IterativeParser iterative = new IterativeParser(lexer.getTokenBuffer());
+				iterative.setBuildTree(false);
+				ParseResult validated = iterative.run();
+				assertEquals(expected.getDiagnostics().toString(), validated.getDiagnostics().toString(), file.toString());
+				assertEquals(0, validated.getTree().size());
+			}
+		}
+	}
+	
+	@Test
+	public void testTreeSymbols(@TempDir Path directory) throws IOException {
+		System.out.println("testing tree symbols ======================================================================");
+		String source = "class A { int f(int a) { b = a + f(a); return b; } int b; }";
+		TheLexer lexer = new TheLexer(null);
+		lexer.feed(source);
+		lexer.finish();
+		SymbolTable symbols = lexer.getTokenBuffer().getSymbolTable();
+		assertSymbols(symbols, new TheParser(lexer.getTokenBuffer()).run().getTree(), 4);
+		assertSymbols(symbols, new IterativeParser(lexer.getTokenBuffer()).run().getTree(), 4);
+		
+		Path file = directory.resolve("symbols.txt");
+		Files.writeString(file, source);
+		try (TokenStream tokens = new TheLexer(file.toFile()).stream()) {
+			assertSymbols(tokens.getSymbolTable(), new TheParser(tokens).run().getTree(), 4);
+		}
+		
+		IncrementalDocument document = new IncrementalDocument(source.replace("{ ", "{\n"));
+		document.setLine(2, "b = a + f(c); return b; } int b; }");
+		SyntaxTree assembled = document.getTree();
+		assertSymbols(assembled.getTokens().getSymbolTable(), assembled, 5);
+		
+		ParseCache cache = new ParseCache(directory.resolve("cache"), 1 << 20);
+		cache.parse(file);
+		ParseCache.Entry cached = cache.parse(file);
+		assertSymbols(cached.getTokens().getSymbolTable(), cached.getResult().getTree(), 4);
+	}
+	
+	/**
+	 * Checks that the identifiers of a tree carry the ids of their names in a symbol table.
+	 */
+	private static void assertSymbols(SymbolTable symbols, SyntaxTree tree, int names) {
+		TokenBuffer tokens = tree.getTokens();
+		assertSame(symbols, tokens.getSymbolTable());
+		assertEquals(names, symbols.size());
+		for (int i = 0; i < tokens.size(); i++) {
+			int expected = tokens.getKind(i) == TokenKind.IDENTIFIER ? symbols.find(tokens.getValue(i)) : -1;
+			assertEquals(expected, tokens.getSymbol(i), tokens.getValue(i));
+		}
+	}
+	
+	@Test
+	public void testCorpusGenerator(@TempDir Path directory) throws IOException, InterruptedException {
+		System.out.println("testing corpus generator ==================================================================");
+		assertEquals(new CorpusGenerator(22).generate(5000), new CorpusGenerator(22).generate(5000));
+		assertNotEquals(new CorpusGenerator(22).generate(5000), new CorpusGenerator(23).generate(5000));
+		assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator(22).depth(-1));
+		assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator(22).weight(TokenKind.PLUS, -1));
+		
+		// every program is parsed without errors, whatever the options
+		for (int seed = 0; seed < 100; seed++) {
+			CorpusGenerator generator = new CorpusGenerator(seed).depth(seed % 5).length(seed % 4).identifiers(1 + seed * 7);
+			if (seed % 3 == 0) {
+				generator.weight(TokenKind.STRING, 10).weight(TokenKind.PLUS, 1).weight(TokenKind.KW_INT, 0);
+			}
+			String source = generator.generate(seed * 100L);
+			assertTrue(source.length() >= seed * 100L);
+			TheLexer lexer = new TheLexer(null);
+			lexer.feed(source);
+			lexer.finish();
+			ParseResult result = new TheParser(lexer.getTokenBuffer()).run();
+			assertTrue(result.isSuccess(), () -> result + System.lineSeparator() + source);
+			assertEquals(record(lexer.getTokenBuffer(), false), record(lexer.getTokenBuffer(), true), source);
+			// both parsers reject the programs broken by cutting a few characters out the same way
+			Random random = new Random(seed);
+			for (int i = 0; i < 5 && !source.isEmpty(); i++) {
+				int cut = random.nextInt(source.length());
+				String broken = source.substring(0, cut) + source.substring(Math.min(source.length(), cut + 1 + random.nextInt(8)));
+				TheLexer brokenLexer = new TheLexer(null);
+				brokenLexer.feed(broken);
+				brokenLexer.finish();
+				assertEquals(record(brokenLexer.getTokenBuffer(), false), record(brokenLexer.getTokenBuffer(), true), broken);
+			}
+		}
+		
+		long written = new CorpusGenerator(22).write(directory, 3, 20000);
+		long size = 0;
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.toList()) {
+				size += Files.size(file);
+			}
+		}
+		assertEquals(written, size);
+		BatchParser.Summary summary = new BatchParser(2, null, new PrintStream(new ByteArrayOutputStream())).run(List.of(directory.toString()));
+		assertEquals(3, summary.getFiles());
+		assertTrue(summary.isSuccess());
+	}
+	
+	@Test
+	public void testRuleProfiler() {
+		System.out.println("testing rule profiler =====================================================================");
+		RuleProfiler.reset();
+		RuleProfiler profiler = new RuleProfiler();
+		int body = RuleProfiler.key(ParseRule.BODY);
+		int expression = RuleProfiler.key(ParseRule.EXPRESSION);
+		// a body holding an expression holding another one, with a token in each
+		profiler.enter(body);
+		profiler.consume();
+		profiler.enter(expression);
+		profiler.consume();
+		profiler.enter(expression);
+		profiler.consume();
+		profiler.exit();
+		profiler.exit();
+		profiler.exit();
+		profiler.finish();
+		
+		String[] lines = RuleProfiler.report().split("\\R");
+		assertEquals(3, lines.length);
+		String[] first = lines[1].trim().split("\\s+");
+		String[] second = lines[2].trim().split("\\s+");
+		String[] bodyRow = first[0].equals("BODY") ? first : second;
+		String[] expressionRow = first[0].equals("EXPRESSION") ? first : second;
+		assertEquals(List.of("BODY", "1", "3", "1"), List.of(bodyRow).subList(0, 4));
+		// the recursive call is counted, its tokens only once
+		assertEquals(List.of("EXPRESSION", "2", "2", "2"), List.of(expressionRow).subList(0, 4));
+		RuleProfiler.reset();
+		assertEquals(1, RuleProfiler.report().split("\\R").length);
+	}
+	
+	@Test
+	public void testFlightRecorderEvents(@TempDir Path directory) throws IOException {
+		System.out.println("testing flight recorder events ============================================================");
+		File file = new File("src/main/resources/inputMethods.txt");
+		TheLexer lexer = new TheLexer(file);
+		Path dump = directory.resolve("parse.jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("javiergs.Lex");
+			recording.enable("javiergs.Parse");
+			recording.enable("javiergs.ParseMethod");
+			recording.start();
+			lexer.run();
+			TheParser parser = new TheParser(lexer.getTokenBuffer());
+			parser.setSourceName(file.getPath());
+			parser.run();
+			IterativeParser iterative = new IterativeParser(lexer.getTokenBuffer());
+			iterative.setSourceName("iterative");
+			iterative.run();
+			new ParseCache(directory.resolve("cache"), 1 << 20).parse(Files.writeString(directory.resolve("cached.txt"), "{ x = 1; }"));
+			recording.stop();
+			recording.dump(dump);
+		}
+		List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+		RecordedEvent lex = events.stream().filter(e -> e.getEventType().getName().equals("javiergs.Lex")).findFirst().orElseThrow();
+		assertEquals(file.getPath(), lex.getString("source"));
+		assertEquals(file.length(), lex.getLong("bytes"));
+		assertEquals(lexer.getTokenBuffer().size(), lex.getInt("tokens"));
+		RecordedEvent parse = events.stream().filter(e -> e.getEventType().getName().equals("javiergs.Parse")).findFirst().orElseThrow();
+		assertEquals(file.getPath(), parse.getString("source"));
+		assertEquals(lexer.getTokenBuffer().size(), parse.getInt("tokens"));
+		assertEquals(0, parse.getInt("errors"));
+		RecordedEvent iterative = events.stream().filter(e -> e.getEventType().getName().equals("javiergs.Parse")
+				&& "iterative".equals(e.getString("source"))).findFirst().orElseThrow();
+		assertEquals(parse.getLong("bytes"), iterative.getLong("bytes"));
+		assertEquals(parse.getInt("tokens"), iterative.getInt("tokens"));
+		assertEquals(parse.getInt("lines"), iterative.getInt("lines"));
+		assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("javiergs.Parse")
+				&& directory.resolve("cached.txt").toString().equals(e.getString("source"))));
+		assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("javiergs.ParseMethod")
+				&& e.getString("method") != null && e.getInt("tokens") > 0));
+	}
+	
+}